@@ -0,0 +1,29 @@
+package com.services.common.domain.base;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.SuperBuilder;
+
+import java.util.List;
+
+/**
+ * A page of a keyset paginated listing. {@code nextCursor} is an opaque token to pass back to read the following
+ * page, absent on the last page.
+ */
+@SuperBuilder(toBuilder = true)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString(callSuper = true)
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class CursorPage<E> {
+
+    List<E> items;
+
+    String nextCursor;
+}
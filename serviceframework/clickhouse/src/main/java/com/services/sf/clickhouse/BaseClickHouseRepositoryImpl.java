@@ -8,6 +8,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.services.common.baseclickhouse.BaseClickhouseDomain;
 import com.services.common.domain.base.BulkResponse;
+import com.services.common.domain.base.CursorPage;
 import com.services.common.exception.NotImplementedException;
 import com.services.sf.commons.base.BaseRepositoryImpl;
 import io.opentelemetry.api.trace.SpanKind;
@@ -180,6 +181,18 @@ public class BaseClickHouseRepositoryImpl<T extends BaseClickHouseEntity<ID>, E
         throw new NotImplementedException();
     }
 
+    public Uni<CursorPage<E>> findByPage(String cursor, Integer limit) {
+        throw new NotImplementedException();
+    }
+
+    public Uni<CursorPage<E>> findByCreatedAtBetween(Instant t1, Instant t2, String cursor, Integer limit) {
+        throw new NotImplementedException();
+    }
+
+    public Uni<CursorPage<E>> findByLastModifiedAtBetween(Instant t1, Instant t2, String cursor, Integer limit) {
+        throw new NotImplementedException();
+    }
+
     @WithSpan(kind = SpanKind.CLIENT)
     public Uni<E> findOne(@SpanAttribute("query.filter") String query) {
         return Uni.createFrom().completionStage(request.query(query).execute())
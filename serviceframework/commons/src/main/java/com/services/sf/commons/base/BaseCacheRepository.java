@@ -1,6 +1,7 @@
 package com.services.sf.commons.base;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.services.sf.commons.base.cache.CacheEntry;
 import io.quarkus.arc.properties.IfBuildProperty;
 import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
@@ -18,12 +19,26 @@ import java.util.Optional;
 @IfBuildProperty(name = "framework.redis.enabled", stringValue = "true")
 public interface BaseCacheRepository<C> {
 
+    String getBucket(@NotBlank final String id);
+
     Uni<Boolean> exists(@NotBlank final String id);
 
     Uni<C> get(@NotBlank final String id);
 
     Multi<Optional<C>> get(@NotEmpty final List<String> ids);
 
+    /**
+     * Like {@link #get(String)} but tells a negative entry apart from a miss.
+     *
+     * @return null on a miss, an empty optional for a negative entry, the value otherwise
+     */
+    Uni<Optional<C>> lookup(@NotBlank final String id);
+
+    /**
+     * @return null on a miss, otherwise the entry with its write timing
+     */
+    Uni<CacheEntry<C>> getEntry(@NotBlank final String id);
+
     Uni<List<C>> getList(@NotBlank String id);
 
     Uni<Response> set(@NotBlank final String id,
@@ -40,10 +55,79 @@ public interface BaseCacheRepository<C> {
                       final List<C> t,
                       Long expiryInMilliseconds) throws JsonProcessingException;
 
+    Uni<Response> setEntry(@NotBlank final String id,
+                           @NotNull final CacheEntry<C> entry,
+                           Long staleInMilliseconds);
+
+    Uni<Response> setNegative(@NotBlank final String id,
+                              Long expiryInMilliseconds);
+
+    /**
+     * {@link #setEntry(String, CacheEntry, Long)} to a key resolved beforehand with {@link #getBucket(String)}, for a
+     * fill that may complete after the request that started it.
+     */
+    Uni<Response> setEntryAtKey(@NotBlank final String key,
+                                @NotNull final CacheEntry<C> entry,
+                                Long staleInMilliseconds);
+
+    /**
+     * {@link #setNegative(String, Long)} to a key resolved beforehand with {@link #getBucket(String)}.
+     */
+    Uni<Response> setNegativeAtKey(@NotBlank final String key,
+                                   Long expiryInMilliseconds);
+
+    /**
+     * Writes the value unless the key already holds a newer version of it.
+     *
+     * @return whether the value was written
+     */
+    Uni<Boolean> setIfNotOlder(@NotBlank final String id,
+                               @NotNull final C t,
+                               @NotNull final Long version,
+                               Long expiryInMilliseconds);
+
+    /**
+     * Replaces the value with a negative entry carrying the version of the delete, unless the key already holds
+     * a newer version.
+     *
+     * @return whether the tombstone was written
+     */
+    /**
+     * {@link #setIfNotOlder(String, Object, Long, Long)} for every entry, in a single round trip.
+     *
+     * @param versions the version of each value, a value without one never replaces a versioned value
+     */
+    Uni<Void> setIfNotOlder(@NotNull final Map<String, C> mp,
+                            @NotNull final Map<String, Long> versions,
+                            Long expiryInMilliseconds);
+
+    /**
+     * {@link #setEntryAtKey(String, CacheEntry, Long)} unless the key already holds a newer version than the one of
+     * the entry.
+     *
+     * @return whether the entry was written
+     */
+    Uni<Boolean> setEntryIfNotOlderAtKey(@NotBlank final String key,
+                                         @NotNull final CacheEntry<C> entry,
+                                         Long staleInMilliseconds);
+
+    Uni<Boolean> setTombstone(@NotBlank final String id,
+                              @NotNull final Long version,
+                              Long expiryInMilliseconds);
+
     Uni<Void> delete(@NotEmpty final List<String> ids);
 
     Uni<Void> mset(@NotNull final Map<String, C> mp);
 
+    Uni<Void> set(@NotNull final Map<String, C> mp,
+                  Long expiryInMilliseconds);
+
+    /**
+     * Like {@link #set(Map, Long)} but leaves the keys that already hold a value untouched.
+     */
+    Uni<Void> setIfAbsent(@NotNull final Map<String, C> mp,
+                          Long expiryInMilliseconds);
+
     Uni<Response> hset(@NotBlank final String hash,
                        @NotBlank String field,
                        @NotNull final C e) throws JsonProcessingException;
@@ -82,6 +166,20 @@ public interface BaseCacheRepository<C> {
 
     Multi<String> hkeys(@NotBlank final String hash);
 
+    /**
+     * Streaming {@link #hkeys} backed by {@code HSCAN}.
+     *
+     * @param count COUNT hint of each page, null for {@code framework.redis.scan.count}
+     */
+    Multi<String> hscanKeys(@NotBlank final String hash,
+                            final Integer count);
+
+    /**
+     * Streaming {@link #hgetall} backed by {@code HSCAN}.
+     */
+    Multi<Map.Entry<String, C>> hscan(@NotBlank final String hash,
+                                     final Integer count);
+
     Multi<Optional<C>> hmget(@NotBlank final String hash,
                              @NotEmpty final List<String> fields);
 
@@ -118,6 +216,23 @@ public interface BaseCacheRepository<C> {
 
     Multi<Optional<C>> zrevrange(@NotBlank String hash, Integer start, Integer end);
 
+    /**
+     * Streaming {@link #zrange} that reads the range a page of {@code count} members at a time.
+     */
+    Multi<Optional<C>> zrangeByPage(@NotBlank String hash, Integer start, Integer end, Integer count);
+
+    Multi<Optional<C>> zrevrangeByPage(@NotBlank String hash, Integer start, Integer end, Integer count);
+
+    /**
+     * Streams the whole sorted set with {@code ZSCAN}, in no particular order.
+     */
+    Multi<Pair<C, Double>> zscan(@NotBlank String hash, Integer count);
+
+    /**
+     * Streams the whole set with {@code SSCAN}.
+     */
+    Multi<Optional<C>> sscan(@NotBlank String key, Integer count);
+
     Uni<Response> expire(@NotBlank String key,
                          Long timeInSeconds);
 
@@ -1,38 +1,49 @@
 package com.services.sf.commons.base;
 
-import com.fasterxml.jackson.annotation.JsonAutoDetect;
-import com.fasterxml.jackson.annotation.JsonInclude;
-import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JavaType;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import com.services.common.constant.GlobalConstant;
+import com.services.common.domain.base.BaseDomain;
 import com.services.common.domain.util.LocalContext;
 import com.services.common.enums.ErrorCode;
 import com.services.common.enums.ErrorLevel;
 import com.services.common.exception.BaseRuntimeException;
+import com.services.sf.commons.base.cache.CacheEntry;
+import com.services.sf.commons.base.cache.CacheEnvelope;
+import com.services.sf.commons.base.cache.CacheEpochs;
+import com.services.sf.commons.base.cache.CacheKeyEncoder;
+import com.services.sf.commons.base.cache.CacheMetrics;
+import com.services.sf.commons.base.cache.ClusterSlots;
+import com.services.sf.commons.base.cache.RedisScript;
+import com.services.sf.commons.base.cache.codec.CacheCodec;
+import com.services.sf.commons.base.cache.codec.CacheCodecs;
+import com.services.sf.commons.base.cache.codec.JsonCacheCodec;
 import io.opentelemetry.api.trace.SpanKind;
 import io.opentelemetry.extension.annotations.SpanAttribute;
 import io.opentelemetry.extension.annotations.WithSpan;
 import io.quarkus.arc.properties.IfBuildProperty;
 import io.quarkus.logging.Log;
 import io.quarkus.redis.client.reactive.ReactiveRedisClient;
+import io.quarkus.redis.datasource.ScanArgs;
 import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
-import io.smallrye.mutiny.unchecked.Unchecked;
+import io.vertx.mutiny.redis.client.Command;
+import io.vertx.mutiny.redis.client.Request;
 import io.vertx.mutiny.redis.client.Response;
 import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.Setter;
 import lombok.experimental.FieldDefaults;
 import org.apache.commons.lang3.ObjectUtils;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.marshalling.Pair;
 
 import javax.enterprise.context.Dependent;
 import javax.inject.Inject;
 import javax.validation.constraints.NotNull;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -42,27 +53,87 @@ import java.util.stream.IntStream;
 public class BaseCacheRepositoryImpl<C>
         implements BaseCacheRepository<C> {
 
-   final ObjectMapper objectMapper;
+    /**
+     * Compare-and-set on the entity version of the envelope: KEYS[1] is only replaced by ARGV[1] when it is
+     * missing, predates the envelope, or holds a version not greater than ARGV[2]. ARGV[3] is the TTL in ms.
+     */
+    static final RedisScript SET_IF_NOT_OLDER = new RedisScript("""
+            local current = redis.call('GET', KEYS[1])
+            if current and string.len(current) >= 13 and string.byte(current, 1) == 0xCA and string.byte(current, 2) == 0xC4 then
+                local version = struct.unpack('>i8', current, 6)
+                if version > tonumber(ARGV[2]) then
+                    return 0
+                end
+            end
+            redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[3])
+            return 1
+            """);
+
+    /**
+     * Runs the write command ARGV[1] on KEYS[1] with the arguments ARGV[4..], then sets its expiry with ARGV[2]
+     * ({@code PEXPIRE} or {@code PEXPIREAT}) and ARGV[3], so the key is never left without a TTL. Arguments are
+     * unpacked in chunks of 1000 (an even count, fields and scores come in pairs) to stay below the Lua stack limit.
+     */
+    static final RedisScript WRITE_WITH_EXPIRY = new RedisScript("""
+            local result = 0
+            for i = 4, #ARGV, 1000 do
+                result = result + redis.call(ARGV[1], KEYS[1], unpack(ARGV, i, math.min(i + 999, #ARGV)))
+            end
+            redis.call(ARGV[2], KEYS[1], ARGV[3])
+            return result
+            """);
+
     @Inject
     protected LocalContext localContext;
 
     @Inject
     protected ReactiveRedisDataSource reactiveRedisDataSource;
 
+    @Inject
+    protected CacheCodecs cacheCodecs;
+
+    @Inject
+    protected CacheMetrics cacheMetrics;
+
+    @Inject
+    protected CacheEpochs cacheEpochs;
+
+    @ConfigProperty(name = "framework.redis.compression.thresholdInBytes", defaultValue = "1024")
+    protected Integer compressionThresholdInBytes = 1024;
+
+    /**
+     * In a cluster, multi-key commands and pipelines are split by hash slot, see {@link ClusterSlots}.
+     */
+    @ConfigProperty(name = "quarkus.redis.client-type", defaultValue = "standalone")
+    protected String clientType = "standalone";
+
+    /**
+     * Default page size of the streaming reads: the COUNT hint of the scans, the size of the range pages.
+     */
+    @ConfigProperty(name = "framework.redis.scan.count", defaultValue = "100")
+    protected Integer scanCount = 100;
+
+    /**
+     * Entity version stored in the envelope of every value.
+     */
     @Setter
-    Boolean hasTenant;
+    Function<C, Long> versionExtractor = value -> value instanceof BaseDomain domain ? domain.getVersion() : null;
 
-    JavaType listType;
+    @Setter
+    Boolean hasTenant;
 
+    @Setter
     Class<C> domainClass;
 
-    @Setter
     String bucketPrefix;
 
+    CacheKeyEncoder keyEncoder;
+
+    @Getter
+    CacheCodec codec;
+
     public BaseCacheRepositoryImpl() {
-        this.objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
-                .setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
-                .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        this.codec = new JsonCacheCodec();
     }
 
     public BaseCacheRepositoryImpl(@NotNull Class<C> domainClass,
@@ -70,7 +141,7 @@ public class BaseCacheRepositoryImpl<C>
         this();
         this.domainClass = domainClass;
         this.bucketPrefix = bucketPrefix;
-        this.listType = new ObjectMapper().getTypeFactory().constructCollectionType(List.class, domainClass);
+        this.keyEncoder = new CacheKeyEncoder(bucketPrefix);
         this.hasTenant = true;
     }
 
@@ -81,66 +152,287 @@ public class BaseCacheRepositoryImpl<C>
         this.hasTenant = hasTenant;
     }
 
-    public void setDomainClass(Class<C> clazz) {
-        this.domainClass = clazz;
-        this.listType = new ObjectMapper().getTypeFactory().constructCollectionType(List.class, domainClass);
+    /**
+     * Also resolves the codec configured for the bucket and, when enabled, the key epochs.
+     */
+    public void setBucketPrefix(String bucketPrefix) {
+        this.bucketPrefix = bucketPrefix;
+        this.keyEncoder = new CacheKeyEncoder(bucketPrefix, cacheEpochs != null && cacheEpochs.isEnabled() ? cacheEpochs : null);
+
+        if (cacheCodecs != null)
+            this.codec = cacheCodecs.forBucket(bucketPrefix);
+    }
+
+    public String getBucket(String id) {
+        return keyEncoder.key(tenant(), id);
+    }
+
+    String getBucket(String tenant, String id) {
+        return keyEncoder.key(tenant, id);
+    }
+
+    byte[] getBucketBytes(String tenant, String id) {
+        return keyEncoder.keyBytes(tenant, id);
     }
 
-    private String getBucket(String id) {
-        Log.debug("LocalContext in Cache : " + localContext);
-        return (this.hasTenant ? localContext.getTenantId() : "") +
-                GlobalConstant.DELIMITER +
-                this.bucketPrefix +
-                GlobalConstant.DELIMITER +
-                id;
+    String tenant() {
+        return this.hasTenant ? localContext.getTenantId() : CacheKeyEncoder.NO_TENANT;
     }
 
-    private Response okResponse() {
+    Response okResponse() {
         return Response.newInstance(SimpleStringType.OK);
     }
 
+    private boolean isCluster() {
+        return "cluster".equalsIgnoreCase(clientType);
+    }
+
+    /**
+     * @return the positions of the keys grouped by hash slot in a cluster, a single group of all of them otherwise
+     */
+    private Collection<List<Integer>> slotGroups(List<byte[]> keys) {
+        return isCluster() ?
+                ClusterSlots.groupBySlot(keys) :
+                List.of(IntStream.range(0, keys.size()).boxed().collect(Collectors.toList()));
+    }
+
+    private Uni<Response> send(Command command, List<byte[]> keys, List<Integer> positions) {
+        Request request = Request.cmd(command);
+        positions.forEach(position -> request.arg(keys.get(position)));
+        return reactiveRedisDataSource.getRedis().send(request);
+    }
+
+    /**
+     * One {@code MGET} per hash slot, sent in parallel.
+     *
+     * @return the values in the order of the keys
+     */
+    private Uni<Response[]> mget(List<byte[]> keys) {
+        Response[] values = new Response[keys.size()];
+
+        return Multi.createFrom().iterable(slotGroups(keys))
+                .onItem().transformToUniAndMerge(positions -> send(Command.MGET, keys, positions)
+                        .invoke(response -> {
+                            for (int i = 0; i < positions.size(); i++)
+                                values[positions.get(i)] = response.get(i);
+                        }))
+                .collect().last()
+                .replaceWith(values);
+    }
+
+    /**
+     * Pipelines the requests, one pipeline per hash slot in parallel in a cluster.
+     *
+     * @param keys the key of each request
+     * @return the responses in the order of the requests
+     */
+    Uni<List<Response>> pipeline(List<byte[]> keys, List<Request> requests) {
+        if (!isCluster())
+            return reactiveRedisDataSource.getRedis().batch(requests);
+
+        Response[] responses = new Response[requests.size()];
+
+        return Multi.createFrom().iterable(ClusterSlots.groupBySlot(keys))
+                .onItem().transformToUniAndMerge(positions -> reactiveRedisDataSource.getRedis()
+                        .batch(positions.stream().map(requests::get).collect(Collectors.toList()))
+                        .invoke(slotResponses -> {
+                            for (int i = 0; i < positions.size(); i++)
+                                responses[positions.get(i)] = slotResponses.get(i);
+                        }))
+                .collect().last()
+                .replaceWith(() -> Arrays.asList(responses));
+    }
+
+    <T> Uni<T> observe(String operation, Uni<T> uni) {
+        return cacheMetrics == null ? uni : cacheMetrics.time(bucketPrefix, operation, uni);
+    }
+
+    <T> Uni<T> observeRead(String operation, Uni<T> uni) {
+        return cacheMetrics == null ? uni : cacheMetrics.timeRead(bucketPrefix, operation, uni);
+    }
+
+    byte[] read(String key, byte[] value) {
+        if (cacheMetrics != null)
+            cacheMetrics.payload(bucketPrefix, "read", key, value.length);
+        return value;
+    }
+
+    byte[] written(String key, byte[] value) {
+        if (cacheMetrics != null)
+            cacheMetrics.payload(bucketPrefix, "write", key, value.length);
+        return value;
+    }
+
     @WithSpan(kind = SpanKind.CLIENT)
     public Uni<Boolean> exists(@SpanAttribute("query.id") final String id) {
-        return reactiveRedisDataSource.key(String.class).exists(getBucket(id));
+        return observe("exists", reactiveRedisDataSource.key(String.class).exists(getBucket(id)));
     }
 
     @WithSpan(kind = SpanKind.CLIENT)
     public Uni<C> get(@SpanAttribute("query.id") final String id) {
-        return reactiveRedisDataSource.string(domainClass).get(getBucket(id));
+        return lookup(id).map(optional -> optional == null ? null : optional.orElse(null));
+    }
+
+    @WithSpan(kind = SpanKind.CLIENT)
+    public Uni<Optional<C>> lookup(@SpanAttribute("query.id") final String id) {
+        String key = getBucket(id);
+        return observeRead("get", reactiveRedisDataSource.string(byte[].class).get(key)
+                .onItem().ifNotNull().transform(value -> decode(read(key, value))));
+    }
+
+    @WithSpan(kind = SpanKind.CLIENT)
+    public Uni<CacheEntry<C>> getEntry(@SpanAttribute("query.id") final String id) {
+        String key = getBucket(id);
+        return observeRead("get", reactiveRedisDataSource.string(byte[].class).get(key)
+                .onItem().ifNotNull().transform(value -> decodeEntry(read(key, value))));
     }
 
     @WithSpan(kind = SpanKind.CLIENT)
     public Multi<Optional<C>> get(@SpanAttribute("query.id") final List<String> ids) {
-        String[] keys = ids.stream().map(this::getBucket).toArray(String[]::new);
-        return reactiveRedisDataSource.string(domainClass).mget(keys)
-                .onItem().transformToMulti(keyValueMap -> Multi.createFrom().emitter(multiEmitter -> {
-                            Arrays.stream(keys).forEach(key -> multiEmitter.emit(keyValueMap.containsKey(key) ? Optional.of(keyValueMap.get(key)) : Optional.empty()));
+        String tenant = tenant();
+        List<byte[]> keys = ids.stream().map(id -> getBucketBytes(tenant, id)).collect(Collectors.toList());
+
+        return observe("mget", mget(keys))
+                .onItem().transformToMulti(values -> Multi.createFrom().emitter(multiEmitter -> {
+                            int hits = 0;
+                            for (int i = 0; i < ids.size(); i++) {
+                                Response value = values[i];
+                                C decoded = value != null ? decodeValue(read(keyEncoder.key(tenant, ids.get(i)), value.toBytes())) : null;
+                                hits += decoded != null ? 1 : 0;
+                                multiEmitter.emit(Optional.ofNullable(decoded));
+                            }
+                            if (cacheMetrics != null)
+                                cacheMetrics.lookups(bucketPrefix, "mget", hits, ids.size() - hits);
                             multiEmitter.complete();
                         })
                 );
     }
 
+    /**
+     * @return null when the value cannot be decoded, an empty optional for a negative entry
+     */
+    Optional<C> decode(byte[] value) {
+        CacheEntry<C> entry = decodeEntry(value);
+        return entry == null ? null : Optional.ofNullable(entry.getValue());
+    }
+
+    C decodeValue(byte[] value) {
+        CacheEntry<C> entry = decodeEntry(value);
+        return entry == null ? null : entry.getValue();
+    }
+
+    /**
+     * Values without an envelope were written before it existed and are decoded with the bucket codec. A value
+     * that cannot be decoded (unknown format or codec, schema change) is reported as a miss.
+     */
+    CacheEntry<C> decodeEntry(byte[] value) {
+        try {
+            if (!CacheEnvelope.isEnveloped(value))
+                return CacheEntry.untimed(codec.decode(value, domainClass));
+
+            CacheEnvelope envelope = CacheEnvelope.fromBytes(value).orElse(null);
+
+            if (envelope == null) {
+                Log.debugf("Unknown cache envelope format in bucket %s, treated as a miss", bucketPrefix);
+                return null;
+            }
+
+            if (envelope.isNegative())
+                return CacheEntry.negativeEntry();
+
+            C decoded = codecOf(envelope).decode(envelope.getPayload(), domainClass);
+
+            return envelope.isTimed() ?
+                    CacheEntry.of(decoded, envelope.getEntityVersion(), envelope.getWrittenAt(), envelope.getExpiresAt(), envelope.getComputeMillis()) :
+                    CacheEntry.untimed(decoded, envelope.getEntityVersion());
+        } catch (RuntimeException e) {
+            Log.debugf("Undecodable cache value in bucket %s, treated as a miss: %s", bucketPrefix, e.getMessage());
+            return null;
+        }
+    }
+
+    private CacheCodec codecOf(CacheEnvelope envelope) {
+        if (envelope.getCodecId() == codec.getId() || cacheCodecs == null)
+            return codec;
+
+        return cacheCodecs.forId(envelope.getCodecId())
+                .orElseThrow(() -> new IllegalStateException("Unknown cache codec id " + envelope.getCodecId()));
+    }
+
+    byte[] encode(C value) {
+        return encode(value, versionExtractor.apply(value));
+    }
+
+    byte[] encode(C value, Long version) {
+        return CacheEnvelope.of(codec.getId(), version, codec.encode(value))
+                .toBytes(compressionThresholdInBytes);
+    }
+
+    byte[] encodeEntry(CacheEntry<C> entry) {
+        return CacheEnvelope.timed(
+                codec.getId(),
+                entryVersion(entry),
+                entry.getWrittenAt(),
+                entry.getExpiresAt(),
+                entry.getComputeMillis(),
+                codec.encode(entry.getValue())
+        ).toBytes(compressionThresholdInBytes);
+    }
+
+    Long entryVersion(CacheEntry<C> entry) {
+        return entry.getVersion() != null ? entry.getVersion() : versionExtractor.apply(entry.getValue());
+    }
+
+    byte[] encodeNegative() {
+        return CacheEnvelope.negative(codec.getId()).toBytes(Integer.MAX_VALUE);
+    }
+
+    byte[] encodeList(List<C> values) {
+        return CacheEnvelope.of(codec.getId(), null, codec.encodeList(values, domainClass))
+                .toBytes(compressionThresholdInBytes);
+    }
+
+    List<C> decodeList(byte[] value) {
+        try {
+            if (!CacheEnvelope.isEnveloped(value))
+                return codec.decodeList(value, domainClass);
+
+            CacheEnvelope envelope = CacheEnvelope.fromBytes(value).orElse(null);
+
+            return envelope == null ? null : codecOf(envelope).decodeList(envelope.getPayload(), domainClass);
+        } catch (RuntimeException e) {
+            Log.debugf("Undecodable cache list in bucket %s, treated as a miss: %s", bucketPrefix, e.getMessage());
+            return null;
+        }
+    }
+
     @WithSpan(kind = SpanKind.CLIENT)
     public Uni<List<C>> getList(@SpanAttribute("query.id") String id) {
-        return reactiveRedisDataSource.string(String.class).get(getBucket(id))
-                .onItem().ifNotNull().transform(Unchecked.function(a -> objectMapper.readValue(a, listType)));
+        String key = getBucket(id);
+        return observeRead("getList", reactiveRedisDataSource.string(byte[].class).get(key)
+                .onItem().ifNotNull().transform(value -> decodeList(read(key, value))));
     }
 
     @WithSpan(kind = SpanKind.CLIENT)
     public Uni<Response> set(final String id, final C t) throws JsonProcessingException {
-        return reactiveRedisDataSource.string(domainClass).set(getBucket(id), t).replaceWith(this::okResponse);
+        String key = getBucket(id);
+        return observe("set", reactiveRedisDataSource.string(byte[].class).set(key, written(key, encode(t))))
+                .replaceWith(this::okResponse);
     }
 
     @WithSpan(kind = SpanKind.CLIENT)
     public Uni<Response> set(final String id, final List<C> t) throws JsonProcessingException {
-        return reactiveRedisDataSource.string(String.class).set(getBucket(id), objectMapper.writeValueAsString(t)).replaceWith(this::okResponse);
+        String key = getBucket(id);
+        return observe("setList", reactiveRedisDataSource.string(byte[].class).set(key, written(key, encodeList(t))))
+                .replaceWith(this::okResponse);
     }
 
     @WithSpan(kind = SpanKind.CLIENT)
     public Uni<Response> set(final String id, final List<C> t, Long expiryInMilliseconds) throws JsonProcessingException {
         SetArgs setArgs = new SetArgs();
         setArgs.px(expiryInMilliseconds);
-        return reactiveRedisDataSource.string(String.class).set(getBucket(id), objectMapper.writeValueAsString(t), setArgs)
+        String key = getBucket(id);
+        return observe("setList", reactiveRedisDataSource.string(byte[].class).set(key, written(key, encodeList(t)), setArgs))
                 .replaceWith(this::okResponse);
     }
 
@@ -148,34 +440,186 @@ public class BaseCacheRepositoryImpl<C>
     public Uni<Response> set(final String id, final C t, Long expiryInMilliseconds) throws JsonProcessingException {
         SetArgs setArgs = new SetArgs();
         setArgs.px(expiryInMilliseconds);
-        return reactiveRedisDataSource.string(domainClass).set(getBucket(id), t, setArgs)
+        String key = getBucket(id);
+        return observe("set", reactiveRedisDataSource.string(byte[].class).set(key, written(key, encode(t)), setArgs))
+                .replaceWith(this::okResponse);
+    }
+
+    /**
+     * Stores the entry with its timing. The key outlives the logical expiry by {@code staleInMilliseconds} so the
+     * value can still be served while it is reloaded.
+     */
+    @WithSpan(kind = SpanKind.CLIENT)
+    public Uni<Response> setEntry(@SpanAttribute("query.id") final String id, final CacheEntry<C> entry, Long staleInMilliseconds) {
+        return setEntryAtKey(getBucket(id), entry, staleInMilliseconds);
+    }
+
+    @WithSpan(kind = SpanKind.CLIENT)
+    public Uni<Response> setEntryAtKey(@SpanAttribute("query.key") final String key, final CacheEntry<C> entry, Long staleInMilliseconds) {
+        SetArgs setArgs = new SetArgs();
+        setArgs.px(entryExpiry(entry, staleInMilliseconds));
+        return observe("set", reactiveRedisDataSource.string(byte[].class).set(key, written(key, encodeEntry(entry)), setArgs))
+                .replaceWith(this::okResponse);
+    }
+
+    long entryExpiry(CacheEntry<C> entry, Long staleInMilliseconds) {
+        return Math.max(1L, entry.getExpiresAt() - System.currentTimeMillis() + staleInMilliseconds);
+    }
+
+    @WithSpan(kind = SpanKind.CLIENT)
+    public Uni<Response> setNegative(@SpanAttribute("query.id") final String id, Long expiryInMilliseconds) {
+        return setNegativeAtKey(getBucket(id), expiryInMilliseconds);
+    }
+
+    @WithSpan(kind = SpanKind.CLIENT)
+    public Uni<Response> setNegativeAtKey(@SpanAttribute("query.key") final String key, Long expiryInMilliseconds) {
+        SetArgs setArgs = new SetArgs();
+        setArgs.px(expiryInMilliseconds);
+        return observe("setNegative", reactiveRedisDataSource.string(byte[].class).set(key, encodeNegative(), setArgs))
                 .replaceWith(this::okResponse);
     }
 
+    @WithSpan(kind = SpanKind.CLIENT)
+    public Uni<Boolean> setIfNotOlder(@SpanAttribute("query.id") final String id, final C t, final Long version, Long expiryInMilliseconds) {
+        byte[] key = getBucketBytes(tenant(), id);
+        byte[] value = written(getBucket(id), encode(t, version));
+        return observe("setIfNotOlder", SET_IF_NOT_OLDER.execute(reactiveRedisDataSource.getRedis(), List.of(key), List.of(value, version, expiryInMilliseconds)))
+                .map(response -> response.toInteger() == 1);
+    }
+
+    /**
+     * One compare-and-set per entry, pipelined.
+     */
+    @WithSpan(kind = SpanKind.CLIENT)
+    public Uni<Void> setIfNotOlder(final Map<String, C> mp, final Map<String, Long> versions, Long expiryInMilliseconds) {
+        if (mp.isEmpty())
+            return Uni.createFrom().voidItem();
+
+        String tenant = tenant();
+        List<byte[]> keys = new ArrayList<>();
+        List<List<Object>> args = new ArrayList<>();
+
+        mp.forEach((id, value) -> {
+            Long version = versions.get(id);
+            keys.add(getBucketBytes(tenant, id));
+            args.add(List.of(
+                    written(keyEncoder.key(tenant, id), encode(value, version)),
+                    version == null ? CacheEnvelope.NO_VERSION : version,
+                    expiryInMilliseconds));
+        });
+
+        return observe("setIfNotOlder", SET_IF_NOT_OLDER.executeEach(requests -> pipeline(keys, requests), keys, args))
+                .replaceWithVoid();
+    }
+
+    @WithSpan(kind = SpanKind.CLIENT)
+    public Uni<Boolean> setEntryIfNotOlderAtKey(@SpanAttribute("query.key") final String key, final CacheEntry<C> entry, Long staleInMilliseconds) {
+        Long version = entryVersion(entry);
+        byte[] value = written(key, encodeEntry(entry));
+        return observe("setIfNotOlder", SET_IF_NOT_OLDER.execute(reactiveRedisDataSource.getRedis(),
+                        List.of(key.getBytes(StandardCharsets.UTF_8)),
+                        List.of(value, version == null ? CacheEnvelope.NO_VERSION : version, entryExpiry(entry, staleInMilliseconds))))
+                .map(response -> response.toInteger() == 1);
+    }
+
+    @WithSpan(kind = SpanKind.CLIENT)
+    public Uni<Boolean> setTombstone(@SpanAttribute("query.id") final String id, final Long version, Long expiryInMilliseconds) {
+        byte[] key = getBucketBytes(tenant(), id);
+        byte[] value = CacheEnvelope.negative(codec.getId(), version).toBytes(Integer.MAX_VALUE);
+        return observe("setTombstone", SET_IF_NOT_OLDER.execute(reactiveRedisDataSource.getRedis(), List.of(key), List.of(value, version, expiryInMilliseconds)))
+                .map(response -> response.toInteger() == 1);
+    }
+
     @WithSpan(kind = SpanKind.CLIENT)
     public Uni<Void> delete(List<String> ids) {
-        return reactiveRedisDataSource.key(String.class).del(ids.stream().map(this::getBucket).toArray(String[]::new))
+        String tenant = tenant();
+        List<byte[]> keys = ids.stream().map(id -> getBucketBytes(tenant, id)).collect(Collectors.toList());
+
+        return observe("delete", Multi.createFrom().iterable(slotGroups(keys))
+                .onItem().transformToUniAndMerge(positions -> send(Command.DEL, keys, positions))
+                .collect().last())
                 .replaceWithVoid();
     }
 
     @WithSpan(kind = SpanKind.CLIENT)
     public Uni<Void> mset(final Map<String, C> mp) {
-        return reactiveRedisDataSource.string(domainClass).mset(mp.entrySet().stream().collect(Collectors.toMap(keyValue -> getBucket(keyValue.getKey()), Map.Entry::getValue)));
+        Map<String, byte[]> values = new HashMap<>();
+        mp.forEach((id, value) -> {
+            String key = getBucket(id);
+            values.put(key, written(key, encode(value)));
+        });
+        return observe("mset", reactiveRedisDataSource.string(byte[].class).mset(values));
+    }
+
+    /**
+     * Writes all the entries with the same expiry in a single pipelined round trip ({@code SET key value PX ms} per entry).
+     */
+    @WithSpan(kind = SpanKind.CLIENT)
+    public Uni<Void> set(final Map<String, C> mp, Long expiryInMilliseconds) {
+        return batchSet(mp, expiryInMilliseconds, false);
+    }
+
+    @WithSpan(kind = SpanKind.CLIENT)
+    public Uni<Void> setIfAbsent(final Map<String, C> mp, Long expiryInMilliseconds) {
+        return batchSet(mp, expiryInMilliseconds, true);
+    }
+
+    private Uni<Void> batchSet(final Map<String, C> mp, Long expiryInMilliseconds, boolean ifAbsent) {
+        if (mp.isEmpty())
+            return Uni.createFrom().voidItem();
+
+        String tenant = tenant();
+        List<byte[]> keys = new ArrayList<>();
+        List<Request> requests = mp.entrySet().stream()
+                .map(keyValue -> {
+                    byte[] key = getBucketBytes(tenant, keyValue.getKey());
+                    keys.add(key);
+                    Request request = Request.cmd(Command.SET)
+                            .arg(key)
+                            .arg(written(keyEncoder.key(tenant, keyValue.getKey()), encode(keyValue.getValue())))
+                            .arg("PX")
+                            .arg(expiryInMilliseconds);
+                    return ifAbsent ? request.arg("NX") : request;
+                })
+                .collect(Collectors.toList());
+
+        return observe("mset", pipeline(keys, requests)).replaceWithVoid();
     }
 
     @WithSpan(kind = SpanKind.CLIENT)
     public Uni<Response> hset(@SpanAttribute("query.hash") final String hash, @SpanAttribute("query.key") String field, final C e) throws JsonProcessingException {
-        return reactiveRedisDataSource.hash(domainClass).hset(getBucket(hash), field, e)
+        String key = getBucket(hash);
+        return observe("hset", reactiveRedisDataSource.hash(byte[].class).hset(key, field, written(key, encode(e))))
                 .map(wasSet -> wasSet ? 1 : 0).map(returnValue -> Response.newInstance(NumberType.create(returnValue)));
     }
 
 
     public Uni<Response> hset(String hash, String field, C e, Long timeInSeconds) throws JsonProcessingException {
-        return this.hset(hash, field, e).call(() -> this.expire(hash, timeInSeconds));
+        return this.hsetWithExpiry(hash, field, e, "PEXPIRE", timeInSeconds * 1000);
     }
 
     public Uni<Response> hset(String hash, String field, C e, Instant instant) throws JsonProcessingException {
-        return this.hset(hash, field, e).call(() -> this.expireat(hash, instant));
+        return this.hsetWithExpiry(hash, field, e, "PEXPIREAT", instant.toEpochMilli());
+    }
+
+    private Uni<Response> hsetWithExpiry(String hash, String field, C e, String expireCommand, long expiry) {
+        String key = getBucket(hash);
+        return writeWithExpiry("hset", "HSET", hash, List.of(field, written(key, encode(e))), expireCommand, expiry);
+    }
+
+    /**
+     * Writes and sets the expiry of the key in a single atomic round trip, see {@link #WRITE_WITH_EXPIRY}.
+     *
+     * @param args arguments of the write command, after the key
+     */
+    private Uni<Response> writeWithExpiry(String operation, String command, String hash, List<Object> args, String expireCommand, long expiry) {
+        List<Object> argv = new ArrayList<>(args.size() + 3);
+        argv.add(command);
+        argv.add(expireCommand);
+        argv.add(expiry);
+        argv.addAll(args);
+
+        return observe(operation, WRITE_WITH_EXPIRY.execute(reactiveRedisDataSource.getRedis(), List.of(getBucketBytes(tenant(), hash)), argv));
     }
 
     @WithSpan(kind = SpanKind.CLIENT)
@@ -191,46 +635,163 @@ public class BaseCacheRepositoryImpl<C>
         }
 
         // TODO replace with hset?
-        return this.reactiveRedisDataSource.hash(domainClass).hmset(getBucket(hash), IntStream.range(0, key.size()).boxed().collect(Collectors.toMap(key::get, values::get))
+        String bucket = getBucket(hash);
+        return observe("hmset", this.reactiveRedisDataSource.hash(byte[].class).hmset(bucket, IntStream.range(0, key.size()).boxed().collect(Collectors.toMap(key::get, index -> written(bucket, encode(values.get(index))))))
         ).replaceWith(this::okResponse);
     }
 
     @Deprecated(since = "3.12.0")
     public Uni<Response> hmset(String hash, List<String> key, List<C> values, Long timeInSeconds) {
-        return hmset(hash, key, values).call(() -> this.expire(hash, timeInSeconds));
+        return hmsetWithExpiry(hash, key, values, "PEXPIRE", timeInSeconds * 1000);
     }
 
     @Deprecated(since = "3.12.0")
     public Uni<Response> hmset(String hash, List<String> key, List<C> values, Instant instant) {
-        return hmset(hash, key, values).call(() -> this.expireat(hash, instant));
+        return hmsetWithExpiry(hash, key, values, "PEXPIREAT", instant.toEpochMilli());
+    }
+
+    private Uni<Response> hmsetWithExpiry(String hash, List<String> key, List<C> values, String expireCommand, long expiry) {
+        if (key.size() != values.size()) {
+            throw new BaseRuntimeException(
+                    ErrorLevel.WARNING,
+                    ErrorCode.BAD_REQUEST,
+                    "Arrays are of different size",
+                    "key and value array do not have the same length"
+            );
+        }
+
+        String bucket = getBucket(hash);
+        List<Object> args = new ArrayList<>(key.size() * 2);
+        for (int i = 0; i < key.size(); i++) {
+            args.add(key.get(i));
+            args.add(written(bucket, encode(values.get(i))));
+        }
+
+        return writeWithExpiry("hmset", "HSET", hash, args, expireCommand, expiry).replaceWith(this::okResponse);
     }
 
     @WithSpan(kind = SpanKind.CLIENT)
     public Uni<C> hget(@SpanAttribute("query.hash") final String hash, @SpanAttribute("query.key") final String id) {
-        return reactiveRedisDataSource.hash(domainClass).hget(getBucket(hash), id);
+        String key = getBucket(hash);
+        return observeRead("hget", reactiveRedisDataSource.hash(byte[].class).hget(key, id)
+                .onItem().ifNotNull().transform(value -> decodeValue(read(key, value))));
     }
 
     @WithSpan(kind = SpanKind.CLIENT)
     public Uni<Map<String, C>> hgetall(@SpanAttribute("query.hash") final String hash) {
-        return reactiveRedisDataSource.hash(domainClass).hgetall(getBucket(hash));
+        String key = getBucket(hash);
+        return observe("hgetall", reactiveRedisDataSource.hash(byte[].class).hgetall(key))
+                .map(keyValueMap -> keyValueMap.entrySet().stream()
+                        .map(keyValue -> Pair.create(keyValue.getKey(), decodeValue(read(key, keyValue.getValue()))))
+                        .filter(pair -> pair.getB() != null)
+                        .collect(Collectors.toMap(Pair::getA, Pair::getB)));
     }
 
     @WithSpan(kind = SpanKind.CLIENT)
     public Uni<Void> hdel(@SpanAttribute("query.hash") final String hash, final List<String> fields) {
-        return reactiveRedisDataSource.hash(domainClass).hdel(getBucket(hash), fields.toArray(String[]::new)).replaceWithVoid();
+        return observe("hdel", reactiveRedisDataSource.hash(byte[].class).hdel(getBucket(hash), fields.toArray(String[]::new))).replaceWithVoid();
     }
 
     @WithSpan(kind = SpanKind.CLIENT)
     public Multi<String> hkeys(@SpanAttribute("query.hash") final String hash) {
-        return reactiveRedisDataSource.hash(domainClass).hkeys(getBucket(hash))
+        return observe("hkeys", reactiveRedisDataSource.hash(byte[].class).hkeys(getBucket(hash)))
                 .onItem().transformToMulti(keys -> Multi.createFrom().iterable(keys));
     }
 
+    /**
+     * Streams the fields of the hash with {@code HSCAN}, a page of about {@code count} fields at a time, as the
+     * subscriber requests them. A field may be returned more than once if the hash is modified during the scan.
+     *
+     * @param count COUNT hint of each page, null for {@code framework.redis.scan.count}
+     */
+    public Multi<String> hscanKeys(final String hash, final Integer count) {
+        return reactiveRedisDataSource.hash(byte[].class).hscan(getBucket(hash), scanArgs(count))
+                .toMulti()
+                .map(Map.Entry::getKey);
+    }
+
+    /**
+     * Streams the entries of the hash with {@code HSCAN}, see {@link #hscanKeys(String, Integer)}. Values that cannot
+     * be decoded are skipped.
+     */
+    public Multi<Map.Entry<String, C>> hscan(final String hash, final Integer count) {
+        String key = getBucket(hash);
+        return reactiveRedisDataSource.hash(byte[].class).hscan(key, scanArgs(count))
+                .toMulti()
+                .map(entry -> Map.entry(entry.getKey(), Optional.ofNullable(decodeValue(read(key, entry.getValue())))))
+                .filter(entry -> entry.getValue().isPresent())
+                .map(entry -> Map.entry(entry.getKey(), entry.getValue().get()));
+    }
+
+    /**
+     * Streams the members of the sorted set with {@code ZSCAN}, in no particular order; use
+     * {@link #zrangeByPage(String, Integer, Integer, Integer)} when the order matters.
+     */
+    public Multi<Pair<C, Double>> zscan(final String hash, final Integer count) {
+        return reactiveRedisDataSource.sortedSet(byte[].class).zscan(getBucket(hash), scanArgs(count))
+                .toMulti()
+                .map(scored -> Pair.create(decodeValue(scored.value()), scored.score()));
+    }
+
+    /**
+     * Streams the members of the set with {@code SSCAN}.
+     */
+    public Multi<Optional<C>> sscan(final String key, final Integer count) {
+        return reactiveRedisDataSource.set(byte[].class).sscan(getBucket(key), scanArgs(count))
+                .toMulti()
+                .map(value -> Optional.ofNullable(decodeValue(value)));
+    }
+
+    /**
+     * Same as {@link #zrange(String, Integer, Integer)}, but reads the range a page of {@code count} members at a
+     * time as the subscriber requests them. Members inserted or removed during the read may shift the pages.
+     *
+     * @param start non-negative, a negative start reads the range in one reply
+     * @param end   inclusive, -1 for the end of the set
+     */
+    public Multi<Optional<C>> zrangeByPage(String hash, Integer start, Integer end, Integer count) {
+        return rangeByPage(hash, start, end, count, false);
+    }
+
+    public Multi<Optional<C>> zrevrangeByPage(String hash, Integer start, Integer end, Integer count) {
+        return rangeByPage(hash, start, end, count, true);
+    }
+
+    private Multi<Optional<C>> rangeByPage(String hash, Integer start, Integer end, Integer count, boolean reverse) {
+        if (start < 0 || end < -1)
+            return reverse ? zrevrange(hash, start, end) : zrange(hash, start, end);
+
+        String key = getBucket(hash);
+        int page = count == null ? scanCount : count;
+        ZRangeArgs zRangeArgs = new ZRangeArgs();
+        if (reverse)
+            zRangeArgs.rev();
+
+        return Multi.createBy().repeating()
+                .uni(() -> new AtomicLong(start), next -> {
+                    long from = next.get();
+                    long to = end < 0 ? from + page - 1 : Math.min(from + page - 1, end);
+                    next.set(to + 1);
+                    return from > to && end >= 0 ?
+                            Uni.createFrom().item(List.<byte[]>of()) :
+                            observe(reverse ? "zrevrange" : "zrange", reactiveRedisDataSource.sortedSet(byte[].class).zrange(key, from, to, zRangeArgs));
+                })
+                .whilst(values -> values.size() == page)
+                .onItem().transformToIterable(values -> values.stream()
+                        .map(value -> Optional.ofNullable(decodeValue(value)))
+                        .collect(Collectors.toList()));
+    }
+
+    private ScanArgs scanArgs(Integer count) {
+        return new ScanArgs().count(count == null ? scanCount : count);
+    }
+
     @WithSpan(kind = SpanKind.CLIENT)
     public Multi<Optional<C>> hmget(@SpanAttribute("query.hash") final String hash, final List<String> fields) {
-        return reactiveRedisDataSource.hash(domainClass).hmget(getBucket(hash), fields.toArray(String[]::new))
+        String key = getBucket(hash);
+        return observe("hmget", reactiveRedisDataSource.hash(byte[].class).hmget(key, fields.toArray(String[]::new)))
                 .onItem().transformToMulti(keyValueMap -> Multi.createFrom().emitter(multiEmitter -> {
-                            fields.forEach(field -> multiEmitter.emit(keyValueMap.containsKey(field) ? Optional.of(keyValueMap.get(field)) : Optional.empty()));
+                            fields.forEach(field -> multiEmitter.emit(keyValueMap.get(field) != null ? Optional.ofNullable(decodeValue(read(key, keyValueMap.get(field)))) : Optional.empty()));
                             multiEmitter.complete();
                         })
                 );
@@ -238,6 +799,18 @@ public class BaseCacheRepositoryImpl<C>
 
     @WithSpan(kind = SpanKind.CLIENT)
     public Uni<Response> zadd(@SpanAttribute("query.hash") String hash, List<C> values, List<Number> scores) {
+        return zadd(hash, scoreMap(values, scores));
+    }
+
+    public Uni<Response> zadd(String hash, List<C> values, List<Number> scores, Long timeInSeconds) {
+        return this.zadd(hash, scoreMap(values, scores), timeInSeconds);
+    }
+
+    public Uni<Response> zadd(String hash, List<C> values, List<Number> scores, Instant instant) {
+        return this.zadd(hash, scoreMap(values, scores), instant);
+    }
+
+    private Map<C, Number> scoreMap(List<C> values, List<Number> scores) {
 
         if (values.size() != scores.size()) {
             throw new BaseRuntimeException(
@@ -248,67 +821,70 @@ public class BaseCacheRepositoryImpl<C>
             );
         }
 
-        return zadd(hash, IntStream.range(0, values.size()).boxed().collect(Collectors.toMap(values::get, scores::get)));
-
-    }
-
-    public Uni<Response> zadd(String hash, List<C> values, List<Number> scores, Long timeInSeconds) {
-        return this.zadd(hash, values, scores).call(() -> this.expire(hash, timeInSeconds));
-    }
-
-    public Uni<Response> zadd(String hash, List<C> values, List<Number> scores, Instant instant) {
-        return this.zadd(hash, values, scores).call(() -> this.expireat(hash, instant));
+        return IntStream.range(0, values.size()).boxed().collect(Collectors.toMap(values::get, scores::get));
     }
 
     @WithSpan(kind = SpanKind.CLIENT)
     public Uni<Response> zadd(@SpanAttribute("query.hash") String hash, Map<C, Number> map) {
-        return reactiveRedisDataSource.sortedSet(domainClass)
-                .zadd(getBucket(hash), map.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().doubleValue())))
+        String key = getBucket(hash);
+        return observe("zadd", reactiveRedisDataSource.sortedSet(byte[].class)
+                .zadd(key, map.entrySet().stream().collect(Collectors.toMap(entry -> written(key, encode(entry.getKey())), entry -> entry.getValue().doubleValue()))))
                 .map(count -> Response.newInstance(NumberType.create(count)));
     }
 
     public Uni<Response> zadd(String hash, Map<C, Number> map, Long timeInSeconds) {
-        return this.zadd(hash, map).call(() -> this.expire(hash, timeInSeconds));
+        return this.zaddWithExpiry(hash, map, "PEXPIRE", timeInSeconds * 1000);
     }
 
     public Uni<Response> zadd(String hash, Map<C, Number> map, Instant instant) {
-        return this.zadd(hash, map).call(() -> this.expireat(hash, instant));
+        return this.zaddWithExpiry(hash, map, "PEXPIREAT", instant.toEpochMilli());
+    }
+
+    private Uni<Response> zaddWithExpiry(String hash, Map<C, Number> map, String expireCommand, long expiry) {
+        String key = getBucket(hash);
+        List<Object> args = new ArrayList<>(map.size() * 2);
+        map.forEach((value, score) -> {
+            args.add(score.doubleValue());
+            args.add(written(key, encode(value)));
+        });
+
+        return writeWithExpiry("zadd", "ZADD", hash, args, expireCommand, expiry);
     }
 
     @WithSpan(kind = SpanKind.CLIENT)
     public Uni<Pair<C, Double>> zpopmin(@SpanAttribute("query.hash") String hash) {
-        return reactiveRedisDataSource.sortedSet(domainClass).zpopmin(getBucket(hash)).map(pair -> Pair.create(pair.value(), pair.score()));
+        return observe("zpopmin", reactiveRedisDataSource.sortedSet(byte[].class).zpopmin(getBucket(hash))).map(pair -> Pair.create(decodeValue(pair.value()), pair.score()));
     }
 
     @WithSpan(kind = SpanKind.CLIENT)
     public Uni<Pair<C, Double>> zpopmax(@SpanAttribute("query.hash") String hash) {
-        return reactiveRedisDataSource.sortedSet(domainClass).zpopmax(getBucket(hash)).map(pair -> Pair.create(pair.value(), pair.score()));
+        return observe("zpopmax", reactiveRedisDataSource.sortedSet(byte[].class).zpopmax(getBucket(hash))).map(pair -> Pair.create(decodeValue(pair.value()), pair.score()));
     }
 
     @WithSpan(kind = SpanKind.CLIENT)
     public Multi<Optional<C>> zrange(@SpanAttribute("query.hash") String hash, @SpanAttribute("query.start") Integer start, @SpanAttribute("query.end") Integer end) {
-        return reactiveRedisDataSource.sortedSet(domainClass).zrange(getBucket(hash), start, end)
-                .onItem().transformToMulti(list -> Multi.createFrom().iterable(list.stream().map(Optional::of).collect(Collectors.toList())));
+        return observe("zrange", reactiveRedisDataSource.sortedSet(byte[].class).zrange(getBucket(hash), start, end))
+                .onItem().transformToMulti(list -> Multi.createFrom().iterable(list.stream().map(value -> Optional.ofNullable(decodeValue(value))).collect(Collectors.toList())));
     }
 
     @WithSpan(kind = SpanKind.CLIENT)
     public Multi<Optional<C>> zrevrange(@SpanAttribute("query.hash") String hash, @SpanAttribute("query.start") Integer start, @SpanAttribute("query.end") Integer end) {
         ZRangeArgs zRangeArgs = new ZRangeArgs();
         zRangeArgs.rev();
-        return reactiveRedisDataSource.sortedSet(domainClass).zrange(getBucket(hash), start, end, zRangeArgs)
-                .onItem().transformToMulti(list -> Multi.createFrom().iterable(list.stream().map(Optional::of).collect(Collectors.toList())));
+        return observe("zrevrange", reactiveRedisDataSource.sortedSet(byte[].class).zrange(getBucket(hash), start, end, zRangeArgs))
+                .onItem().transformToMulti(list -> Multi.createFrom().iterable(list.stream().map(value -> Optional.ofNullable(decodeValue(value))).collect(Collectors.toList())));
     }
 
     @WithSpan(kind = SpanKind.CLIENT)
     public Uni<Response> expire(@SpanAttribute("query.hash") String key, Long timeInSeconds) {
-        return reactiveRedisDataSource.key().expire(getBucket(key), timeInSeconds)
+        return observe("expire", reactiveRedisDataSource.key().expire(getBucket(key), timeInSeconds))
                 // Same as redis
                 .map(wasSet -> wasSet ? Response.newInstance(NumberType.create(1)) : Response.newInstance(NumberType.create(0)));
     }
 
     @WithSpan(kind = SpanKind.CLIENT)
     public Uni<Response> expireat(@SpanAttribute("query.hash") String key, Instant instant) {
-        return reactiveRedisDataSource.key().expireat(getBucket(key), instant)
+        return observe("expireat", reactiveRedisDataSource.key().expireat(getBucket(key), instant))
                 // Same as redis
                 .map(wasSet -> wasSet ? Response.newInstance(NumberType.create(1)) : Response.newInstance(NumberType.create(0)));
     }
@@ -2,6 +2,7 @@ package com.services.sf.commons.base;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.services.common.domain.base.BaseDomain;
+import com.services.sf.commons.base.cache.CacheEntry;
 import io.quarkus.arc.properties.IfBuildProperty;
 import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
@@ -19,12 +20,31 @@ import java.util.Optional;
 @IfBuildProperty(name = "framework.redis.enabled", stringValue = "true")
 public interface BaseDomainCacheRepository<E extends BaseDomain, C> {
 
+    String getBucketPrefix();
+
+    String getBucket(@NotBlank final String id);
+
+    /**
+     * Starts a batch of cache operations sent as a single pipeline, see {@link CacheBatch}.
+     */
+    CacheBatch<E, C> batch();
+
     Uni<Boolean> exists(@NotBlank final String id);
 
     Uni<E> get(@NotBlank final String id);
 
     Multi<Optional<E>> get(@NotEmpty final List<String> ids);
 
+    /**
+     * @return null on a miss, an empty optional for a negative entry, the value otherwise
+     */
+    Uni<Optional<E>> lookup(@NotBlank final String id);
+
+    /**
+     * @return null on a miss, otherwise the entry with its write timing
+     */
+    Uni<CacheEntry<E>> getEntry(@NotBlank final String id);
+
     Uni<List<E>> getList(@NotBlank String id);
 
     Uni<Response> set(@NotBlank final String id,
@@ -41,10 +61,75 @@ public interface BaseDomainCacheRepository<E extends BaseDomain, C> {
                       final List<E> t,
                       Long expiryInMilliseconds) throws JsonProcessingException;
 
+    Uni<Response> setEntry(@NotBlank final String id,
+                           @NotNull final CacheEntry<E> entry,
+                           Long staleInMilliseconds);
+
+    Uni<Response> setNegative(@NotBlank final String id,
+                              Long expiryInMilliseconds);
+
+    /**
+     * {@link #setEntry(String, CacheEntry, Long)} to a key resolved beforehand with {@link #getBucket(String)}, for a
+     * fill that may complete after the request that started it.
+     */
+    Uni<Response> setEntryAtKey(@NotBlank final String key,
+                                @NotNull final CacheEntry<E> entry,
+                                Long staleInMilliseconds);
+
+    /**
+     * {@link #setNegative(String, Long)} to a key resolved beforehand with {@link #getBucket(String)}.
+     */
+    Uni<Response> setNegativeAtKey(@NotBlank final String key,
+                                   Long expiryInMilliseconds);
+
+    /**
+     * Writes the entity unless the key already holds a newer version of it.
+     *
+     * @return whether the entity was written
+     */
+    Uni<Boolean> setIfNotOlder(@NotBlank final String id,
+                               @NotNull final E t,
+                               Long expiryInMilliseconds);
+
+    /**
+     * {@link #setIfNotOlder(String, BaseDomain, Long)} for every entity, in a single round trip. An entity without a
+     * version never replaces a versioned one.
+     */
+    Uni<Void> setIfNotOlder(@NotNull final Map<String, E> mp,
+                            Long expiryInMilliseconds);
+
+    /**
+     * {@link #setEntryAtKey(String, CacheEntry, Long)} unless the key already holds a newer version than the one of
+     * the entry.
+     *
+     * @return whether the entry was written
+     */
+    Uni<Boolean> setEntryIfNotOlderAtKey(@NotBlank final String key,
+                                         @NotNull final CacheEntry<E> entry,
+                                         Long staleInMilliseconds);
+
+    Uni<Boolean> setTombstone(@NotBlank final String id,
+                              @NotNull final Long version,
+                              Long expiryInMilliseconds);
+
     Uni<Void> delete(@NotEmpty final List<String> ids);
 
+    /**
+     * Deletes through the {@link com.services.sf.commons.base.cache.InvalidationBatcher}, merged with the
+     * invalidations of concurrent requests.
+     *
+     * @param waitForFlush whether to complete once the keys are unlinked, or right after queuing them
+     */
+    Uni<Void> invalidate(@NotEmpty final List<String> ids, boolean waitForFlush);
+
     Uni<Void> mset(@NotNull final Map<String, E> mp);
 
+    Uni<Void> set(@NotNull final Map<String, E> mp,
+                  Long expiryInMilliseconds);
+
+    Uni<Void> setIfAbsent(@NotNull final Map<String, E> mp,
+                          Long expiryInMilliseconds);
+
     Uni<Response> hset(@NotBlank final String hash,
                        @NotBlank String field,
                        @NotNull final E e) throws JsonProcessingException;
@@ -83,6 +168,20 @@ public interface BaseDomainCacheRepository<E extends BaseDomain, C> {
 
     Multi<String> hkeys(@NotBlank final String hash);
 
+    /**
+     * Streaming {@link #hkeys} backed by {@code HSCAN}.
+     *
+     * @param count COUNT hint of each page, null for {@code framework.redis.scan.count}
+     */
+    Multi<String> hscanKeys(@NotBlank final String hash,
+                            final Integer count);
+
+    /**
+     * Streaming {@link #hgetall} backed by {@code HSCAN}.
+     */
+    Multi<Map.Entry<String, E>> hscan(@NotBlank final String hash,
+                                     final Integer count);
+
     Multi<Optional<E>> hmget(@NotBlank final String hash,
                              @NotEmpty final List<String> fields);
 
@@ -119,6 +218,23 @@ public interface BaseDomainCacheRepository<E extends BaseDomain, C> {
 
     Multi<Optional<E>> zrevrange(@NotBlank String hash, Integer start, Integer end);
 
+    /**
+     * Streaming {@link #zrange} that reads the range a page of {@code count} members at a time.
+     */
+    Multi<Optional<E>> zrangeByPage(@NotBlank String hash, Integer start, Integer end, Integer count);
+
+    Multi<Optional<E>> zrevrangeByPage(@NotBlank String hash, Integer start, Integer end, Integer count);
+
+    /**
+     * Streams the whole sorted set with {@code ZSCAN}, in no particular order.
+     */
+    Multi<Pair<E, Double>> zscan(@NotBlank String hash, Integer count);
+
+    /**
+     * Streams the whole set with {@code SSCAN}.
+     */
+    Multi<Optional<E>> sscan(@NotBlank String key, Integer count);
+
     Uni<Response> expire(@NotBlank String key,
                          Long timeInSeconds);
 
@@ -3,6 +3,12 @@ package com.services.sf.commons.base;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.services.common.domain.base.BaseDomain;
 import com.services.common.domain.util.LocalContext;
+import com.services.common.exception.NotImplementedException;
+import com.services.sf.commons.base.cache.CacheEntry;
+import com.services.sf.commons.base.cache.InvalidationBatcher;
+import com.services.sf.commons.base.cache.NearCache;
+import com.services.sf.commons.base.cache.NearCacheInvalidator;
+import com.services.sf.commons.base.cache.OffHeapStore;
 import io.quarkus.arc.properties.IfBuildProperty;
 import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
@@ -16,10 +22,9 @@ import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.validation.constraints.NotNull;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
+import java.util.*;
 import java.util.stream.Collectors;
 
 @NoArgsConstructor
@@ -40,6 +45,16 @@ public abstract class BaseDomainCacheRepositoryImpl<E extends BaseDomain, C>
     @Inject
     protected BaseCacheRepositoryImpl<C> baseCacheRepository;
 
+    @Inject
+    protected NearCacheInvalidator nearCacheInvalidator;
+
+    @Inject
+    protected InvalidationBatcher invalidationBatcher;
+
+    protected NearCache<C> nearCache;
+
+    protected OffHeapStore offHeapStore;
+
     public BaseDomainCacheRepositoryImpl(@NotNull BaseCacheMapper<E, C> mapper,
                                          @NotNull Class<C> domainClass,
                                          @NotNull String bucketPrefix) {
@@ -59,9 +74,28 @@ public abstract class BaseDomainCacheRepositoryImpl<E extends BaseDomain, C>
 
     @PostConstruct
     public void setBaseCacheRepository() {
+        OffHeapStore.forBucket(this.bucketPrefix).ifPresent(store -> {
+            this.offHeapStore = store;
+            this.baseCacheRepository = new OffHeapCacheRepositoryImpl<>(this.baseCacheRepository, store);
+            this.nearCacheInvalidator.register(this.bucketPrefix, store);
+        });
+
         this.baseCacheRepository.setDomainClass(this.domainClass);
         this.baseCacheRepository.setBucketPrefix(this.bucketPrefix);
         this.baseCacheRepository.setHasTenant(this.hasTenant);
+
+        NearCache.<C>forBucket(this.bucketPrefix).ifPresent(configured -> {
+            this.nearCache = configured;
+            this.nearCacheInvalidator.register(configured);
+        });
+    }
+
+    public String getBucketPrefix() {
+        return bucketPrefix;
+    }
+
+    public String getBucket(final String id) {
+        return baseCacheRepository.getBucket(id);
     }
 
 
@@ -70,11 +104,86 @@ public abstract class BaseDomainCacheRepositoryImpl<E extends BaseDomain, C>
     }
 
     public Uni<E> get(final String id) {
-        return baseCacheRepository.get(id).map(mapper::toFirst);
+        if (nearCache == null)
+            return baseCacheRepository.get(id).map(mapper::toFirst);
+
+        String key = baseCacheRepository.getBucket(id);
+        C nearValue = nearCache.get(key);
+
+        if (nearValue != null)
+            return Uni.createFrom().item(mapper.toFirst(nearValue));
+
+        long generation = nearCache.generation();
+
+        return baseCacheRepository.get(id)
+                .invoke(value -> nearCache.put(key, value, generation))
+                .map(mapper::toFirst);
+    }
+
+    public Uni<Optional<E>> lookup(final String id) {
+        C nearValue = nearCache == null ? null : nearCache.get(baseCacheRepository.getBucket(id));
+
+        if (nearValue != null)
+            return Uni.createFrom().item(Optional.of(mapper.toFirst(nearValue)));
+
+        long generation = nearGeneration();
+
+        return baseCacheRepository.lookup(id)
+                .onItem().ifNotNull().transform(optional -> {
+                    optional.ifPresent(value -> putNear(id, value, generation));
+                    return optional.map(mapper::toFirst);
+                });
+    }
+
+    public Uni<CacheEntry<E>> getEntry(final String id) {
+        C nearValue = nearCache == null ? null : nearCache.get(baseCacheRepository.getBucket(id));
+
+        if (nearValue != null)
+            return Uni.createFrom().item(CacheEntry.untimed(mapper.toFirst(nearValue)));
+
+        long generation = nearGeneration();
+
+        return baseCacheRepository.getEntry(id)
+                .onItem().ifNotNull().transform(entry -> {
+                    if (entry.getValue() != null)
+                        putNear(id, entry.getValue(), generation);
+                    return entry.map(mapper::toFirst);
+                });
     }
 
     public Multi<Optional<E>> get(List<String> ids) {
-        return baseCacheRepository.get(ids).map(optional -> optional.map(mapper::toFirst));
+        if (nearCache == null)
+            return baseCacheRepository.get(ids).map(optional -> optional.map(mapper::toFirst));
+
+        Map<String, C> values = new HashMap<>();
+        List<String> remoteIds = new ArrayList<>();
+
+        ids.forEach(id -> {
+            C nearValue = nearCache.get(baseCacheRepository.getBucket(id));
+            if (nearValue != null)
+                values.put(id, nearValue);
+            else
+                remoteIds.add(id);
+        });
+
+        long generation = nearCache.generation();
+
+        Uni<Map<String, C>> remoteValues = remoteIds.isEmpty() ?
+                Uni.createFrom().item(values) :
+                baseCacheRepository.get(remoteIds).collect().asList()
+                        .map(optionals -> {
+                            for (int i = 0; i < remoteIds.size(); i++) {
+                                String id = remoteIds.get(i);
+                                optionals.get(i).ifPresent(value -> {
+                                    values.put(id, value);
+                                    nearCache.put(baseCacheRepository.getBucket(id), value, generation);
+                                });
+                            }
+                            return values;
+                        });
+
+        return remoteValues.onItem().transformToMulti(found -> Multi.createFrom().iterable(ids)
+                .map(id -> Optional.ofNullable(found.get(id)).map(mapper::toFirst)));
     }
 
     public Uni<List<E>> getList(String id) {
@@ -82,11 +191,15 @@ public abstract class BaseDomainCacheRepositoryImpl<E extends BaseDomain, C>
     }
 
     public Uni<Response> set(String id, E t) throws JsonProcessingException {
-        return baseCacheRepository.set(id, mapper.toSecond(t));
+        C value = mapper.toSecond(t);
+        return baseCacheRepository.set(id, value)
+                .invoke(() -> putNear(id, value));
     }
 
     public Uni<Response> set(String id, E t, Long expiryInMilliseconds) throws JsonProcessingException {
-        return baseCacheRepository.set(id, mapper.toSecond(t), expiryInMilliseconds);
+        C value = mapper.toSecond(t);
+        return baseCacheRepository.set(id, value, expiryInMilliseconds)
+                .invoke(() -> putNear(id, value));
     }
 
     public Uni<Response> set(String id, List<E> t) throws JsonProcessingException {
@@ -97,14 +210,137 @@ public abstract class BaseDomainCacheRepositoryImpl<E extends BaseDomain, C>
         return baseCacheRepository.set(id, mapper.toSecond(t), expiryInMilliseconds);
     }
 
+    public Uni<Response> setEntry(String id, CacheEntry<E> entry, Long staleInMilliseconds) {
+        CacheEntry<C> value = entry.map(mapper::toSecond);
+        return baseCacheRepository.setEntry(id, value, staleInMilliseconds)
+                .invoke(() -> putNear(id, value.getValue()));
+    }
+
+    public Uni<Response> setNegative(String id, Long expiryInMilliseconds) {
+        return baseCacheRepository.setNegative(id, expiryInMilliseconds);
+    }
+
+    public Uni<Response> setEntryAtKey(String key, CacheEntry<E> entry, Long staleInMilliseconds) {
+        CacheEntry<C> value = entry.map(mapper::toSecond);
+        return baseCacheRepository.setEntryAtKey(key, value, staleInMilliseconds)
+                .invoke(() -> {
+                    if (nearCache != null)
+                        nearCache.put(key, value.getValue());
+                });
+    }
+
+    public Uni<Response> setNegativeAtKey(String key, Long expiryInMilliseconds) {
+        return baseCacheRepository.setNegativeAtKey(key, expiryInMilliseconds);
+    }
+
+    public Uni<Boolean> setIfNotOlder(String id, E t, Long expiryInMilliseconds) {
+        return baseCacheRepository.setIfNotOlder(id, mapper.toSecond(t), t.getVersion(), expiryInMilliseconds)
+                .call(() -> invalidateNear(id));
+    }
+
+    /**
+     * A fill, the near caches are left to reload from redis.
+     */
+    public Uni<Void> setIfNotOlder(Map<String, E> mp, Long expiryInMilliseconds) {
+        Map<String, C> values = new HashMap<>();
+        Map<String, Long> versions = new HashMap<>();
+        mp.forEach((id, e) -> {
+            values.put(id, mapper.toSecond(e));
+            if (e.getVersion() != null)
+                versions.put(id, e.getVersion());
+        });
+        return baseCacheRepository.setIfNotOlder(values, versions, expiryInMilliseconds);
+    }
+
+    public Uni<Boolean> setEntryIfNotOlderAtKey(String key, CacheEntry<E> entry, Long staleInMilliseconds) {
+        CacheEntry<C> value = entry.map(mapper::toSecond);
+        return baseCacheRepository.setEntryIfNotOlderAtKey(key, value, staleInMilliseconds)
+                .invoke(written -> {
+                    if (written && nearCache != null)
+                        nearCache.put(key, value.getValue());
+                });
+    }
+
+    public Uni<Boolean> setTombstone(String id, Long version, Long expiryInMilliseconds) {
+        return baseCacheRepository.setTombstone(id, version, expiryInMilliseconds)
+                .call(() -> invalidateNear(id));
+    }
+
+    /**
+     * Near caches and off-heap stores of every pod may still hold the previous version; they reload it on the next
+     * read.
+     */
+    private Uni<Void> invalidateNear(String id) {
+        return !hasLocalTier() ? Uni.createFrom().voidItem() : invalidateNear(List.of(baseCacheRepository.getBucket(id)));
+    }
+
+    private Uni<Void> invalidateNear(List<String> keys) {
+        if (!hasLocalTier())
+            return Uni.createFrom().voidItem();
+
+        if (nearCache != null)
+            nearCache.invalidate(keys);
+        return nearCacheInvalidator.publish(bucketPrefix, keys);
+    }
+
+    private boolean hasLocalTier() {
+        return nearCache != null || offHeapStore != null;
+    }
+
+    public CacheBatch<E, C> batch() {
+        if (baseCacheRepository instanceof OffHeapCacheRepositoryImpl)
+            throw new NotImplementedException("Cache batches are not supported by the off-heap bucket " + bucketPrefix);
+
+        return new CacheBatch<>(baseCacheRepository, mapper, this::invalidateNear);
+    }
+
     public Uni<Void> delete(List<String> ids) {
-        return baseCacheRepository.delete(ids);
+        if (!hasLocalTier())
+            return baseCacheRepository.delete(ids);
+
+        List<String> keys = ids.stream().map(baseCacheRepository::getBucket).collect(Collectors.toList());
+        if (nearCache != null)
+            nearCache.invalidate(keys);
+
+        return baseCacheRepository.delete(ids)
+                .call(() -> nearCacheInvalidator.publish(bucketPrefix, keys));
+    }
+
+    public Uni<Void> invalidate(List<String> ids, boolean waitForFlush) {
+        // Keys are resolved now, the flush runs outside of the request context.
+        List<String> keys = ids.stream().map(baseCacheRepository::getBucket).collect(Collectors.toList());
+
+        if (nearCache != null)
+            nearCache.invalidate(keys);
+
+        // Nothing to unlink in redis: the store of this pod is evicted now, the ones of the other pods on the message.
+        if (offHeapStore != null) {
+            keys.forEach(key -> offHeapStore.remove(key.getBytes(StandardCharsets.UTF_8)));
+            return nearCacheInvalidator.publish(bucketPrefix, keys);
+        }
+
+        return invalidationBatcher.invalidate(bucketPrefix, keys, waitForFlush);
     }
 
 
     public Uni<Void> mset(Map<String, E> mp) {
-        return baseCacheRepository.mset(mp.entrySet().stream()
-                .collect(Collectors.toMap(Map.Entry::getKey, value -> mapper.toSecond(value.getValue()))));
+        Map<String, C> values = mp.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, value -> mapper.toSecond(value.getValue())));
+        return baseCacheRepository.mset(values)
+                .invoke(() -> values.forEach(this::putNear));
+    }
+
+    public Uni<Void> set(Map<String, E> mp, Long expiryInMilliseconds) {
+        Map<String, C> values = mp.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, value -> mapper.toSecond(value.getValue())));
+        return baseCacheRepository.set(values, expiryInMilliseconds)
+                .invoke(() -> values.forEach(this::putNear));
+    }
+
+    public Uni<Void> setIfAbsent(Map<String, E> mp, Long expiryInMilliseconds) {
+        Map<String, C> values = mp.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, value -> mapper.toSecond(value.getValue())));
+        return baseCacheRepository.setIfAbsent(values, expiryInMilliseconds);
     }
 
 
@@ -160,6 +396,16 @@ public abstract class BaseDomainCacheRepositoryImpl<E extends BaseDomain, C>
     }
 
 
+    public Multi<String> hscanKeys(String hash, Integer count) {
+        return baseCacheRepository.hscanKeys(hash, count);
+    }
+
+
+    public Multi<Map.Entry<String, E>> hscan(String hash, Integer count) {
+        return baseCacheRepository.hscan(hash, count).map(entry -> Map.entry(entry.getKey(), mapper.toFirst(entry.getValue())));
+    }
+
+
     public Multi<Optional<E>> hmget(String hash, List<String> fields) {
         return baseCacheRepository.hmget(hash, fields).map(optional -> optional.map(mapper::toFirst));
     }
@@ -219,6 +465,26 @@ public abstract class BaseDomainCacheRepositoryImpl<E extends BaseDomain, C>
     }
 
 
+    public Multi<Optional<E>> zrangeByPage(String hash, Integer start, Integer end, Integer count) {
+        return baseCacheRepository.zrangeByPage(hash, start, end, count).map(optional -> optional.map(mapper::toFirst));
+    }
+
+
+    public Multi<Optional<E>> zrevrangeByPage(String hash, Integer start, Integer end, Integer count) {
+        return baseCacheRepository.zrevrangeByPage(hash, start, end, count).map(optional -> optional.map(mapper::toFirst));
+    }
+
+
+    public Multi<Pair<E, Double>> zscan(String hash, Integer count) {
+        return baseCacheRepository.zscan(hash, count).map(cDoublePair -> new Pair<>(mapper.toFirst(cDoublePair.getA()), cDoublePair.getB()));
+    }
+
+
+    public Multi<Optional<E>> sscan(String key, Integer count) {
+        return baseCacheRepository.sscan(key, count).map(optional -> optional.map(mapper::toFirst));
+    }
+
+
     public Uni<Response> expire(String key, Long timeInSeconds) {
         return baseCacheRepository.expire(key, timeInSeconds);
     }
@@ -228,5 +494,22 @@ public abstract class BaseDomainCacheRepositoryImpl<E extends BaseDomain, C>
         return baseCacheRepository.expireat(key, instant);
     }
 
+    protected void putNear(String id, C value) {
+        if (nearCache != null)
+            nearCache.put(baseCacheRepository.getBucket(id), value);
+    }
+
+    /**
+     * Keeps a value read from redis, unless the near cache was invalidated since the read started.
+     */
+    protected void putNear(String id, C value, long generation) {
+        if (nearCache != null)
+            nearCache.put(baseCacheRepository.getBucket(id), value, generation);
+    }
+
+    private long nearGeneration() {
+        return nearCache == null ? 0 : nearCache.generation();
+    }
+
 }
 
@@ -2,6 +2,7 @@ package com.services.sf.commons.base;
 
 import com.services.common.domain.base.BaseDomain;
 import com.services.common.domain.base.BulkResponse;
+import com.services.common.domain.base.CursorPage;
 import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
 
@@ -86,4 +87,30 @@ public interface BaseRepository<T extends BaseEntity<ID>, E extends BaseDomain,
                                     @Min(0) Integer offset,
                                     @Min(1) Integer limit,
                                     List<String> sortOrder);
+
+    /**
+     * Keyset variant of {@link #findByPage(Integer, Integer, List)}: the entities after the cursor, by ascending id.
+     *
+     * @param cursor null for the first page, then the {@link CursorPage#getNextCursor()} of the previous page
+     */
+    Uni<CursorPage<E>> findByPage(String cursor,
+                                  @Min(1) Integer limit);
+
+    /**
+     * Keyset variant of the createdAt finders: the entities created between t1 and t2 included, either bound being
+     * optional, after the cursor, by ascending createdAt then id.
+     */
+    Uni<CursorPage<E>> findByCreatedAtBetween(Instant t1,
+                                              Instant t2,
+                                              String cursor,
+                                              @Min(1) Integer limit);
+
+    /**
+     * Keyset variant of the lastModifiedAt finders, see {@link #findByCreatedAtBetween(Instant, Instant, String, Integer)}.
+     * An entity modified while the listing is paged through moves to its end.
+     */
+    Uni<CursorPage<E>> findByLastModifiedAtBetween(Instant t1,
+                                                   Instant t2,
+                                                   String cursor,
+                                                   @Min(1) Integer limit);
 }
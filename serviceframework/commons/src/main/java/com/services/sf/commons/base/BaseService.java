@@ -4,12 +4,15 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.services.common.domain.abstracts.AbstractDomain;
 import com.services.common.domain.base.BaseDomain;
 import com.services.common.domain.base.BulkResponse;
+import com.services.common.domain.base.CursorPage;
 import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
 import io.vertx.mutiny.redis.client.Response;
+import org.jboss.marshalling.Pair;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface BaseService<T extends BaseEntity<ID>, E extends BaseDomain, C extends AbstractDomain, ID> {
@@ -72,6 +75,12 @@ public interface BaseService<T extends BaseEntity<ID>, E extends BaseDomain, C e
 
     Multi<E> findByPage(Integer offset, Integer limit, List<String> sortOrder);
 
+    Uni<CursorPage<E>> findByPage(String cursor, Integer limit);
+
+    Uni<CursorPage<E>> findByCreatedAtBetween(Instant t1, Instant t2, String cursor, Integer limit);
+
+    Uni<CursorPage<E>> findByLastModifiedAtBetween(Instant t1, Instant t2, String cursor, Integer limit);
+
     Uni<E> hget(String hash, String key);
 
     Uni<Response> hset(final String hash, String field, final E e) throws JsonProcessingException;
@@ -81,4 +90,16 @@ public interface BaseService<T extends BaseEntity<ID>, E extends BaseDomain, C e
     Uni<Void> hdel(String hash, List<String> fields);
 
     Multi<Optional<E>> hmget(String hash, List<String> keys);
+
+    Multi<String> hscanKeys(String hash, Integer count);
+
+    Multi<Map.Entry<String, E>> hscan(String hash, Integer count);
+
+    Multi<Optional<E>> zrangeByPage(String hash, Integer start, Integer end, Integer count);
+
+    Multi<Optional<E>> zrevrangeByPage(String hash, Integer start, Integer end, Integer count);
+
+    Multi<Pair<E, Double>> zscan(String hash, Integer count);
+
+    Multi<Optional<E>> sscan(String key, Integer count);
 }
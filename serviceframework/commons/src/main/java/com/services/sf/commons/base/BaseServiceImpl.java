@@ -6,25 +6,52 @@ import com.services.common.constant.GlobalConstant;
 import com.services.common.domain.abstracts.AbstractDomain;
 import com.services.common.domain.base.BaseDomain;
 import com.services.common.domain.base.BulkResponse;
+import com.services.common.domain.base.CursorPage;
+import com.services.common.domain.util.LocalContext;
+import com.services.common.enums.ErrorCode;
+import com.services.common.enums.ErrorLevel;
+import com.services.common.exception.BaseRuntimeException;
+import com.services.sf.commons.base.ConcurrencyLimiter.Operation;
+import com.services.sf.commons.base.cache.CacheBreaker;
+import com.services.sf.commons.base.cache.CacheEntry;
+import com.services.sf.commons.base.cache.CacheEpochs;
+import com.services.sf.commons.base.cache.CacheWarmup;
+import com.services.sf.commons.base.cache.InvalidationBatcher;
+import com.services.sf.commons.base.cache.QueryCache;
+import com.services.sf.commons.base.cache.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.arc.Arc;
+import io.quarkus.arc.InjectableContext.ContextState;
+import io.quarkus.arc.ManagedContext;
 import io.quarkus.logging.Log;
+import io.quarkus.runtime.StartupEvent;
 import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
 import io.smallrye.mutiny.infrastructure.Infrastructure;
 import io.smallrye.mutiny.unchecked.Unchecked;
+import io.vertx.mutiny.core.Vertx;
 import io.vertx.mutiny.redis.client.Response;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.eclipse.microprofile.config.ConfigProvider;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.marshalling.Pair;
 
+import javax.enterprise.event.Observes;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @NoArgsConstructor
@@ -35,8 +62,81 @@ public class BaseServiceImpl<T extends BaseEntity<ID>, E extends BaseDomain, C e
     @ConfigProperty(name = "framework.redis.defaultExpiryInMilli", defaultValue = "3600000")
     protected Long defaultCacheExpiryInMilli;
 
+    @ConfigProperty(name = "framework.redis.negativeCache.enabled", defaultValue = "false")
+    protected Boolean negativeCacheEnabled;
+
+    @ConfigProperty(name = "framework.redis.negativeCache.expiryInMilli", defaultValue = "60000")
+    protected Long negativeCacheExpiryInMilli;
+
+    @ConfigProperty(name = "framework.redis.refresh.enabled", defaultValue = "false")
+    protected Boolean refreshEnabled;
+
+    @ConfigProperty(name = "framework.redis.refresh.beta", defaultValue = "1.0")
+    protected Double refreshBeta;
+
+    @ConfigProperty(name = "framework.redis.refresh.staleInMilli", defaultValue = "60000")
+    protected Long refreshStaleInMilli;
+
+    @ConfigProperty(name = "framework.redis.refresh.serveStaleOnError", defaultValue = "false")
+    protected Boolean serveStaleOnError;
+
+    @ConfigProperty(name = "framework.redis.refresh.loadTimeoutInMilli", defaultValue = "0")
+    protected Long refreshLoadTimeoutInMilli;
+
+    @ConfigProperty(name = "framework.redis.writeThrough.enabled", defaultValue = "false")
+    protected Boolean writeThroughEnabled;
+
+    @ConfigProperty(name = "framework.redis.writeThrough.tombstoneExpiryInMilli", defaultValue = "60000")
+    protected Long tombstoneExpiryInMilli;
+
+    @ConfigProperty(name = "framework.redis.invalidation.batching.enabled", defaultValue = "false")
+    protected Boolean invalidationBatchingEnabled;
+
+    @ConfigProperty(name = "framework.redis.invalidation.waitForFlush", defaultValue = "true")
+    protected Boolean waitForInvalidationFlush;
+
+    @ConfigProperty(name = "framework.batchLoader.enabled", defaultValue = "false")
+    protected Boolean batchLoaderEnabled;
+
+    @ConfigProperty(name = "framework.identityMap.enabled", defaultValue = "false")
+    protected Boolean identityMapEnabled;
+
+    @Inject
+    protected SingleFlight singleFlight;
+
+    @Inject
+    protected ConcurrencyLimiter concurrencyLimiter;
+
+    @Inject
+    protected Instance<RequestBatchLoader> requestBatchLoader;
+
+    @Inject
+    protected Instance<RequestIdentityMap> requestIdentityMap;
+
+    @Inject
+    protected MeterRegistry meterRegistry;
+
+    @Inject
+    protected Instance<CacheWarmup> cacheWarmup;
+
+    @Inject
+    protected Instance<CacheEpochs> cacheEpochs;
+
+    @Inject
+    protected Instance<QueryCache> queryCache;
+
+    @Inject
+    protected Instance<CacheBreaker> cacheBreaker;
+
+    @Inject
+    protected LocalContext localContext;
+
+    @Inject
+    protected Vertx vertx;
+
     BaseRepository<T, E, ID> repository;
     BaseDomainCacheRepository<E, C> cache;
+    String repositoryName;
 
     public BaseServiceImpl(BaseRepository<T, E, ID> repository) {
         this.repository = repository;
@@ -54,8 +154,63 @@ public class BaseServiceImpl<T extends BaseEntity<ID>, E extends BaseDomain, C e
         return t -> map.putIfAbsent(keyExtractor.apply(t), Boolean.TRUE) == null;
     }
 
+    /**
+     * Runs a repository call under the {@link ConcurrencyLimiter} of this service's repository.
+     */
+    protected <V> Uni<V> limited(Operation operation, Supplier<Uni<V>> call) {
+        return concurrencyLimiter.execute(repositoryName(), operation, call);
+    }
+
+    protected <V> Multi<V> limitedStream(Operation operation, Supplier<Multi<V>> call) {
+        return concurrencyLimiter.stream(repositoryName(), operation, call);
+    }
+
+    protected String repositoryName() {
+        if (repositoryName == null)
+            // Drops the suffix of the generated client proxy or subclass.
+            repositoryName = StringUtils.substringBefore(repository.getClass().getSimpleName(), "_");
+
+        return repositoryName;
+    }
+
     public Uni<E> get(String id) {
-        return repository.get(id);
+        return getIdentity(id, null, () -> getBatched(id, key -> limited(Operation.READ, () -> repository.get(key))));
+    }
+
+    /**
+     * Reads the entity through the {@link RequestIdentityMap} when {@code framework.identityMap.enabled} is set and a
+     * request is active, so that the request loads it once.
+     *
+     * @param scope null outside of a transaction, the session of the transaction inside of one
+     */
+    protected Uni<E> getIdentity(String id, Object scope, Supplier<Uni<E>> load) {
+        if (!Boolean.TRUE.equals(identityMapEnabled) || !Arc.container().requestContext().isActive())
+            return load.get();
+
+        return requestIdentityMap.get().get(this, localContext.getTenantId(), scope, id, load);
+    }
+
+    /**
+     * Forgets the entities this service read in the current request, once it wrote through it.
+     */
+    protected void identityWritten() {
+        if (Boolean.TRUE.equals(identityMapEnabled) && Arc.container().requestContext().isActive())
+            requestIdentityMap.get().evict(this);
+    }
+
+    /**
+     * When {@code framework.batchLoader.enabled} is set and a request is active, the loads of the request are merged
+     * by the {@link RequestBatchLoader} into {@link #loadBatch(List)} calls; otherwise the entity is loaded alone.
+     */
+    protected Uni<E> getBatched(String id, Function<String, Uni<E>> load) {
+        if (!Boolean.TRUE.equals(batchLoaderEnabled) || !Arc.container().requestContext().isActive())
+            return load.apply(id);
+
+        return requestBatchLoader.get().load(this, id, this::loadBatch);
+    }
+
+    protected Uni<List<E>> loadBatch(List<String> ids) {
+        return limitedStream(Operation.READ, () -> repository.getByIds(ids, new ArrayList<>())).collect().asList();
     }
 
     public Multi<E> getByIds(List<String> ids) {
@@ -63,60 +218,82 @@ public class BaseServiceImpl<T extends BaseEntity<ID>, E extends BaseDomain, C e
     }
 
     public Multi<E> getByIds(List<String> ids, List<String> sortOrder) {
-        return repository.getByIds(ids, sortOrder);
+        return limitedStream(Operation.READ, () -> repository.getByIds(ids, sortOrder));
     }
 
     public Uni<E> create(E e) {
-        return repository.create(e);
+        return limited(Operation.WRITE, () -> repository.create(e))
+                .call(created -> cacheCreated(created.getId()))
+                .eventually(this::identityWritten);
     }
 
     public Uni<E> upsert(E e, E filter) {
-        return repository.upsert(e, filter);
+        return limited(Operation.WRITE, () -> repository.upsert(e, filter))
+                .call(upserted -> cacheCreated(upserted.getId()))
+                .eventually(this::identityWritten);
     }
 
     public Uni<E> patch(String id, E e) {
         e.setId(id);
-        return repository.patch(e);
+        return limited(Operation.WRITE, () -> repository.patch(e))
+                .call(this::queryWritten)
+                .eventually(this::identityWritten);
     }
 
     public Uni<E> put(String id, E e) {
         e.setId(id);
-        return repository.put(e);
+        return limited(Operation.WRITE, () -> repository.put(e))
+                .call(this::queryWritten)
+                .eventually(this::identityWritten);
     }
 
     public Uni<E> delete(E e) {
-        return repository.delete(e);
+        return limited(Operation.WRITE, () -> repository.delete(e))
+                .call(this::queryWritten)
+                .eventually(this::identityWritten);
     }
 
     public Multi<String> bulkCreate(List<E> eList) {
-        return repository.bulkCreate(eList);
+        return limitedStream(Operation.WRITE, () -> repository.bulkCreate(eList))
+                .onTermination().call((failure, cancelled) -> queryWritten())
+                .onTermination().invoke(this::identityWritten);
     }
 
     @Override
     public Uni<List<E>> bulkCreateWithResponse(List<E> es) {
-        return repository.bulkCreateWithResponse(es);
+        return limited(Operation.WRITE, () -> repository.bulkCreateWithResponse(es))
+                .eventually(this::queryWritten)
+                .eventually(this::identityWritten);
     }
 
     public Uni<Void> bulkPatch(List<E> eList) {
-        return repository.bulkPatch(eList);
+        return limited(Operation.WRITE, () -> repository.bulkPatch(eList))
+                .eventually(this::queryWritten)
+                .eventually(this::identityWritten);
     }
 
     public Uni<BulkResponse> bulkUpsert(List<E> eList) {
-        return repository.bulkUpsert(eList);
+        return limited(Operation.WRITE, () -> repository.bulkUpsert(eList))
+                .eventually(this::queryWritten)
+                .eventually(this::identityWritten);
     }
 
     public Multi<E> findByCreatedAtGreaterThan(Instant t1,
                                                Integer offset,
                                                Integer limit,
                                                List<String> sortOrder) {
-        return repository.findByCreatedAtGreaterThan(t1, offset, limit, sortOrder);
+        return findThroughCache("findByCreatedAtGreaterThan",
+                () -> limitedStream(Operation.QUERY, () -> repository.findByCreatedAtGreaterThan(t1, offset, limit, sortOrder)),
+                sortOrder, t1, offset, limit);
     }
 
     public Multi<E> findByCreatedAtLessThan(Instant t1,
                                             Integer offset,
                                             Integer limit,
                                             List<String> sortOrder) {
-        return repository.findByCreatedAtLessThan(t1, offset, limit, sortOrder);
+        return findThroughCache("findByCreatedAtLessThan",
+                () -> limitedStream(Operation.QUERY, () -> repository.findByCreatedAtLessThan(t1, offset, limit, sortOrder)),
+                sortOrder, t1, offset, limit);
     }
 
     public Multi<E> findByCreatedAtBetween(Instant t1,
@@ -124,21 +301,27 @@ public class BaseServiceImpl<T extends BaseEntity<ID>, E extends BaseDomain, C e
                                            Integer offset,
                                            Integer limit,
                                            List<String> sortOrder) {
-        return repository.findByCreatedAtBetween(t1, t2, offset, limit, sortOrder);
+        return findThroughCache("findByCreatedAtBetween",
+                () -> limitedStream(Operation.QUERY, () -> repository.findByCreatedAtBetween(t1, t2, offset, limit, sortOrder)),
+                sortOrder, t1, t2, offset, limit);
     }
 
     public Multi<E> findByLastModifiedAtGreaterThan(Instant t1,
                                                     Integer offset,
                                                     Integer limit,
                                                     List<String> sortOrder) {
-        return repository.findByLastModifiedAtGreaterThan(t1, offset, limit, sortOrder);
+        return findThroughCache("findByLastModifiedAtGreaterThan",
+                () -> limitedStream(Operation.QUERY, () -> repository.findByLastModifiedAtGreaterThan(t1, offset, limit, sortOrder)),
+                sortOrder, t1, offset, limit);
     }
 
     public Multi<E> findByLastModifiedAtLessThan(Instant t1,
                                                  Integer offset,
                                                  Integer limit,
                                                  List<String> sortOrder) {
-        return repository.findByLastModifiedAtLessThan(t1, offset, limit, sortOrder);
+        return findThroughCache("findByLastModifiedAtLessThan",
+                () -> limitedStream(Operation.QUERY, () -> repository.findByLastModifiedAtLessThan(t1, offset, limit, sortOrder)),
+                sortOrder, t1, offset, limit);
     }
 
     public Multi<E> findByLastModifiedBetween(Instant t1,
@@ -146,8 +329,9 @@ public class BaseServiceImpl<T extends BaseEntity<ID>, E extends BaseDomain, C e
                                               Integer offset,
                                               Integer limit,
                                               List<String> sortOrder) {
-        return repository.findByLastModifiedAtBetween(t1, t2, offset, limit, sortOrder)
-                ;
+        return findThroughCache("findByLastModifiedBetween",
+                () -> limitedStream(Operation.QUERY, () -> repository.findByLastModifiedAtBetween(t1, t2, offset, limit, sortOrder)),
+                sortOrder, t1, t2, offset, limit);
     }
 
     protected Uni<E> getThroughCache(String id) {
@@ -157,23 +341,14 @@ public class BaseServiceImpl<T extends BaseEntity<ID>, E extends BaseDomain, C e
 
     protected Uni<E> getThroughCache(String id, Long expiryInMilliseconds) {
 
-        return getThroughCache(repository::get, id, expiryInMilliseconds);
+        return getThroughCache(key -> limited(Operation.READ, () -> repository.get(key)), id, expiryInMilliseconds);
     }
 
     protected Uni<E> getThroughCache(Function<String, Uni<E>> func, String param1, Long expiryInMilli) {
 
         Objects.requireNonNull(cache);
 
-        return cache.get(param1)
-                .onFailure().invoke(Log::error)
-                .onFailure().recoverWithNull()
-                .onItem().ifNull().switchTo(
-                        func.apply(param1)
-                                .onItem().ifNotNull().call(Unchecked.function(e ->
-                                        cache.set(param1, e, expiryInMilli)
-                                                .onFailure().invoke(Log::error)
-                                                .onFailure().recoverWithNull())
-                                ));
+        return readThrough(param1, () -> func.apply(param1), expiryInMilli, true);
     }
 
     protected Uni<E> getThroughCache(BiFunction<String, String, Uni<E>> func, String param1, String param2, Long expiryInMilli) {
@@ -182,16 +357,7 @@ public class BaseServiceImpl<T extends BaseEntity<ID>, E extends BaseDomain, C e
 
         String key = param1 + GlobalConstant.DELIMITER + param2;
 
-        return cache.get(key)
-                .onFailure().invoke(Log::error)
-                .onFailure().recoverWithNull()
-                .onItem().ifNull().switchTo(
-                        func.apply(param1, param2)
-                                .onItem().ifNotNull().call(Unchecked.function(e ->
-                                        cache.set(key, e, expiryInMilli)
-                                                .onFailure().invoke(Log::error)
-                                                .onFailure().recoverWithNull())
-                                ));
+        return readThrough(key, () -> func.apply(param1, param2), expiryInMilli, true);
     }
 
     protected Uni<E> getThroughCacheHSet(BiFunction<String, String, Uni<E>> func, String hash, String key, Long expiryInMilli) {
@@ -202,13 +368,227 @@ public class BaseServiceImpl<T extends BaseEntity<ID>, E extends BaseDomain, C e
         return cache.hget(hash, key)
                 .onFailure().invoke(Log::error)
                 .onFailure().recoverWithNull()
-                .onItem().ifNull().switchTo(
+                .onItem().ifNull().switchTo(() -> coalesce(cache.getBucket(hash) + GlobalConstant.DELIMITER + key, () ->
                         func.apply(hash, key)
                                 .onItem().ifNotNull().call(Unchecked.function(e ->
                                         cache.hset(hash, key, e, expiryInMilli)
                                                 .onFailure().invoke(Log::error)
                                                 .onFailure().recoverWithNull())
-                                ));
+                                )));
+    }
+
+    /**
+     * Reads the key from the cache and falls back to the loader on a miss, writing the loaded value back.
+     * <p>
+     * When {@code framework.redis.negativeCache.enabled} is set, a loader returning nothing stores a sentinel
+     * for {@code framework.redis.negativeCache.expiryInMilli}, and later reads are answered empty from it.
+     * <p>
+     * When {@code framework.redis.refresh.enabled} is set, see {@link #refreshThrough}. When
+     * {@code framework.redis.breaker.enabled} is set, the cache is read within a latency budget and skipped while redis
+     * is failing, see {@link CacheBreaker}.
+     *
+     * @param shareable whether concurrent misses of the key may share a single load
+     */
+    protected Uni<E> readThrough(String key, Supplier<Uni<E>> loader, Long expiryInMilli, boolean shareable) {
+
+        Supplier<Uni<E>> fill = () -> {
+            // Resolved up front: an early refresh writes the value back once the request is over.
+            String cacheKey = cache.getBucket(key);
+            long start = System.currentTimeMillis();
+            return loader.get()
+                    .call(Unchecked.function(e -> (e != null ? cacheLoaded(key, cacheKey, e, expiryInMilli, System.currentTimeMillis() - start) : cacheMissing(cacheKey))
+                            .onFailure().invoke(Log::error)
+                            .onFailure().recoverWithNull()));
+        };
+
+        Supplier<Uni<E>> load = shareable ? () -> coalesce(cache.getBucket(key), fill) : fill;
+
+        if (refreshEnabled)
+            return refreshThrough(key, load);
+
+        if (!negativeCacheEnabled)
+            return cacheRead(() -> cache.get(key))
+                    .onFailure().invoke(Log::error)
+                    .onFailure().recoverWithNull()
+                    .onItem().ifNull().switchTo(load::get);
+
+        return cacheRead(() -> cache.lookup(key))
+                .onFailure().invoke(Log::error)
+                .onFailure().recoverWithNull()
+                .chain(cached -> {
+                    if (cached == null)
+                        return load.get();
+
+                    if (cached.isEmpty())
+                        countNegative("hit");
+
+                    return Uni.createFrom().item(cached.orElse(null));
+                });
+    }
+
+    /**
+     * Entries carry their write time and logical expiry. A read ahead of expiry may trigger a single background
+     * reload (XFetch, weighted by {@code framework.redis.refresh.beta} and the time the value took to load) while
+     * the current value is served. Past the logical expiry the value is kept for
+     * {@code framework.redis.refresh.staleInMilli} and reloaded synchronously; with
+     * {@code framework.redis.refresh.serveStaleOnError} the stale value is returned if that reload fails or
+     * exceeds {@code framework.redis.refresh.loadTimeoutInMilli}.
+     */
+    protected Uni<E> refreshThrough(String key, Supplier<Uni<E>> load) {
+
+        return cacheRead(() -> cache.getEntry(key))
+                .onFailure().invoke(Log::error)
+                .onFailure().recoverWithNull()
+                .chain(entry -> {
+                    if (entry == null)
+                        return load.get();
+
+                    if (entry.isNegative()) {
+                        countNegative("hit");
+                        return Uni.createFrom().nullItem();
+                    }
+
+                    long now = System.currentTimeMillis();
+
+                    if (!entry.isExpired(now)) {
+                        if (entry.shouldRefreshEarly(now, refreshBeta)) {
+                            countRefresh("early");
+                            load.get().subscribe().with(ignored -> {
+                            }, Log::error);
+                        }
+                        return Uni.createFrom().item(entry.getValue());
+                    }
+
+                    Uni<E> reload = load.get();
+
+                    if (!serveStaleOnError)
+                        return reload;
+
+                    if (refreshLoadTimeoutInMilli > 0)
+                        reload = reload.ifNoItem().after(Duration.ofMillis(refreshLoadTimeoutInMilli)).fail();
+
+                    return reload.onFailure().recoverWithItem(throwable -> {
+                        Log.warn("Serving stale cache entry " + key, throwable);
+                        countRefresh("stale");
+                        return entry.getValue();
+                    });
+                });
+    }
+
+    /**
+     * @param cacheKey the key resolved with {@link BaseDomainCacheRepository#getBucket(String)} while the request was
+     *                 active
+     */
+    private Uni<Void> cacheLoaded(String key, String cacheKey, E e, Long expiryInMilli, long computeMillis) {
+
+        return cacheFill(Unchecked.supplier(() -> {
+            // A slow load must not replace what a concurrent write put through in the meantime.
+            boolean guarded = writeThroughEnabled && e.getVersion() != null;
+
+            if (refreshEnabled) {
+                long now = System.currentTimeMillis();
+                CacheEntry<E> entry = CacheEntry.of(e, e.getVersion(), now, now + expiryInMilli, computeMillis);
+
+                return guarded ?
+                        cache.setEntryIfNotOlderAtKey(cacheKey, entry, refreshStaleInMilli).replaceWithVoid() :
+                        cache.setEntryAtKey(cacheKey, entry, refreshStaleInMilli).replaceWithVoid();
+            }
+
+            if (guarded)
+                return cache.setIfNotOlder(key, e, expiryInMilli).replaceWithVoid();
+
+            return cache.set(key, e, expiryInMilli).replaceWithVoid();
+        }));
+    }
+
+    private void countRefresh(String outcome) {
+        meterRegistry.counter("cache.refresh", "bucket", cache.getBucketPrefix(), "outcome", outcome).increment();
+    }
+
+    private Uni<Void> cacheMissing(String cacheKey) {
+
+        if (!negativeCacheEnabled)
+            return Uni.createFrom().voidItem();
+
+        countNegative("miss");
+        return cacheFill(() -> cache.setNegativeAtKey(cacheKey, negativeCacheExpiryInMilli).replaceWithVoid());
+    }
+
+    private void countNegative(String outcome) {
+        meterRegistry.counter("cache.negative", "bucket", cache.getBucketPrefix(), "outcome", outcome).increment();
+    }
+
+    /**
+     * Brings the cache up to date once an entity is created: drops the cached query pages of the collection and a
+     * negative entry that may have been cached for its id.
+     */
+    protected Uni<Void> cacheCreated(String id) {
+
+        return queryWritten()
+                .call(() -> clearNegativeCache(id));
+    }
+
+    /**
+     * Removes a negative entry that may have been cached for an id before it was created.
+     */
+    protected Uni<Void> clearNegativeCache(String id) {
+
+        if (!negativeCacheEnabled || cache == null || StringUtils.isBlank(id))
+            return Uni.createFrom().voidItem();
+
+        return invalidateCache(id);
+    }
+
+    /**
+     * Reads the cache through the {@link CacheBreaker} of the bucket when {@code framework.redis.breaker.enabled} is
+     * set, within its latency budget.
+     *
+     * @return a null item, as for a miss, while the circuit skips the cache
+     */
+    protected <V> Uni<V> cacheRead(Supplier<Uni<V>> read) {
+
+        CacheBreaker breaker = breaker();
+        return breaker == null ? read.get() : breaker.read(cache.getBucketPrefix(), read);
+    }
+
+    /**
+     * Fills the cache with what was read from the database, skipped while the circuit skips the cache.
+     */
+    protected <V> Uni<V> cacheFill(Supplier<Uni<V>> write) {
+
+        CacheBreaker breaker = breaker();
+        return breaker == null ? write.get() : breaker.write(cache.getBucketPrefix(), write);
+    }
+
+    /**
+     * Brings the cache in line with a database write; when the circuit skips it, the bucket is dropped before the
+     * cache is read again.
+     */
+    protected <V> Uni<V> cacheInvalidation(Supplier<Uni<V>> invalidation) {
+
+        CacheBreaker breaker = breaker();
+        return breaker == null ? invalidation.get() : breaker.invalidate(cache.getBucketPrefix(), invalidation);
+    }
+
+    protected boolean cacheBypassed() {
+
+        CacheBreaker breaker = breaker();
+        return breaker != null && breaker.isBypassed(cache.getBucketPrefix());
+    }
+
+    private CacheBreaker breaker() {
+
+        return cacheBreaker.isResolvable() && cacheBreaker.get().isEnabled() ? cacheBreaker.get() : null;
+    }
+
+    /**
+     * Shares a single in-flight cache fill between all concurrent misses of the same key on this pod.
+     *
+     * @param key fully qualified cache key, tenant included
+     */
+    protected Uni<E> coalesce(String key, Supplier<Uni<E>> loader) {
+
+        return singleFlight.execute(cache.getBucketPrefix(), key, loader);
     }
 
     protected Uni<E> patchThroughCache(String id, E e) {
@@ -216,7 +596,7 @@ public class BaseServiceImpl<T extends BaseEntity<ID>, E extends BaseDomain, C e
         Objects.requireNonNull(cache);
 
         return this.patch(id, e)
-                .call(Unchecked.function(t -> invalidateCache(t.getId())));
+                .call(this::cacheWritten);
     }
 
     protected Uni<E> putThroughCache(String id, E e) {
@@ -224,7 +604,7 @@ public class BaseServiceImpl<T extends BaseEntity<ID>, E extends BaseDomain, C e
         Objects.requireNonNull(cache);
 
         return this.put(id, e)
-                .call(Unchecked.function(t -> invalidateCache(t.getId())));
+                .call(this::cacheWritten);
     }
 
     protected Uni<E> deleteThroughCache(E e) {
@@ -232,12 +612,117 @@ public class BaseServiceImpl<T extends BaseEntity<ID>, E extends BaseDomain, C e
         Objects.requireNonNull(cache);
 
         return this.delete(e)
-                .call(Unchecked.function(t -> invalidateCache(e.getId())))
+                .call(t -> cacheDeleted(e.getId(), t))
                 ;
     }
 
+    /**
+     * Brings the cache up to date once the entity is written to the database.
+     * <p>
+     * With {@code framework.redis.writeThrough.enabled} the entity is written to the cache, unless the cache already
+     * holds a newer version of it, so a slower concurrent writer never overwrites a newer value. Otherwise, or when
+     * the entity carries no version, the key is invalidated. A write through that is refused or fails falls back to
+     * invalidation, so that the cache never keeps a value the database no longer holds.
+     * The query pages were already dropped by the write, see {@link #queryWritten()}.
+     */
+    protected Uni<Void> cacheWritten(E e) {
+
+        if (e == null)
+            return Uni.createFrom().voidItem();
+
+        if (!writeThroughEnabled || e.getVersion() == null)
+            return invalidateCache(e.getId());
+
+        return cacheInvalidation(() -> cache.setIfNotOlder(e.getId(), e, defaultCacheExpiryInMilli))
+                .chain(written -> Boolean.FALSE.equals(written) ? invalidateCache(e.getId()) : Uni.createFrom().voidItem())
+                .onFailure().invoke(Log::error)
+                .onFailure().recoverWithUni(() -> invalidateCache(e.getId()));
+    }
+
+    /**
+     * With {@code framework.redis.writeThrough.enabled} the key is replaced by a tombstone carrying the version of the
+     * delete for {@code framework.redis.writeThrough.tombstoneExpiryInMilli}, so that a slower writer holding an
+     * older version cannot bring the entity back into the cache. Otherwise the key is invalidated.
+     *
+     * @param deleted the entity as returned by the delete, null if nothing was deleted
+     */
+    protected Uni<Void> cacheDeleted(String id, E deleted) {
+
+        if (!writeThroughEnabled || deleted == null || deleted.getVersion() == null)
+            return invalidateCache(id);
+
+        return cacheInvalidation(() -> cache.setTombstone(id, deleted.getVersion(), tombstoneExpiryInMilli))
+                .replaceWithVoid()
+                .onFailure().invoke(Log::error)
+                .onFailure().recoverWithUni(() -> invalidateCache(id));
+    }
+
     public Multi<E> findByPage(Integer offset, Integer limit, List<String> sortOrder) {
-        return repository.findByPage(offset, limit, sortOrder);
+        return findThroughCache("findByPage",
+                () -> limitedStream(Operation.QUERY, () -> repository.findByPage(offset, limit, sortOrder)),
+                sortOrder, offset, limit);
+    }
+
+    public Uni<CursorPage<E>> findByPage(String cursor, Integer limit) {
+        return limited(Operation.QUERY, () -> repository.findByPage(cursor, limit));
+    }
+
+    public Uni<CursorPage<E>> findByCreatedAtBetween(Instant t1, Instant t2, String cursor, Integer limit) {
+        return limited(Operation.QUERY, () -> repository.findByCreatedAtBetween(t1, t2, cursor, limit));
+    }
+
+    public Uni<CursorPage<E>> findByLastModifiedAtBetween(Instant t1, Instant t2, String cursor, Integer limit) {
+        return limited(Operation.QUERY, () -> repository.findByLastModifiedAtBetween(t1, t2, cursor, limit));
+    }
+
+    /**
+     * Serves a finder from the {@link QueryCache} when it is enabled for the bucket: the ids of a cached page are
+     * read through the entity cache, a miss runs the query and caches both the ids and the entities.
+     *
+     * @param method identifies the finder in the fingerprint
+     * @param params every param of the finder but the sort order, in a stable order
+     */
+    protected Multi<E> findThroughCache(String method, Supplier<Multi<E>> query, List<String> sortOrder, Object... params) {
+
+        if (cache == null || !queryCache.isResolvable() || !queryCache.get().isEnabled(cache.getBucketPrefix()) || cacheBypassed())
+            return query.get();
+
+        QueryCache pages = queryCache.get();
+        String fingerprint = QueryCache.fingerprint(cache.getBucketPrefix(), method, localContext.getTenantId(), sortOrder, params);
+
+        return pages.epoch(cache.getBucketPrefix())
+                .onFailure().invoke(Log::error)
+                .onFailure().recoverWithNull()
+                .onItem().transformToMulti(epoch -> {
+                    if (epoch == null)
+                        return query.get();
+
+                    List<String> ids = pages.get(fingerprint, epoch);
+
+                    if (ids != null)
+                        return getByIdsThroughCache(ids).onItem().transformToMulti(items -> Multi.createFrom().iterable(items));
+
+                    return query.get().collect().asList()
+                            .call(items -> cacheFilled(items, defaultCacheExpiryInMilli))
+                            .invoke(items -> pages.put(fingerprint, epoch, items.stream().map(E::getId).collect(Collectors.toList())))
+                            .onItem().transformToMulti(items -> Multi.createFrom().iterable(items));
+                });
+    }
+
+    /**
+     * Drops the cached query pages of the collection, see {@link QueryCache}. Every write calls it once, the
+     * through-cache writes included, and the cache hooks do not; a bulk write does so even when it fails, as part of
+     * the batch may already be applied.
+     */
+    protected Uni<Void> queryWritten() {
+
+        if (cache == null || !queryCache.isResolvable() || !queryCache.get().isEnabled(cache.getBucketPrefix()))
+            return Uni.createFrom().voidItem();
+
+        return cacheInvalidation(() -> queryCache.get().bump(cache.getBucketPrefix())
+                        .onFailure().retry().atMost(3))
+                .onFailure().invoke(Log::error)
+                .onFailure().recoverWithNull();
     }
 
     public Uni<E> hget(String hash, String field) {
@@ -276,23 +761,46 @@ public class BaseServiceImpl<T extends BaseEntity<ID>, E extends BaseDomain, C e
         return cache.hmget(hash, keys);
     }
 
-    protected List<String> getUnCachedIds(List<String> ids, List<E> eCachedList) {
+    public Multi<String> hscanKeys(String hash, Integer count) {
 
-        if (ObjectUtils.isEmpty(ids))
-            return Collections.emptyList();
+        Objects.requireNonNull(cache);
 
-        if (ObjectUtils.isEmpty(eCachedList))
-            return ids;
+        return cache.hscanKeys(hash, count);
+    }
 
-        Set<String> cachedIds = eCachedList.stream()
-                .filter(ObjectUtils::isNotEmpty)
-                .map(E::getId)
-                .collect(Collectors.toSet());
+    public Multi<Map.Entry<String, E>> hscan(String hash, Integer count) {
 
-        return ids.stream()
-                .filter(StringUtils::isNotBlank)
-                .filter(id -> !cachedIds.contains(id))
-                .collect(Collectors.toList());
+        Objects.requireNonNull(cache);
+
+        return cache.hscan(hash, count);
+    }
+
+    public Multi<Optional<E>> zrangeByPage(String hash, Integer start, Integer end, Integer count) {
+
+        Objects.requireNonNull(cache);
+
+        return cache.zrangeByPage(hash, start, end, count);
+    }
+
+    public Multi<Optional<E>> zrevrangeByPage(String hash, Integer start, Integer end, Integer count) {
+
+        Objects.requireNonNull(cache);
+
+        return cache.zrevrangeByPage(hash, start, end, count);
+    }
+
+    public Multi<Pair<E, Double>> zscan(String hash, Integer count) {
+
+        Objects.requireNonNull(cache);
+
+        return cache.zscan(hash, count);
+    }
+
+    public Multi<Optional<E>> sscan(String key, Integer count) {
+
+        Objects.requireNonNull(cache);
+
+        return cache.sscan(key, count);
     }
 
     protected Uni<List<E>> getByIdsThroughCache(List<String> ids) {
@@ -304,44 +812,269 @@ public class BaseServiceImpl<T extends BaseEntity<ID>, E extends BaseDomain, C e
 
         Objects.requireNonNull(cache);
 
+        if (ObjectUtils.isEmpty(ids))
+            return Uni.createFrom().item(new ArrayList<>());
 
-        return cache.get(ids).collect().asList()
-                .map(optionals -> optionals.stream().map(optional -> optional.orElse(null)).filter(Objects::nonNull).collect(Collectors.toList()))
+        List<String> distinctIds = ids.stream()
+                .filter(StringUtils::isNotBlank)
+                .distinct()
+                .collect(Collectors.toList());
+
+        return cacheRead(() -> cache.get(distinctIds).collect().asList())
+                .map(optionals -> {
+                    Map<String, E> found = new HashMap<>();
+                    if (optionals == null)
+                        return found;
+                    for (int i = 0; i < distinctIds.size(); i++) {
+                        String id = distinctIds.get(i);
+                        optionals.get(i).ifPresent(e -> found.put(id, e));
+                    }
+                    return found;
+                })
                 .onFailure().invoke(Log::error)
-                .onFailure().recoverWithItem(Collections.emptyList())
-                .chain(cachedItems -> {
-                    List<String> unCachedIds = getUnCachedIds(ids, cachedItems);
+                .onFailure().recoverWithItem(() -> new HashMap<>())
+                .chain(found -> {
+                    List<String> unCachedIds = distinctIds.stream()
+                            .filter(id -> !found.containsKey(id))
+                            .collect(Collectors.toList());
+
                     return unCachedIds.isEmpty() ?
-                            Uni.createFrom().item(cachedItems) :
-                            repository.getByIds(unCachedIds, new ArrayList<>())
-                                    .call(Unchecked.function(item -> cache.set(item.getId(), item, expiryInMilliseconds)
-                                            .onFailure().invoke(Log::error)
-                                            .onFailure().recoverWithNull()
-                                    )).collect().asList()
+                            Uni.createFrom().item(inOrder(distinctIds, found)) :
+                            limitedStream(Operation.READ, () -> repository.getByIds(unCachedIds, new ArrayList<>())).collect().asList()
+                                    .call(items -> cacheFilled(items, expiryInMilliseconds))
                                     .map(items -> {
-                                        items = ObjectUtils.isEmpty(items) ? new ArrayList<>() : items;
-                                        items.addAll(cachedItems);
-                                        return items;
+                                        items.forEach(item -> found.put(item.getId(), item));
+                                        return inOrder(distinctIds, found);
                                     });
                 });
     }
 
-    protected Uni<Void> invalidateCache(String id) {
+    /**
+     * Writes entities read from the database to the cache in one round trip. With
+     * {@code framework.redis.writeThrough.enabled}, as for a single entity, an entity is only written when the cache
+     * holds no newer version or tombstone of it.
+     */
+    private Uni<Void> cacheFilled(List<E> items, Long expiryInMilli) {
 
-        Objects.requireNonNull(cache);
+        if (items.isEmpty())
+            return Uni.createFrom().voidItem();
+
+        Map<String, E> values = items.stream().collect(Collectors.toMap(E::getId, Function.identity(), (first, second) -> first));
 
-        return cache.delete(List.of(id))
-                .onFailure().retry().atMost(3)
+        return cacheFill(() -> writeThroughEnabled ? cache.setIfNotOlder(values, expiryInMilli) : cache.set(values, expiryInMilli))
                 .onFailure().invoke(Log::error)
                 .onFailure().recoverWithNull();
     }
 
+    private List<E> inOrder(List<String> ids, Map<String, E> items) {
+        return ids.stream()
+                .map(items::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Warms the cache on startup when {@code framework.redis.warmup.<bucketPrefix>.enabled} is set: the entities
+     * modified in the last {@code lookbackInMilli} are loaded, for each of the configured {@code tenants} if the
+     * bucket is tenant scoped. See {@link CacheWarmup} for the other settings.
+     */
+    protected void warmUpCacheOnStart(@Observes StartupEvent event) {
+
+        if (cache == null || !cacheWarmup.isResolvable() || !warmupSetting("enabled", Boolean.class, false))
+            return;
+
+        Instant since = Instant.now().minusMillis(warmupSetting("lookbackInMilli", Long.class, 86400000L));
+        int limit = warmupSetting("limit", Integer.class, 10000);
+
+        List<String> tenants = ConfigProvider.getConfig()
+                .getOptionalValues("framework.redis.warmup." + cache.getBucketPrefix() + ".tenants", String.class)
+                .orElse(List.of());
+
+        // Registered before they start, so the pod is not reported ready ahead of them.
+        Map<String, CacheWarmup.Progress> warmups = new LinkedHashMap<>();
+        (tenants.isEmpty() ? Collections.<String>singletonList(null) : tenants)
+                .forEach(tenant -> warmups.put(tenant, cacheWarmup.get().start(warmupName(tenant), limit)));
+
+        warmUpTenants(warmups.entrySet().iterator(), since);
+    }
+
+    /**
+     * Warms the tenants one after the other. Each warm-up outlives the observer, so it runs in a request context of
+     * its own that holds the tenant and is only destroyed once the warm-up terminates.
+     */
+    private void warmUpTenants(Iterator<Map.Entry<String, CacheWarmup.Progress>> warmups, Instant since) {
+
+        if (!warmups.hasNext())
+            return;
+
+        Map.Entry<String, CacheWarmup.Progress> warmup = warmups.next();
+        String name = warmupName(warmup.getKey());
+
+        vertx.getOrCreateContext().runOnContext(() -> {
+            ManagedContext requestContext = Arc.container().requestContext();
+            requestContext.activate();
+            ContextState state = requestContext.getState();
+
+            try {
+                if (warmup.getKey() != null)
+                    localContext.setTenantId(warmup.getKey());
+
+                Uni.createFrom().deferred(() -> warmUpCache(since, warmup.getValue()))
+                        .eventually(() -> requestContext.destroy(state))
+                        .subscribe().with(
+                                count -> {
+                                    Log.infof("Cache warm-up of %s loaded %d entities", name, count);
+                                    warmUpTenants(warmups, since);
+                                },
+                                throwable -> {
+                                    Log.error("Cache warm-up of " + name + " failed", throwable);
+                                    warmUpTenants(warmups, since);
+                                });
+            } finally {
+                requestContext.deactivate();
+            }
+        });
+    }
+
+    /**
+     * Loads the entities modified since {@code since} into the cache, most recent first, without overwriting the
+     * keys already cached. At most {@code limit} entities are read, in pages of {@code batchSize} that are each
+     * written in one pipelined round trip, at no more than {@code ratePerSecond} entities per second (unthrottled
+     * when not positive).
+     *
+     * @return the number of entities loaded
+     */
+    protected Uni<Long> warmUpCache(Instant since) {
+
+        Objects.requireNonNull(cache);
+
+        return warmUpCache(since, startWarmup(warmupSetting("limit", Integer.class, 10000)));
+    }
+
+    /**
+     * @param progress the progress registered for the warm-up
+     */
+    protected Uni<Long> warmUpCache(Instant since, CacheWarmup.Progress progress) {
+
+        Objects.requireNonNull(cache);
+
+        int limit = warmupSetting("limit", Integer.class, 10000);
+        int batchSize = warmupSetting("batchSize", Integer.class, 500);
+
+        return tracked(Multi.createBy().repeating()
+                .uni(AtomicInteger::new, offset -> repository.findByLastModifiedAtGreaterThan(
+                        since, offset.getAndAdd(batchSize), batchSize, List.of("-lastModifiedAt")).collect().asList())
+                .whilst(page -> page.size() == batchSize)
+                .select().first((limit + batchSize - 1) / batchSize), progress);
+    }
+
+    /**
+     * Like {@link #warmUpCache(Instant)} for a known list of ids, e.g. the hottest keys of a previous deployment.
+     */
+    protected Uni<Long> warmUpCache(List<String> ids) {
+
+        Objects.requireNonNull(cache);
+
+        int batchSize = warmupSetting("batchSize", Integer.class, 500);
+        CacheWarmup.Progress progress = startWarmup(ids.size());
+
+        List<List<String>> batches = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += batchSize)
+            batches.add(ids.subList(i, Math.min(ids.size(), i + batchSize)));
+
+        return tracked(Multi.createFrom().iterable(batches)
+                .onItem().transformToUniAndConcatenate(batch -> repository.getByIds(batch, new ArrayList<>()).collect().asList()), progress);
+    }
+
+    private Uni<Long> tracked(Multi<List<E>> pages, CacheWarmup.Progress progress) {
+
+        long expiryInMilli = warmupSetting("expiryInMilli", Long.class, defaultCacheExpiryInMilli);
+        int ratePerSecond = warmupSetting("ratePerSecond", Integer.class, 5000);
+
+        return pages
+                .onItem().transformToUniAndConcatenate(page -> cache.setIfAbsent(
+                                page.stream().collect(Collectors.toMap(E::getId, Function.identity(), (first, second) -> first)), expiryInMilli)
+                        .invoke(() -> progress.loaded(page.size()))
+                        .onItem().delayIt().by(Duration.ofMillis(ratePerSecond > 0 ? page.size() * 1000L / ratePerSecond : 0L))
+                        .replaceWith(page.size()))
+                .collect().with(Collectors.summingLong(Integer::longValue))
+                .invoke(progress::completed)
+                .onFailure().invoke(progress::failed);
+    }
+
+    private CacheWarmup.Progress startWarmup(long expected) {
+
+        String name = warmupName(localContext.getTenantId());
+
+        return cacheWarmup.isResolvable() ? cacheWarmup.get().start(name, expected) : new CacheWarmup.Progress(expected);
+    }
+
+    private String warmupName(String tenant) {
+
+        return cache.getBucketPrefix() + (tenant == null ? "" : GlobalConstant.DELIMITER + tenant);
+    }
+
+    private <V> V warmupSetting(String name, Class<V> type, V defaultValue) {
+
+        return CacheWarmup.setting(cache.getBucketPrefix(), name, type, defaultValue);
+    }
+
+    protected Uni<Void> invalidateCache(String id) {
+
+        return invalidateCache(List.of(id));
+    }
+
+    /**
+     * Drops every cached key of the tenant, in all buckets, by bumping its epoch (see {@link CacheEpochs}).
+     */
+    protected Uni<Void> invalidateTenantCache(String tenantId) {
+
+        return epochs().chain(epochs -> epochs.invalidateTenant(tenantId)).replaceWithVoid();
+    }
+
+    /**
+     * Drops every cached key of the buckets carrying the tag by bumping its epoch; the bucket prefix is a tag of its
+     * own bucket.
+     */
+    protected Uni<Void> invalidateCacheTag(String tag) {
+
+        return epochs().chain(epochs -> epochs.invalidateTag(tag)).replaceWithVoid();
+    }
+
+    private Uni<CacheEpochs> epochs() {
+
+        if (!cacheEpochs.isResolvable() || !cacheEpochs.get().isEnabled())
+            return Uni.createFrom().failure(new BaseRuntimeException(
+                    ErrorLevel.ERROR,
+                    ErrorCode.INTERNAL_SERVER_ERROR,
+                    "Cache epochs disabled",
+                    "framework.redis.epoch.enabled must be set to invalidate by tenant or tag"
+            ));
+
+        return Uni.createFrom().item(cacheEpochs.get());
+    }
+
     protected Uni<Void> invalidateCache(List<String> ids) {
 
+        return invalidateCache(ids, waitForInvalidationFlush);
+    }
+
+    /**
+     * With {@code framework.redis.invalidation.batching.enabled} the keys are unlinked together with those of
+     * concurrent requests, see {@link InvalidationBatcher}; without it they are deleted right away.
+     *
+     * @param waitForFlush whether to complete once the keys are gone from redis, or right after queuing them; only
+     *                     applies to batched invalidations
+     */
+    protected Uni<Void> invalidateCache(List<String> ids, boolean waitForFlush) {
+
         Objects.requireNonNull(cache);
 
-        return cache.delete(ids)
-                .onFailure().retry().atMost(3)
+        Uni<Void> invalidated = cacheInvalidation(() -> invalidationBatchingEnabled ?
+                cache.invalidate(ids, waitForFlush) :
+                cache.delete(ids).onFailure().retry().atMost(3));
+
+        return invalidated
                 .onFailure().invoke(Log::error)
                 .onFailure().recoverWithNull();
     }
@@ -0,0 +1,192 @@
+package com.services.sf.commons.base;
+
+import com.services.common.domain.base.BaseDomain;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.redis.client.Command;
+import io.vertx.mutiny.redis.client.Request;
+import io.vertx.mutiny.redis.client.Response;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Queues cache operations of a bucket and sends them as a single redis pipeline on {@link #execute()}.
+ * <p>
+ * Every operation returns a {@link Result} that holds its outcome once the batch has run. Keys are resolved when the
+ * operation is queued, with the tenant of the current request, and values go through the bucket mapper and codec
+ * like any other cache operation. Near cache entries of the keys written by the batch are invalidated after it runs.
+ * A batch is meant for a single request: it is not thread safe and runs once.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CacheBatch<E extends BaseDomain, C> {
+
+    final BaseCacheRepositoryImpl<C> repository;
+    final BaseCacheMapper<E, C> mapper;
+    final Function<List<String>, Uni<Void>> onWritten;
+    final String tenant;
+
+    final List<byte[]> keys = new ArrayList<>();
+    final List<Request> requests = new ArrayList<>();
+    final List<Result<?>> results = new ArrayList<>();
+    final List<String> writtenKeys = new ArrayList<>();
+
+    boolean executed;
+
+    /**
+     * @param onWritten called with the keys overwritten or deleted by the batch once it has run
+     */
+    CacheBatch(BaseCacheRepositoryImpl<C> repository,
+               BaseCacheMapper<E, C> mapper,
+               Function<List<String>, Uni<Void>> onWritten) {
+        this.repository = repository;
+        this.mapper = mapper;
+        this.onWritten = onWritten;
+        this.tenant = repository.tenant();
+    }
+
+    public Result<E> get(String id) {
+        String key = repository.getBucket(tenant, id);
+        return queue(id, Request.cmd(Command.GET), response -> toEntity(key, response));
+    }
+
+    public Result<Boolean> exists(String id) {
+        return queue(id, Request.cmd(Command.EXISTS), CacheBatch::isPositive);
+    }
+
+    public Result<Boolean> set(String id, E e, Long expiryInMilliseconds) {
+        String key = repository.getBucket(tenant, id);
+        writtenKeys.add(key);
+        return queue(id, Request.cmd(Command.SET), response -> response != null, encode(key, e), "PX", expiryInMilliseconds);
+    }
+
+    public Result<Boolean> delete(String id) {
+        writtenKeys.add(repository.getBucket(tenant, id));
+        return queue(id, Request.cmd(Command.DEL), CacheBatch::isPositive);
+    }
+
+    public Result<E> hget(String hash, String field) {
+        String key = repository.getBucket(tenant, hash);
+        return queue(hash, Request.cmd(Command.HGET), response -> toEntity(key, response), field);
+    }
+
+    /**
+     * @return whether the field is new
+     */
+    public Result<Boolean> hset(String hash, String field, E e) {
+        String key = repository.getBucket(tenant, hash);
+        return queue(hash, Request.cmd(Command.HSET), CacheBatch::isPositive, field, encode(key, e));
+    }
+
+    public Result<Boolean> hdel(String hash, String field) {
+        return queue(hash, Request.cmd(Command.HDEL), CacheBatch::isPositive, field);
+    }
+
+    /**
+     * @return whether the member is new
+     */
+    public Result<Boolean> zadd(String hash, E e, Number score) {
+        String key = repository.getBucket(tenant, hash);
+        return queue(hash, Request.cmd(Command.ZADD), CacheBatch::isPositive, score.doubleValue(), encode(key, e));
+    }
+
+    public Result<Boolean> expire(String key, Long timeInSeconds) {
+        return queue(key, Request.cmd(Command.EXPIRE), CacheBatch::isPositive, timeInSeconds);
+    }
+
+    public int size() {
+        return requests.size();
+    }
+
+    /**
+     * Sends the queued operations in one pipeline (one per hash slot in a cluster) and completes their results.
+     */
+    public Uni<Void> execute() {
+        if (executed)
+            return Uni.createFrom().failure(new IllegalStateException("Cache batch already executed"));
+
+        executed = true;
+
+        if (requests.isEmpty())
+            return Uni.createFrom().voidItem();
+
+        return repository.observe("batch", repository.pipeline(keys, requests))
+                .invoke(responses -> {
+                    for (int i = 0; i < results.size(); i++)
+                        results.get(i).complete(responses.get(i));
+                })
+                .call(() -> writtenKeys.isEmpty() ? Uni.createFrom().voidItem() : onWritten.apply(writtenKeys))
+                .replaceWithVoid();
+    }
+
+    private <T> Result<T> queue(String id, Request request, Function<Response, T> parser, Object... args) {
+        if (executed)
+            throw new IllegalStateException("Cache batch already executed");
+
+        byte[] key = repository.getBucketBytes(tenant, id);
+        request.arg(key);
+        for (Object arg : args) {
+            if (arg instanceof byte[] bytes)
+                request.arg(bytes);
+            else
+                request.arg(String.valueOf(arg));
+        }
+
+        Result<T> result = new Result<>(parser);
+        keys.add(key);
+        requests.add(request);
+        results.add(result);
+        return result;
+    }
+
+    private byte[] encode(String key, E e) {
+        return repository.written(key, repository.encode(mapper.toSecond(e)));
+    }
+
+    private E toEntity(String key, Response response) {
+        if (response == null)
+            return null;
+
+        C value = repository.decodeValue(repository.read(key, response.toBytes()));
+        return value == null ? null : mapper.toFirst(value);
+    }
+
+    private static boolean isPositive(Response response) {
+        return response != null && response.toLong() > 0;
+    }
+
+    /**
+     * Outcome of a batched operation, available once the batch has run.
+     */
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Result<T> {
+
+        final Function<Response, T> parser;
+        T value;
+        boolean done;
+
+        Result(Function<Response, T> parser) {
+            this.parser = parser;
+        }
+
+        public boolean isDone() {
+            return done;
+        }
+
+        /**
+         * @throws IllegalStateException when the batch has not run yet
+         */
+        public T get() {
+            if (!done)
+                throw new IllegalStateException("Cache batch not executed yet");
+            return value;
+        }
+
+        void complete(Response response) {
+            value = parser.apply(response);
+            done = true;
+        }
+    }
+}
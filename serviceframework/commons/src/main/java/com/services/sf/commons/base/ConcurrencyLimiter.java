@@ -0,0 +1,333 @@
+package com.services.sf.commons.base;
+
+import com.services.common.enums.ErrorCode;
+import com.services.common.enums.ErrorLevel;
+import com.services.common.exception.BaseRuntimeException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.UniEmitter;
+import io.vertx.mutiny.core.Context;
+import io.vertx.mutiny.core.Vertx;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounds the repository calls in flight, per repository and per {@link Operation}, with a limit derived from their
+ * latency.
+ * <p>
+ * The limit follows the gradient between the long term and the recent latency of the calls: it grows while the recent
+ * latency stays within {@code framework.limiter.tolerance} times the long term one, and shrinks as soon as calls slow
+ * down; a call timing out cuts it by {@code framework.limiter.backoffRatio}. It stays between
+ * {@code framework.limiter.minLimit} and {@code framework.limiter.maxLimit}.
+ * <p>
+ * A call over the limit waits in a queue of {@code framework.limiter.queueSize} calls for at most
+ * {@code framework.limiter.queueTimeoutInMilli}, and fails with {@link ErrorCode#SERVICE_UNAVAILABLE} when the queue is
+ * full or the wait is over; with the default queue size of 0 it fails right away. {@code limiter.limit},
+ * {@code limiter.inFlight} and {@code limiter.queued} are exposed as gauges and {@code limiter.rejections} as a counter,
+ * tagged with the repository and the operation.
+ */
+@ApplicationScoped
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ConcurrencyLimiter {
+
+    final Map<String, Limit> limits = new ConcurrentHashMap<>();
+
+    @Inject
+    protected MeterRegistry meterRegistry;
+
+    @Inject
+    protected Vertx vertx;
+
+    @ConfigProperty(name = "framework.limiter.enabled", defaultValue = "false")
+    protected Boolean enabled;
+
+    @ConfigProperty(name = "framework.limiter.initialLimit", defaultValue = "20")
+    protected Integer initialLimit;
+
+    @ConfigProperty(name = "framework.limiter.minLimit", defaultValue = "1")
+    protected Integer minLimit;
+
+    @ConfigProperty(name = "framework.limiter.maxLimit", defaultValue = "1000")
+    protected Integer maxLimit;
+
+    @ConfigProperty(name = "framework.limiter.tolerance", defaultValue = "1.5")
+    protected Double tolerance;
+
+    @ConfigProperty(name = "framework.limiter.backoffRatio", defaultValue = "0.9")
+    protected Double backoffRatio;
+
+    @ConfigProperty(name = "framework.limiter.queueSize", defaultValue = "0")
+    protected Integer queueSize;
+
+    @ConfigProperty(name = "framework.limiter.queueTimeoutInMilli", defaultValue = "1000")
+    protected Long queueTimeoutInMilli;
+
+    public enum Operation {
+        READ, WRITE, QUERY
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public <V> Uni<V> execute(String repository, Operation operation, Supplier<Uni<V>> call) {
+
+        if (!enabled)
+            return call.get();
+
+        return Uni.createFrom().deferred(() -> {
+            Ticket ticket = limit(repository, operation).ticket();
+
+            return ticket.admitted()
+                    .chain(ignored -> call.get())
+                    .onTermination().invoke((item, failure, cancelled) -> ticket.terminated(failure, cancelled));
+        });
+    }
+
+    public <V> Multi<V> stream(String repository, Operation operation, Supplier<Multi<V>> call) {
+
+        if (!enabled)
+            return call.get();
+
+        return Multi.createFrom().deferred(() -> {
+            Ticket ticket = limit(repository, operation).ticket();
+
+            return ticket.admitted()
+                    .onItem().transformToMulti(ignored -> call.get())
+                    .onTermination().invoke(ticket::terminated);
+        });
+    }
+
+    private Limit limit(String repository, Operation operation) {
+        return limits.computeIfAbsent(repository + ":" + operation, ignored -> {
+            Limit limit = new Limit(repository, operation);
+            String tag = operation.name().toLowerCase();
+
+            Gauge.builder("limiter.limit", limit, Limit::currentLimit)
+                    .tags("repository", repository, "operation", tag)
+                    .register(meterRegistry);
+            Gauge.builder("limiter.inFlight", limit, Limit::inFlight)
+                    .tags("repository", repository, "operation", tag)
+                    .register(meterRegistry);
+            Gauge.builder("limiter.queued", limit, Limit::queued)
+                    .tags("repository", repository, "operation", tag)
+                    .register(meterRegistry);
+
+            return limit;
+        });
+    }
+
+    /**
+     * Gradient limit of a repository operation; its state is guarded by the instance lock.
+     */
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    final class Limit {
+
+        static final double LONG_WINDOW = 600;
+        static final double SHORT_WINDOW = 10;
+        static final double SMOOTHING = 0.2;
+
+        final String repository;
+        final Operation operation;
+        final Queue<Ticket> waiting = new ArrayDeque<>();
+        double limit = initialLimit;
+        int inFlight;
+        double longRttInNanos;
+        double shortRttInNanos;
+
+        Limit(String repository, Operation operation) {
+            this.repository = repository;
+            this.operation = operation;
+        }
+
+        Ticket ticket() {
+            return new Ticket(this);
+        }
+
+        synchronized double currentLimit() {
+            return limit;
+        }
+
+        synchronized double inFlight() {
+            return inFlight;
+        }
+
+        synchronized double queued() {
+            return waiting.size();
+        }
+
+        synchronized boolean tryAdmit(Ticket ticket) {
+            if (inFlight >= (int) limit)
+                return false;
+
+            inFlight++;
+            ticket.state.set(Ticket.ADMITTED);
+            return true;
+        }
+
+        /**
+         * @return whether the ticket got a permit, false when it was queued
+         * @throws BaseRuntimeException when it can neither run nor wait
+         */
+        synchronized boolean admitOrQueue(Ticket ticket) {
+            if (tryAdmit(ticket))
+                return true;
+
+            if (waiting.size() >= queueSize)
+                throw rejected();
+
+            waiting.add(ticket);
+            return false;
+        }
+
+        synchronized void dequeue(Ticket ticket) {
+            waiting.remove(ticket);
+        }
+
+        void release(long rttInNanos, boolean timedOut) {
+            Ticket next;
+
+            synchronized (this) {
+                if (timedOut)
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                else if (rttInNanos >= 0)
+                    sample(rttInNanos);
+
+                inFlight--;
+                next = nextAdmitted();
+            }
+
+            // Resumed outside of the lock, on the context of the call that waited.
+            while (next != null) {
+                next.resume();
+
+                synchronized (this) {
+                    next = nextAdmitted();
+                }
+            }
+        }
+
+        private Ticket nextAdmitted() {
+            while (inFlight < (int) limit && !waiting.isEmpty()) {
+                Ticket ticket = waiting.poll();
+
+                if (ticket.state.compareAndSet(Ticket.WAITING, Ticket.ADMITTED)) {
+                    inFlight++;
+                    return ticket;
+                }
+            }
+
+            return null;
+        }
+
+        private void sample(long rttInNanos) {
+            longRttInNanos = longRttInNanos == 0 ? rttInNanos : longRttInNanos + (rttInNanos - longRttInNanos) / LONG_WINDOW;
+            shortRttInNanos = shortRttInNanos == 0 ? rttInNanos : shortRttInNanos + (rttInNanos - shortRttInNanos) / SHORT_WINDOW;
+
+            // Under-used, the latency says nothing about the limit.
+            if (inFlight < limit / 2)
+                return;
+
+            // Lets the long term latency catch up after a lasting slow down instead of shrinking the limit forever.
+            if (longRttInNanos / shortRttInNanos > 2)
+                longRttInNanos *= 0.95;
+
+            double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRttInNanos / shortRttInNanos));
+            double estimate = limit * gradient + Math.sqrt(limit);
+
+            limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + estimate * SMOOTHING));
+        }
+
+        private BaseRuntimeException rejected() {
+            meterRegistry.counter("limiter.rejections", "repository", repository, "operation", operation.name().toLowerCase())
+                    .increment();
+
+            return new BaseRuntimeException(
+                    ErrorLevel.ERROR,
+                    ErrorCode.SERVICE_UNAVAILABLE,
+                    "Concurrency limit reached",
+                    repository + " " + operation.name().toLowerCase() + " calls are over their concurrency limit"
+            );
+        }
+    }
+
+    /**
+     * A call going through a {@link Limit}: it holds a permit from its admission until it terminates, whether it
+     * completes, fails or is cancelled.
+     */
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    final class Ticket {
+
+        static final int WAITING = 0;
+        static final int ADMITTED = 1;
+        static final int DONE = 2;
+
+        final Limit limit;
+        final AtomicInteger state = new AtomicInteger(WAITING);
+        Context context;
+        UniEmitter<? super Void> emitter;
+        long admittedAt;
+
+        Ticket(Limit limit) {
+            this.limit = limit;
+        }
+
+        Uni<Void> admitted() {
+            if (limit.tryAdmit(this)) {
+                admittedAt = System.nanoTime();
+                return Uni.createFrom().voidItem();
+            }
+
+            return Uni.createFrom().<Void>emitter(emitter -> {
+                        this.emitter = emitter;
+                        this.context = vertx.getOrCreateContext();
+
+                        try {
+                            if (limit.admitOrQueue(this)) {
+                                admittedAt = System.nanoTime();
+                                emitter.complete(null);
+                            }
+                        } catch (BaseRuntimeException e) {
+                            emitter.fail(e);
+                        }
+                    })
+                    .ifNoItem().after(Duration.ofMillis(queueTimeoutInMilli)).failWith(limit::rejected);
+        }
+
+        void resume() {
+            context.runOnContext(() -> {
+                admittedAt = System.nanoTime();
+                emitter.complete(null);
+            });
+        }
+
+        void terminated(Throwable failure, boolean cancelled) {
+            if (state.compareAndSet(WAITING, DONE)) {
+                limit.dequeue(this);
+                return;
+            }
+
+            if (!state.compareAndSet(ADMITTED, DONE))
+                return;
+
+            boolean timedOut = failure instanceof TimeoutException || failure instanceof io.smallrye.mutiny.TimeoutException;
+            long rtt = cancelled || admittedAt == 0 ? -1 : System.nanoTime() - admittedAt;
+
+            limit.release(rtt, timedOut);
+        }
+    }
+}
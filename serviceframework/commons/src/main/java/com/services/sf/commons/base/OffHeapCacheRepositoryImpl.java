@@ -0,0 +1,229 @@
+package com.services.sf.commons.base;
+
+import com.services.sf.commons.base.cache.CacheEntry;
+import com.services.sf.commons.base.cache.CacheEnvelope;
+import com.services.sf.commons.base.cache.OffHeapStore;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.redis.client.Response;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Cache repository of a bucket whose key-value entries live in an {@link OffHeapStore} of the pod instead of redis,
+ * selected with {@code framework.redis.offHeap.<bucketPrefix>.enabled}.
+ * <p>
+ * Keys and values are the ones that would be sent to redis (same key encoder, envelope and codec), so get, mget, set,
+ * delete, the versioned writes and the expiries behave the same. Hashes, sorted sets and sets are left to redis. The
+ * store is local to the pod: fills are not shared, while deletes, tombstones, write-throughs and invalidations are
+ * published by the domain repository through the {@link com.services.sf.commons.base.cache.NearCacheInvalidator}, so
+ * that the other pods evict their copy and reload it on the next read.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class OffHeapCacheRepositoryImpl<C> extends BaseCacheRepositoryImpl<C> {
+
+    final OffHeapStore store;
+
+    String bucketPrefix;
+
+    /**
+     * @param repository injected repository whose dependencies and settings are shared
+     */
+    public OffHeapCacheRepositoryImpl(BaseCacheRepositoryImpl<C> repository, OffHeapStore store) {
+        this.localContext = repository.localContext;
+        this.reactiveRedisDataSource = repository.reactiveRedisDataSource;
+        this.cacheCodecs = repository.cacheCodecs;
+        this.cacheMetrics = repository.cacheMetrics;
+        this.cacheEpochs = repository.cacheEpochs;
+        this.compressionThresholdInBytes = repository.compressionThresholdInBytes;
+        this.clientType = repository.clientType;
+        this.scanCount = repository.scanCount;
+        this.store = store;
+    }
+
+    @Override
+    public void setBucketPrefix(String bucketPrefix) {
+        super.setBucketPrefix(bucketPrefix);
+        this.bucketPrefix = bucketPrefix;
+    }
+
+    @Override
+    public Uni<Boolean> exists(final String id) {
+        return observe("exists", Uni.createFrom().item(() -> store.contains(keyOf(id))));
+    }
+
+    @Override
+    public Uni<Optional<C>> lookup(final String id) {
+        String key = getBucket(id);
+        return observeRead("get", Uni.createFrom().item(() -> store.get(keyOf(id)))
+                .onItem().ifNotNull().transform(value -> decode(read(key, value))));
+    }
+
+    @Override
+    public Uni<CacheEntry<C>> getEntry(final String id) {
+        String key = getBucket(id);
+        return observeRead("get", Uni.createFrom().item(() -> store.get(keyOf(id)))
+                .onItem().ifNotNull().transform(value -> decodeEntry(read(key, value))));
+    }
+
+    @Override
+    public Multi<Optional<C>> get(final List<String> ids) {
+        String tenant = tenant();
+
+        return observe("mget", Uni.createFrom().item(() -> ids.stream()
+                        .map(id -> {
+                            byte[] value = store.get(getBucketBytes(tenant, id));
+                            return Optional.ofNullable(value == null ? null : decodeValue(read(getBucket(tenant, id), value)));
+                        })
+                        .toList()))
+                .invoke(values -> {
+                    if (cacheMetrics != null) {
+                        int hits = (int) values.stream().filter(Optional::isPresent).count();
+                        cacheMetrics.lookups(bucketPrefix, "mget", hits, ids.size() - hits);
+                    }
+                })
+                .onItem().transformToMulti(values -> Multi.createFrom().iterable(values));
+    }
+
+    @Override
+    public Uni<List<C>> getList(String id) {
+        String key = getBucket(id);
+        return observeRead("getList", Uni.createFrom().item(() -> store.get(keyOf(id)))
+                .onItem().ifNotNull().transform(value -> decodeList(read(key, value))));
+    }
+
+    @Override
+    public Uni<Response> set(final String id, final C t) {
+        return put("set", id, encode(t), 0L);
+    }
+
+    @Override
+    public Uni<Response> set(final String id, final List<C> t) {
+        return put("setList", id, encodeList(t), 0L);
+    }
+
+    @Override
+    public Uni<Response> set(final String id, final List<C> t, Long expiryInMilliseconds) {
+        return put("setList", id, encodeList(t), expiryInMilliseconds);
+    }
+
+    @Override
+    public Uni<Response> set(final String id, final C t, Long expiryInMilliseconds) {
+        return put("set", id, encode(t), expiryInMilliseconds);
+    }
+
+    @Override
+    public Uni<Response> setEntryAtKey(final String key, final CacheEntry<C> entry, Long staleInMilliseconds) {
+        return putAtKey("set", key, encodeEntry(entry), entryExpiry(entry, staleInMilliseconds));
+    }
+
+    @Override
+    public Uni<Response> setNegativeAtKey(final String key, Long expiryInMilliseconds) {
+        return putAtKey("setNegative", key, encodeNegative(), expiryInMilliseconds);
+    }
+
+    @Override
+    public Uni<Boolean> setIfNotOlder(final String id, final C t, final Long version, Long expiryInMilliseconds) {
+        byte[] value = written(getBucket(id), encode(t, version));
+        return observe("setIfNotOlder", Uni.createFrom().item(() ->
+                store.putIf(keyOf(id), value, expiryInMilliseconds, current -> isNotNewer(current, version))));
+    }
+
+    @Override
+    public Uni<Void> setIfNotOlder(final Map<String, C> mp, final Map<String, Long> versions, Long expiryInMilliseconds) {
+        String tenant = tenant();
+        return observe("setIfNotOlder", Uni.createFrom().item(() -> {
+            mp.forEach((id, value) -> {
+                long version = versions.getOrDefault(id, CacheEnvelope.NO_VERSION);
+                byte[] written = written(getBucket(tenant, id), encode(value, versions.get(id)));
+                store.putIf(getBucketBytes(tenant, id), written, expiryInMilliseconds, current -> isNotNewer(current, version));
+            });
+            return null;
+        })).replaceWithVoid();
+    }
+
+    @Override
+    public Uni<Boolean> setEntryIfNotOlderAtKey(final String key, final CacheEntry<C> entry, Long staleInMilliseconds) {
+        Long entryVersion = entryVersion(entry);
+        long version = entryVersion == null ? CacheEnvelope.NO_VERSION : entryVersion;
+        byte[] value = written(key, encodeEntry(entry));
+        return observe("setIfNotOlder", Uni.createFrom().item(() -> store.putIf(key.getBytes(StandardCharsets.UTF_8), value,
+                entryExpiry(entry, staleInMilliseconds), current -> isNotNewer(current, version))));
+    }
+
+    @Override
+    public Uni<Boolean> setTombstone(final String id, final Long version, Long expiryInMilliseconds) {
+        byte[] value = CacheEnvelope.negative(getCodec().getId(), version).toBytes(Integer.MAX_VALUE);
+        return observe("setTombstone", Uni.createFrom().item(() ->
+                store.putIf(keyOf(id), value, expiryInMilliseconds, current -> isNotNewer(current, version))));
+    }
+
+    @Override
+    public Uni<Void> delete(List<String> ids) {
+        String tenant = tenant();
+        return observe("delete", Uni.createFrom().item(() -> {
+            ids.forEach(id -> store.remove(getBucketBytes(tenant, id)));
+            return null;
+        })).replaceWithVoid();
+    }
+
+    @Override
+    public Uni<Void> mset(final Map<String, C> mp) {
+        return putAll(mp, 0L, false);
+    }
+
+    @Override
+    public Uni<Void> set(final Map<String, C> mp, Long expiryInMilliseconds) {
+        return putAll(mp, expiryInMilliseconds, false);
+    }
+
+    @Override
+    public Uni<Void> setIfAbsent(final Map<String, C> mp, Long expiryInMilliseconds) {
+        return putAll(mp, expiryInMilliseconds, true);
+    }
+
+    private byte[] keyOf(String id) {
+        return getBucketBytes(tenant(), id);
+    }
+
+    private Uni<Response> put(String operation, String id, byte[] value, Long expiryInMilliseconds) {
+        return putAtKey(operation, getBucket(id), value, expiryInMilliseconds);
+    }
+
+    private Uni<Response> putAtKey(String operation, String key, byte[] value, Long expiryInMilliseconds) {
+        byte[] written = written(key, value);
+        return observe(operation, Uni.createFrom().item(() -> store.put(key.getBytes(StandardCharsets.UTF_8), written, expiryInMilliseconds)))
+                .replaceWith(this::okResponse);
+    }
+
+    private Uni<Void> putAll(Map<String, C> mp, Long expiryInMilliseconds, boolean ifAbsent) {
+        String tenant = tenant();
+        return observe("mset", Uni.createFrom().item(() -> {
+            mp.forEach((id, value) -> {
+                byte[] key = getBucketBytes(tenant, id);
+                byte[] written = written(getBucket(tenant, id), encode(value));
+                if (ifAbsent)
+                    store.putIfAbsent(key, written, expiryInMilliseconds);
+                else
+                    store.put(key, written, expiryInMilliseconds);
+            });
+            return null;
+        })).replaceWithVoid();
+    }
+
+    /**
+     * Same rule as the redis compare-and-set: a value is replaced unless it holds a greater entity version.
+     */
+    static boolean isNotNewer(byte[] current, long version) {
+        if (current == null || current.length < CacheEnvelope.ENTITY_VERSION_OFFSET + Long.BYTES || !CacheEnvelope.isEnveloped(current))
+            return true;
+
+        return ByteBuffer.wrap(current).getLong(CacheEnvelope.ENTITY_VERSION_OFFSET) <= version;
+    }
+}
@@ -0,0 +1,114 @@
+package com.services.sf.commons.base;
+
+import com.services.common.domain.base.BaseDomain;
+import com.services.common.domain.base.CursorPage;
+import com.services.common.exception.IllegalArgumentException;
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Position of a keyset paginated listing: the sort key and the id of the last entity returned. The next page is read
+ * with a seek predicate, {@code (sortKey, id) > (cursor.sortKey, cursor.id)}, so its cost does not depend on how deep
+ * it is, unlike an offset.
+ * <p>
+ * Cursors are handed out as url safe base64 tokens; their content is not part of the API.
+ *
+ * @param sortKey null when the listing is only sorted by id
+ */
+public record PageCursor(Instant sortKey, String id) {
+
+    static final String SEPARATOR = "|";
+
+    public String encode() {
+        String raw = (sortKey == null ? "" : sortKey.getEpochSecond() + "." + sortKey.getNano()) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return null for a blank cursor, which reads the first page
+     * @throws IllegalArgumentException when the cursor was not produced by {@link #encode()}
+     */
+    public static PageCursor decode(String cursor) {
+        return decode(cursor, Function.identity());
+    }
+
+    /**
+     * {@link #decode(String)} for a listing whose ids are parsed by the store, e.g. {@code ObjectId::new}: an id the
+     * parser rejects makes the cursor invalid, so it never reaches the query.
+     */
+    public static PageCursor decode(String cursor, Function<String, ?> idParser) {
+        if (StringUtils.isBlank(cursor))
+            return null;
+
+        PageCursor decoded;
+
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            String sortKey = raw.substring(0, separator);
+            int dot = sortKey.indexOf('.');
+
+            decoded = new PageCursor(sortKey.isEmpty() ?
+                    null :
+                    Instant.ofEpochSecond(Long.parseLong(sortKey.substring(0, dot)), Long.parseLong(sortKey.substring(dot + 1))),
+                    raw.substring(separator + 1));
+
+            if (decoded.id().isEmpty())
+                throw new IllegalArgumentException("Invalid page cursor " + cursor);
+
+            idParser.apply(decoded.id());
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid page cursor " + cursor);
+        }
+
+        return decoded;
+    }
+
+    /**
+     * {@link #decode(String, Function)} for a listing sorted by a key before the id, whose cursors must carry that key.
+     */
+    public static PageCursor decodeSorted(String cursor, Function<String, ?> idParser) {
+        PageCursor decoded = decode(cursor, idParser);
+
+        if (decoded != null && decoded.sortKey() == null)
+            throw new IllegalArgumentException("Invalid page cursor " + cursor);
+
+        return decoded;
+    }
+
+    /**
+     * @throws IllegalArgumentException when the page size is missing or not positive
+     */
+    public static int checkLimit(Integer limit) {
+        if (limit == null || limit <= 0)
+            throw new IllegalArgumentException("Invalid page limit " + limit);
+
+        return limit;
+    }
+
+    /**
+     * Builds the page from up to {@code limit + 1} entities read after the cursor: the extra one only tells whether
+     * there is a next page.
+     *
+     * @param sortKey the sort key of an entity, null when the listing is only sorted by id
+     */
+    public static <E extends BaseDomain> CursorPage<E> page(List<E> items, int limit, Function<E, Instant> sortKey) {
+        checkLimit(limit);
+
+        if (items.size() <= limit)
+            return CursorPage.<E>builder().items(items).build();
+
+        List<E> page = List.copyOf(items.subList(0, limit));
+        E last = page.get(limit - 1);
+
+        return CursorPage.<E>builder()
+                .items(page)
+                .nextCursor(new PageCursor(sortKey == null ? null : sortKey.apply(last), last.getId()).encode())
+                .build();
+    }
+}
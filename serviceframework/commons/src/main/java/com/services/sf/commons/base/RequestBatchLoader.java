@@ -0,0 +1,142 @@
+package com.services.sf.commons.base;
+
+import com.services.common.domain.base.BaseDomain;
+import io.quarkus.arc.Arc;
+import io.quarkus.arc.InjectableContext.ContextState;
+import io.quarkus.arc.ManagedContext;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.Context;
+import io.vertx.mutiny.core.Vertx;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.enterprise.context.RequestScoped;
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Merges the single entity loads issued while handling a request into batched loads.
+ * <p>
+ * Ids requested from the same loader are queued, deduplicated, and resolved together on the next event loop tick,
+ * or after {@code framework.batchLoader.waitInMilli} when it is set, with a single call to the batch function;
+ * every caller then gets its own entity, or null when the batch did not return it. A batch is sent as soon as it holds
+ * {@code framework.batchLoader.maxBatchSize} ids. A failed batch fails every load waiting on it.
+ * <p>
+ * The batch function runs in the request context of the load that opened the batch, activated again around the
+ * dispatch when it is sent from a later tick, so that it sees the tenant of the request.
+ */
+@RequestScoped
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class RequestBatchLoader {
+
+    final Map<Object, Batch<?>> batches = new HashMap<>();
+
+    @Inject
+    protected Vertx vertx;
+
+    @ConfigProperty(name = "framework.batchLoader.maxBatchSize", defaultValue = "100")
+    protected Integer maxBatchSize;
+
+    @ConfigProperty(name = "framework.batchLoader.waitInMilli", defaultValue = "0")
+    protected Long waitInMilli;
+
+    /**
+     * @param loader        identifies the batch the id joins, usually the calling service
+     * @param batchFunction loads the entities of a batch of distinct ids, in any order
+     */
+    @SuppressWarnings("unchecked")
+    public <E extends BaseDomain> Uni<E> load(Object loader, String id, Function<List<String>, Uni<List<E>>> batchFunction) {
+
+        ContextState state = Arc.container().requestContext().getState();
+
+        return Uni.createFrom().deferred(() -> {
+            CompletableFuture<E> loaded;
+            Batch<E> full = null;
+
+            synchronized (this) {
+                Batch<E> batch = (Batch<E>) batches.get(loader);
+
+                if (batch == null) {
+                    batch = new Batch<>(batchFunction, state);
+                    batches.put(loader, batch);
+                    schedule(loader, batch);
+                }
+
+                loaded = batch.pending().computeIfAbsent(id, ignored -> new CompletableFuture<>());
+
+                if (batch.pending().size() >= maxBatchSize) {
+                    batches.remove(loader);
+                    full = batch;
+                }
+            }
+
+            if (full != null)
+                dispatch(full);
+
+            return Uni.createFrom().completionStage(loaded);
+        });
+    }
+
+    private void schedule(Object loader, Batch<?> batch) {
+        Context context = vertx.getOrCreateContext();
+
+        if (waitInMilli > 0)
+            vertx.setTimer(waitInMilli, ignored -> context.runOnContext(() -> flush(loader, batch)));
+        else
+            context.runOnContext(() -> flush(loader, batch));
+    }
+
+    private void flush(Object loader, Batch<?> batch) {
+        synchronized (this) {
+            // Already sent when it filled up.
+            if (!batches.remove(loader, batch))
+                return;
+        }
+
+        dispatch(batch);
+    }
+
+    private void dispatch(Batch<?> batch) {
+        ManagedContext requestContext = Arc.container().requestContext();
+
+        if (requestContext.isActive()) {
+            send(batch);
+            return;
+        }
+
+        requestContext.activate(batch.state());
+        try {
+            send(batch);
+        } finally {
+            requestContext.deactivate();
+        }
+    }
+
+    private <E extends BaseDomain> void send(Batch<E> batch) {
+        Map<String, CompletableFuture<E>> pending = batch.pending();
+
+        Uni.createFrom().deferred(() -> batch.batchFunction().apply(new ArrayList<>(pending.keySet())))
+                .subscribe().with(
+                        items -> {
+                            Map<String, E> byId = new HashMap<>();
+                            items.forEach(item -> byId.putIfAbsent(item.getId(), item));
+                            pending.forEach((id, loaded) -> loaded.complete(byId.get(id)));
+                        },
+                        throwable -> pending.values().forEach(loaded -> loaded.completeExceptionally(throwable)));
+    }
+
+    record Batch<E extends BaseDomain>(Function<List<String>, Uni<List<E>>> batchFunction, ContextState state,
+                                       Map<String, CompletableFuture<E>> pending) {
+
+        Batch(Function<List<String>, Uni<List<E>>> batchFunction, ContextState state) {
+            this(batchFunction, state, new LinkedHashMap<>());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.services.sf.commons.base;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.smallrye.mutiny.Uni;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+import javax.enterprise.context.RequestScoped;
+import javax.inject.Inject;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Memoizes the entities read by id while handling a request, so that reading the same entity again returns the
+ * instance already loaded instead of querying the database.
+ * <p>
+ * Entries are keyed by the reading service, the tenant, the id and a scope, which separates the reads made inside a
+ * transaction from the others. Concurrent reads of an entry share a single load; a failed load is not kept. A service
+ * forgets all its entries whenever the request writes through it, and everything is dropped with the request.
+ * Reads are counted in {@code identityMap.reads}, tagged with the outcome: {@code hit} for the reads saved,
+ * {@code miss} for the loads.
+ */
+@RequestScoped
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class RequestIdentityMap {
+
+    static final String METRIC_NAME = "identityMap.reads";
+
+    final Map<Key, Uni<?>> entries = new HashMap<>();
+
+    @Inject
+    protected MeterRegistry meterRegistry;
+
+    /**
+     * @param owner the reading service
+     * @param scope null outside of a transaction, the transaction session inside of one
+     */
+    @SuppressWarnings("unchecked")
+    public <E> Uni<E> get(Object owner, String tenant, Object scope, String id, Supplier<Uni<E>> load) {
+
+        return Uni.createFrom().deferred(() -> {
+            Key key = new Key(owner, tenant, scope, id);
+            Uni<E> entry;
+            boolean hit;
+
+            synchronized (this) {
+                entry = (Uni<E>) entries.get(key);
+                hit = entry != null;
+
+                if (!hit) {
+                    entry = Uni.createFrom().deferred(load::get)
+                            .onFailure().invoke(() -> forget(key))
+                            .memoize().indefinitely();
+                    entries.put(key, entry);
+                }
+            }
+
+            meterRegistry.counter(METRIC_NAME, "outcome", hit ? "hit" : "miss").increment();
+
+            return entry;
+        });
+    }
+
+    /**
+     * Drops every entry read by the service.
+     */
+    public synchronized void evict(Object owner) {
+        entries.keySet().removeIf(key -> key.owner() == owner);
+    }
+
+    private synchronized void forget(Key key) {
+        entries.remove(key);
+    }
+
+    record Key(Object owner, String tenant, Object scope, String id) {
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key key
+                    && owner == key.owner
+                    && scope == key.scope
+                    && Objects.equals(tenant, key.tenant)
+                    && Objects.equals(id, key.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(owner), tenant, System.identityHashCode(scope), id);
+        }
+    }
+}
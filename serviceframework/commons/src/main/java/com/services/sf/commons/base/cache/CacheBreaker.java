@@ -0,0 +1,359 @@
+package com.services.sf.commons.base.cache;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.smallrye.mutiny.Uni;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.HealthCheckResponseBuilder;
+import org.eclipse.microprofile.health.Readiness;
+import org.jboss.logging.Logger;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Bulkhead between the services and redis, per bucket.
+ * <p>
+ * Cache reads fail once they exceed {@code framework.redis.breaker.readBudgetInMilli}, and fills once they exceed
+ * {@code framework.redis.breaker.writeBudgetInMilli} when it is set. The circuit of a bucket opens when, over its last
+ * {@code framework.redis.breaker.window} calls (at least {@code framework.redis.breaker.minimumCalls}), the share of
+ * failed or late calls reaches {@code framework.redis.breaker.failureRateThreshold}. While open, the services skip the
+ * cache of the bucket and go to the database. After {@code framework.redis.breaker.openInMilli} the circuit lets
+ * {@code framework.redis.breaker.halfOpenProbes} calls through: it closes once they all succeed and opens again on the
+ * first failure.
+ * <p>
+ * Invalidations are only skipped when the bucket can be dropped through its epoch, see {@link CacheEpochs}: a skipped
+ * invalidation leaves entries that may be stale for every pod, so the bucket is dropped before the circuit closes.
+ * Without epochs nothing would tell the other pods, and invalidations are always sent to redis, failing like any
+ * other call while it is down.
+ * <p>
+ * The state of each circuit is exposed in the {@code cache.breaker.state} gauge (0 closed, 1 open, 2 half open) and in
+ * the {@code cache-breaker} health check, which stays up since the services keep serving from the database. Calls are
+ * counted in {@code cache.breaker.calls}, tagged with their outcome, and the calls skipped in
+ * {@code cache.breaker.skipped}.
+ */
+@Readiness
+@ApplicationScoped
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@IfBuildProperty(name = "framework.redis.enabled", stringValue = "true")
+public class CacheBreaker implements HealthCheck {
+
+    // A logger of its own rather than Log, so that the circuits also run outside of Quarkus.
+    private static final Logger LOG = Logger.getLogger(CacheBreaker.class);
+
+    final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+    @Inject
+    protected MeterRegistry meterRegistry;
+
+    @Inject
+    protected Instance<CacheEpochs> cacheEpochs;
+
+    @ConfigProperty(name = "framework.redis.breaker.enabled", defaultValue = "false")
+    protected Boolean enabled;
+
+    @ConfigProperty(name = "framework.redis.breaker.readBudgetInMilli", defaultValue = "50")
+    protected Long readBudgetInMilli;
+
+    @ConfigProperty(name = "framework.redis.breaker.writeBudgetInMilli", defaultValue = "0")
+    protected Long writeBudgetInMilli;
+
+    @ConfigProperty(name = "framework.redis.breaker.failureRateThreshold", defaultValue = "0.5")
+    protected Double failureRateThreshold;
+
+    @ConfigProperty(name = "framework.redis.breaker.window", defaultValue = "100")
+    protected Integer window;
+
+    @ConfigProperty(name = "framework.redis.breaker.minimumCalls", defaultValue = "20")
+    protected Integer minimumCalls;
+
+    @ConfigProperty(name = "framework.redis.breaker.openInMilli", defaultValue = "10000")
+    protected Long openInMilli;
+
+    @ConfigProperty(name = "framework.redis.breaker.halfOpenProbes", defaultValue = "5")
+    protected Integer halfOpenProbes;
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    enum Admission {
+        CALL, PROBE, SKIP
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return whether cache reads of the bucket are currently skipped
+     */
+    public boolean isBypassed(String bucket) {
+        return enabled && circuit(bucket).bypassesReads();
+    }
+
+    /**
+     * @return a null item, without calling redis, when the read is skipped
+     */
+    public <V> Uni<V> read(String bucket, Supplier<Uni<V>> read) {
+
+        if (!enabled)
+            return read.get();
+
+        return call(bucket, "read", read, readBudgetInMilli, false);
+    }
+
+    /**
+     * A write filling the cache, harmless to skip.
+     *
+     * @return a null item, without calling redis, when the write is skipped
+     */
+    public <V> Uni<V> write(String bucket, Supplier<Uni<V>> write) {
+
+        if (!enabled)
+            return write.get();
+
+        return call(bucket, "write", write, writeBudgetInMilli, false);
+    }
+
+    /**
+     * A write keeping the cache consistent with the database, an invalidation or a write through: skipping it leaves
+     * the bucket possibly stale until it is dropped, so it is never skipped without epochs.
+     *
+     * @return a null item, without calling redis, when the invalidation is skipped
+     */
+    public <V> Uni<V> invalidate(String bucket, Supplier<Uni<V>> invalidation) {
+
+        if (!enabled)
+            return invalidation.get();
+
+        return call(bucket, "invalidate", invalidation, writeBudgetInMilli, true);
+    }
+
+    private <V> Uni<V> call(String bucket, String operation, Supplier<Uni<V>> call, long budgetInMilli, boolean invalidation) {
+
+        return Uni.createFrom().deferred(() -> {
+            Circuit circuit = circuit(bucket);
+            Admission admission = circuit.admit(invalidation);
+
+            if (admission == Admission.SKIP) {
+                meterRegistry.counter("cache.breaker.skipped", "bucket", bucket, "operation", operation).increment();
+                return Uni.createFrom().nullItem();
+            }
+
+            // A read probing a circuit that may be stale only tells whether redis is back.
+            boolean discard = admission == Admission.PROBE && !invalidation && circuit.isStale();
+            Uni<V> called = call.get();
+
+            if (budgetInMilli > 0)
+                called = called.ifNoItem().after(Duration.ofMillis(budgetInMilli)).fail();
+
+            return called
+                    .onItemOrFailure().invoke((item, failure) -> circuit.record(admission, failure))
+                    .onCancellation().invoke(() -> circuit.abandon(admission))
+                    .map(item -> discard ? null : item);
+        });
+    }
+
+    private boolean epochsEnabled() {
+        return cacheEpochs.isResolvable() && cacheEpochs.get().isEnabled();
+    }
+
+    private Circuit circuit(String bucket) {
+        return circuits.computeIfAbsent(bucket, ignored -> {
+            Circuit circuit = new Circuit(bucket);
+
+            Gauge.builder("cache.breaker.state", circuit, c -> c.state().ordinal())
+                    .tags("bucket", bucket)
+                    .register(meterRegistry);
+
+            return circuit;
+        });
+    }
+
+    @Override
+    public HealthCheckResponse call() {
+        HealthCheckResponseBuilder builder = HealthCheckResponse.named("cache-breaker");
+
+        circuits.forEach((bucket, circuit) -> builder.withData(bucket, circuit.toString()));
+
+        return builder.up().build();
+    }
+
+    /**
+     * Circuit of a bucket; its state is guarded by the instance lock.
+     */
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    final class Circuit {
+
+        final String bucket;
+        final boolean[] failed = new boolean[window];
+        int next;
+        int calls;
+        int failures;
+        State state = State.CLOSED;
+        long openedAt;
+        int probesStarted;
+        int probesSucceeded;
+        boolean stale;
+        boolean dropping;
+
+        Circuit(String bucket) {
+            this.bucket = bucket;
+        }
+
+        synchronized State state() {
+            return state;
+        }
+
+        synchronized boolean isStale() {
+            return stale;
+        }
+
+        synchronized boolean bypassesReads() {
+            return state != State.CLOSED;
+        }
+
+        synchronized Admission admit(boolean invalidation) {
+            long now = System.currentTimeMillis();
+
+            if (state == State.OPEN && now - openedAt >= openInMilli)
+                transition(State.HALF_OPEN);
+
+            Admission admission = switch (state) {
+                case CLOSED -> Admission.CALL;
+                case HALF_OPEN -> !dropping && probesStarted < halfOpenProbes ? Admission.PROBE : Admission.SKIP;
+                case OPEN -> Admission.SKIP;
+            };
+
+            if (admission == Admission.PROBE)
+                probesStarted++;
+
+            if (admission == Admission.SKIP && invalidation) {
+                // Only the epoch drops the entries the invalidation would have removed on every pod.
+                if (!epochsEnabled())
+                    return Admission.CALL;
+
+                stale = true;
+            }
+
+            return admission;
+        }
+
+        void record(Admission admission, Throwable failure) {
+            boolean timedOut = failure instanceof TimeoutException || failure instanceof io.smallrye.mutiny.TimeoutException;
+
+            meterRegistry.counter("cache.breaker.calls", "bucket", bucket,
+                    "outcome", failure == null ? "success" : timedOut ? "timeout" : "failure").increment();
+
+            boolean drop = false;
+
+            synchronized (this) {
+                if (admission == Admission.PROBE && state == State.HALF_OPEN) {
+                    if (failure != null)
+                        open();
+                    else if (++probesSucceeded >= halfOpenProbes)
+                        drop = closeOrDrop();
+                } else if (admission == Admission.CALL && state == State.CLOSED) {
+                    count(failure != null);
+                }
+            }
+
+            if (drop)
+                drop();
+        }
+
+        /**
+         * Frees the slot of a probe cancelled before it answered.
+         */
+        synchronized void abandon(Admission admission) {
+            if (admission == Admission.PROBE && state == State.HALF_OPEN && probesStarted > probesSucceeded)
+                probesStarted--;
+        }
+
+        private void count(boolean failure) {
+            if (calls == failed.length) {
+                if (failed[next])
+                    failures--;
+            } else {
+                calls++;
+            }
+
+            failed[next] = failure;
+            next = (next + 1) % failed.length;
+
+            if (failure)
+                failures++;
+
+            if (calls >= minimumCalls && failures >= failureRateThreshold * calls)
+                open();
+        }
+
+        /**
+         * @return whether the bucket must be dropped before closing
+         */
+        private boolean closeOrDrop() {
+            if (!stale) {
+                transition(State.CLOSED);
+                return false;
+            }
+
+            dropping = true;
+            return true;
+        }
+
+        private void drop() {
+            cacheEpochs.get().invalidateTag(bucket)
+                    .subscribe().with(
+                            ignored -> {
+                                synchronized (this) {
+                                    dropping = false;
+                                    stale = false;
+                                    transition(State.CLOSED);
+                                }
+                            },
+                            throwable -> {
+                                LOG.error("Dropping the cache bucket " + bucket + " failed", throwable);
+                                synchronized (this) {
+                                    dropping = false;
+                                    open();
+                                }
+                            });
+        }
+
+        private void open() {
+            openedAt = System.currentTimeMillis();
+            transition(State.OPEN);
+        }
+
+        private void transition(State to) {
+            if (to != State.OPEN)
+                LOG.info("Cache circuit of " + bucket + " is " + to.name().toLowerCase().replace('_', ' '));
+            else if (state != State.OPEN)
+                LOG.warn("Cache circuit of " + bucket + " is open");
+
+            state = to;
+            next = 0;
+            calls = 0;
+            failures = 0;
+            probesStarted = 0;
+            probesSucceeded = 0;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return state.name().toLowerCase().replace('_', ' ') + (stale ? " stale" : "");
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.services.sf.commons.base.cache;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * A cached value together with the timing needed for early refresh.
+ * <p>
+ * {@code expiresAt} is the logical expiry. The redis key is kept a little longer than that so a stale value is
+ * still around to be served while it is being reloaded. Values written without timing (legacy values, near cache
+ * hits) never expire logically and are governed by the key TTL only.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CacheEntry<C> {
+
+    C value;
+    boolean negative;
+    Long version;
+    long writtenAt;
+    long expiresAt;
+    long computeMillis;
+
+    public static <C> CacheEntry<C> of(C value, long expiryInMilli, long computeMillis) {
+        long now = System.currentTimeMillis();
+        return new CacheEntry<>(value, false, null, now, now + expiryInMilli, computeMillis);
+    }
+
+    public static <C> CacheEntry<C> of(C value, Long version, long writtenAt, long expiresAt, long computeMillis) {
+        return new CacheEntry<>(value, false, version, writtenAt, expiresAt, computeMillis);
+    }
+
+    public static <C> CacheEntry<C> untimed(C value) {
+        return untimed(value, null);
+    }
+
+    public static <C> CacheEntry<C> untimed(C value, Long version) {
+        return new CacheEntry<>(value, false, version, 0L, Long.MAX_VALUE, 0L);
+    }
+
+    public static <C> CacheEntry<C> negativeEntry() {
+        return new CacheEntry<>(null, true, null, 0L, Long.MAX_VALUE, 0L);
+    }
+
+    public boolean isTimed() {
+        return expiresAt != Long.MAX_VALUE;
+    }
+
+    public <D> CacheEntry<D> map(Function<C, D> mapper) {
+        return new CacheEntry<>(value == null ? null : mapper.apply(value), negative, version, writtenAt, expiresAt, computeMillis);
+    }
+
+    public boolean isExpired(long now) {
+        return now >= expiresAt;
+    }
+
+    /**
+     * XFetch: refresh ahead of expiry with a probability that grows as expiry approaches and with the time the
+     * value took to compute, so that a single caller reloads it before everyone else misses.
+     */
+    public boolean shouldRefreshEarly(long now, double beta) {
+        if (!isTimed())
+            return false;
+
+        return now - computeMillis * beta * Math.log(1 - ThreadLocalRandom.current().nextDouble()) >= expiresAt;
+    }
+}
@@ -0,0 +1,150 @@
+package com.services.sf.commons.base.cache;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+/**
+ * Binary frame around every cached value.
+ * <pre>
+ * magic (2) | format version (1) | codec id (1) | flags (1) | entity version (8)
+ *   [ written at (8) | expires at (8) | compute millis (8) ]   when FLAG_TIMED
+ *   [ uncompressed length (4) ]                                when FLAG_COMPRESSED
+ *   payload
+ * </pre>
+ * The entity version sits at a fixed offset so it can be read server side. Values that do not start with the
+ * magic predate the envelope and are decoded as plain codec output.
+ */
+@Getter
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CacheEnvelope {
+
+    public static final byte MAGIC_0 = (byte) 0xCA;
+    public static final byte MAGIC_1 = (byte) 0xC4;
+    public static final byte FORMAT_VERSION = 1;
+
+    public static final int ENTITY_VERSION_OFFSET = 5;
+    public static final long NO_VERSION = Long.MIN_VALUE;
+
+    static final byte FLAG_COMPRESSED = 1;
+    static final byte FLAG_NEGATIVE = 1 << 1;
+    static final byte FLAG_TIMED = 1 << 2;
+
+    static final int HEADER_LENGTH = 13;
+    static final int TIMING_LENGTH = 24;
+
+    static final LZ4Compressor COMPRESSOR = LZ4Factory.fastestInstance().fastCompressor();
+    static final LZ4FastDecompressor DECOMPRESSOR = LZ4Factory.fastestInstance().fastDecompressor();
+
+    byte codecId;
+    boolean negative;
+    Long entityVersion;
+    boolean timed;
+    long writtenAt;
+    long expiresAt;
+    long computeMillis;
+    byte[] payload;
+
+    public static CacheEnvelope of(byte codecId, Long entityVersion, byte[] payload) {
+        return new CacheEnvelope(codecId, false, entityVersion, false, 0L, Long.MAX_VALUE, 0L, payload);
+    }
+
+    public static CacheEnvelope timed(byte codecId, Long entityVersion, long writtenAt, long expiresAt, long computeMillis, byte[] payload) {
+        return new CacheEnvelope(codecId, false, entityVersion, true, writtenAt, expiresAt, computeMillis, payload);
+    }
+
+    public static CacheEnvelope negative(byte codecId) {
+        return negative(codecId, null);
+    }
+
+    /**
+     * @param entityVersion version of the delete when the negative entry is a tombstone
+     */
+    public static CacheEnvelope negative(byte codecId, Long entityVersion) {
+        return new CacheEnvelope(codecId, true, entityVersion, false, 0L, Long.MAX_VALUE, 0L, new byte[0]);
+    }
+
+    public static boolean isEnveloped(byte[] bytes) {
+        return bytes.length >= HEADER_LENGTH && bytes[0] == MAGIC_0 && bytes[1] == MAGIC_1;
+    }
+
+    /**
+     * @param compressionThreshold payloads of at least this many bytes are compressed with LZ4
+     */
+    public byte[] toBytes(int compressionThreshold) {
+        boolean compress = payload.length >= compressionThreshold;
+        byte[] body = compress ? COMPRESSOR.compress(payload) : payload;
+
+        // Incompressible payloads are kept as they are.
+        if (compress && body.length + Integer.BYTES >= payload.length) {
+            compress = false;
+            body = payload;
+        }
+
+        byte flags = (byte) ((compress ? FLAG_COMPRESSED : 0) | (negative ? FLAG_NEGATIVE : 0) | (timed ? FLAG_TIMED : 0));
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH
+                + (timed ? TIMING_LENGTH : 0)
+                + (compress ? Integer.BYTES : 0)
+                + body.length);
+
+        buffer.put(MAGIC_0).put(MAGIC_1).put(FORMAT_VERSION).put(codecId).put(flags)
+                .putLong(entityVersion == null ? NO_VERSION : entityVersion);
+
+        if (timed)
+            buffer.putLong(writtenAt).putLong(expiresAt).putLong(computeMillis);
+
+        if (compress)
+            buffer.putInt(payload.length);
+
+        return buffer.put(body).array();
+    }
+
+    /**
+     * @return empty when the frame was written by an unknown format version
+     */
+    public static Optional<CacheEnvelope> fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.position(2);
+
+        if (buffer.get() != FORMAT_VERSION)
+            return Optional.empty();
+
+        byte codecId = buffer.get();
+        byte flags = buffer.get();
+        long version = buffer.getLong();
+
+        boolean timed = (flags & FLAG_TIMED) != 0;
+        long writtenAt = timed ? buffer.getLong() : 0L;
+        long expiresAt = timed ? buffer.getLong() : Long.MAX_VALUE;
+        long computeMillis = timed ? buffer.getLong() : 0L;
+
+        byte[] payload;
+        if ((flags & FLAG_COMPRESSED) != 0) {
+            int length = buffer.getInt();
+            payload = DECOMPRESSOR.decompress(bytes, buffer.position(), length);
+        } else {
+            payload = new byte[buffer.remaining()];
+            buffer.get(payload);
+        }
+
+        return Optional.of(new CacheEnvelope(
+                codecId,
+                (flags & FLAG_NEGATIVE) != 0,
+                version == NO_VERSION ? null : version,
+                timed,
+                writtenAt,
+                expiresAt,
+                computeMillis,
+                payload
+        ));
+    }
+}
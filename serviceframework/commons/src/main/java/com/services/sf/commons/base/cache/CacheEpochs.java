@@ -0,0 +1,163 @@
+package com.services.sf.commons.base.cache;
+
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.quarkus.logging.Log;
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.Vertx;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Namespace epochs: every cache key embeds the epoch of its tenant and of the tags of its bucket, so bumping one
+ * epoch drops all the keys under it in O(1). The orphaned keys are never read again and age out through their TTL.
+ * <p>
+ * Epochs live in a single redis hash ({@code framework.redis.epoch.key}) with the fields {@code tenant:<code>} and
+ * {@code tag:<tag>}, and are held locally so building a key costs no round trip. They are loaded on startup,
+ * reloaded every {@code framework.redis.epoch.refreshInMilli} and updated on every pod through pub/sub when bumped.
+ * Every bucket is tagged with its own prefix, plus the tags listed in {@code framework.redis.epoch.<bucketPrefix>.tags}.
+ * <p>
+ * Enabling {@code framework.redis.epoch.enabled} changes every key, so existing entries are cold afterwards.
+ */
+@ApplicationScoped
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@IfBuildProperty(name = "framework.redis.enabled", stringValue = "true")
+public class CacheEpochs {
+
+    static final String TENANT = "tenant:";
+    static final String TAG = "tag:";
+    static final String SEPARATOR = "=";
+
+    final Map<String, Long> epochs = new ConcurrentHashMap<>();
+
+    final Map<String, List<String>> bucketTags = new ConcurrentHashMap<>();
+
+    /**
+     * Bumped on every local change so that the key encoders know when to rebuild their prefixes.
+     */
+    final AtomicLong generation = new AtomicLong();
+
+    @Inject
+    protected ReactiveRedisDataSource reactiveRedisDataSource;
+
+    @Inject
+    protected Vertx vertx;
+
+    @ConfigProperty(name = "framework.redis.epoch.enabled", defaultValue = "false")
+    protected Boolean enabled;
+
+    @ConfigProperty(name = "framework.redis.epoch.key", defaultValue = "framework:epochs")
+    protected String key;
+
+    @ConfigProperty(name = "framework.redis.epoch.channel", defaultValue = "framework:epochs:bump")
+    protected String channel;
+
+    @ConfigProperty(name = "framework.redis.epoch.refreshInMilli", defaultValue = "30000")
+    protected Long refreshInMilli;
+
+    void onStart(@Observes StartupEvent event) {
+        if (!enabled)
+            return;
+
+        // Keys must not be built from missing epochs, so the first load is awaited.
+        reload().await().atMost(Duration.ofSeconds(10));
+
+        reactiveRedisDataSource.pubsub(String.class)
+                .subscribe(channel)
+                .onFailure().invoke(throwable -> Log.error("Cache epoch subscription failed", throwable))
+                .onFailure().retry().withBackOff(Duration.ofSeconds(1), Duration.ofSeconds(30)).indefinitely()
+                .subscribe().with(this::onMessage);
+
+        vertx.setPeriodic(refreshInMilli, ignored -> reload().subscribe().with(loaded -> {
+        }, Log::error));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * @param tenantCode tenant segment of the key, empty for buckets that are not tenant scoped
+     * @return the epochs to embed in the bucket segment of the keys, empty when epochs are disabled
+     */
+    public String namespace(String tenantCode, String bucketPrefix) {
+        if (!enabled)
+            return "";
+
+        StringBuilder namespace = new StringBuilder("~");
+        namespace.append(tenantCode.isEmpty() ? 0L : epochs.getOrDefault(TENANT + tenantCode, 0L));
+        tagsOf(bucketPrefix).forEach(tag -> namespace.append('.').append(epochs.getOrDefault(TAG + tag, 0L)));
+        return namespace.toString();
+    }
+
+    /**
+     * Drops every cached key of the tenant, in all buckets.
+     */
+    public Uni<Long> invalidateTenant(String tenantId) {
+        return bump(TENANT + CacheKeyEncoder.tenantCode(tenantId));
+    }
+
+    /**
+     * Drops every cached key of the buckets carrying the tag, a bucket prefix being a tag of its own bucket.
+     */
+    public Uni<Long> invalidateTag(String tag) {
+        return bump(TAG + tag);
+    }
+
+    private Uni<Long> bump(String field) {
+        return reactiveRedisDataSource.hash(Long.class).hincrby(key, field, 1)
+                .invoke(epoch -> update(field, epoch))
+                .call(epoch -> reactiveRedisDataSource.pubsub(String.class).publish(channel, field + SEPARATOR + epoch)
+                        .onFailure().invoke(Log::error)
+                        .onFailure().recoverWithNull());
+    }
+
+    private Uni<Void> reload() {
+        return reactiveRedisDataSource.hash(Long.class).hgetall(key)
+                .invoke(loaded -> loaded.forEach(this::update))
+                .replaceWithVoid();
+    }
+
+    protected void onMessage(String message) {
+        int separator = message.lastIndexOf(SEPARATOR);
+
+        if (separator > 0)
+            update(message.substring(0, separator), Long.parseLong(message.substring(separator + 1)));
+    }
+
+    private void update(String field, Long epoch) {
+        Long previous = epochs.get(field);
+
+        // Epochs only grow, a late message or reload must not move one back.
+        if (!epoch.equals(epochs.merge(field, epoch, Math::max)) || epoch.equals(previous))
+            return;
+
+        generation.incrementAndGet();
+    }
+
+    private List<String> tagsOf(String bucketPrefix) {
+        return bucketTags.computeIfAbsent(bucketPrefix, bucket -> {
+            List<String> configured = ConfigProvider.getConfig()
+                    .getOptionalValues("framework.redis.epoch." + bucket + ".tags", String.class)
+                    .orElse(List.of());
+            return Stream.concat(Stream.of(bucket), configured.stream()).toList();
+        });
+    }
+}
@@ -0,0 +1,130 @@
+package com.services.sf.commons.base.cache;
+
+import com.services.common.constant.GlobalConstant;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+import org.eclipse.microprofile.config.ConfigProvider;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds the redis keys of a single bucket: {@code <tenant>__<bucketPrefix>__<id>}.
+ * <p>
+ * The {@code <tenant>__<bucketPrefix>__} prefix is built once per tenant, both as a string and as bytes, so a key
+ * costs a single concatenation, and batch commands get each key as one exactly sized byte array instead of a
+ * string that the client encodes again. A tenant can be replaced by a short code in every key through
+ * {@code framework.redis.keys.tenantCode.<tenantId>}; codes must be unique and stable across deployments.
+ * <p>
+ * With {@link CacheEpochs} enabled the bucket segment also carries the current epochs of the tenant and of the
+ * bucket tags ({@code <tenant>__<bucketPrefix>~<epochs>__<id>}), and prefixes are rebuilt when an epoch moves.
+ * <p>
+ * With {@code framework.redis.keys.tenantHashTag} the tenant is wrapped in a hash tag ({@code {<tenant>}__...}), so
+ * all the keys of a tenant share a redis cluster slot and its multi-key commands stay on a single node. This changes
+ * every tenant scoped key, existing entries are cold afterwards.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CacheKeyEncoder {
+
+    public static final String TENANT_CODE_PREFIX = "framework.redis.keys.tenantCode.";
+
+    public static final String TENANT_HASH_TAG = "framework.redis.keys.tenantHashTag";
+
+    public static final String NO_TENANT = "";
+
+    static final Map<String, String> TENANT_CODES = new ConcurrentHashMap<>();
+
+    @Getter
+    final String bucketPrefix;
+
+    final Map<String, Prefix> prefixes = new ConcurrentHashMap<>();
+
+    final CacheEpochs epochs;
+
+    final boolean tenantHashTag;
+
+    public CacheKeyEncoder(String bucketPrefix) {
+        this(bucketPrefix, null);
+    }
+
+    /**
+     * @param epochs null when keys carry no epochs
+     */
+    public CacheKeyEncoder(String bucketPrefix, CacheEpochs epochs) {
+        this.bucketPrefix = bucketPrefix;
+        this.epochs = epochs;
+        this.tenantHashTag = ConfigProvider.getConfig().getOptionalValue(TENANT_HASH_TAG, Boolean.class).orElse(false);
+    }
+
+    /**
+     * @param tenantId null for buckets that are not tenant scoped
+     */
+    public String key(String tenantId, String id) {
+        return prefix(tenantId).value + id;
+    }
+
+    public byte[] keyBytes(String tenantId, String id) {
+        byte[] prefix = prefix(tenantId).bytes;
+
+        if (!isAscii(id)) {
+            byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+            byte[] key = new byte[prefix.length + idBytes.length];
+            System.arraycopy(prefix, 0, key, 0, prefix.length);
+            System.arraycopy(idBytes, 0, key, prefix.length, idBytes.length);
+            return key;
+        }
+
+        byte[] key = new byte[prefix.length + id.length()];
+        System.arraycopy(prefix, 0, key, 0, prefix.length);
+        for (int i = 0; i < id.length(); i++)
+            key[prefix.length + i] = (byte) id.charAt(i);
+        return key;
+    }
+
+    public String prefixOf(String tenantId) {
+        return prefix(tenantId).value;
+    }
+
+    private Prefix prefix(String tenantId) {
+        // Keys used to be built by plain concatenation, so a missing tenant has always been "null".
+        String tenant = tenantId == null ? "null" : tenantId;
+        long generation = epochs == null ? 0L : epochs.generation();
+        Prefix prefix = prefixes.get(tenant);
+
+        if (prefix == null || prefix.generation() != generation) {
+            prefix = buildPrefix(tenant, generation);
+            prefixes.put(tenant, prefix);
+        }
+
+        return prefix;
+    }
+
+    private Prefix buildPrefix(String tenantId, long generation) {
+        String code = tenantCode(tenantId);
+        String namespace = epochs == null ? "" : epochs.namespace(code, bucketPrefix);
+        String tenant = tenantHashTag && !code.isEmpty() ? "{" + code + "}" : code;
+        String value = tenant + GlobalConstant.DELIMITER + bucketPrefix + namespace + GlobalConstant.DELIMITER;
+        return new Prefix(value, value.getBytes(StandardCharsets.UTF_8), generation);
+    }
+
+    public static String tenantCode(String tenantId) {
+        if (NO_TENANT.equals(tenantId))
+            return NO_TENANT;
+
+        return TENANT_CODES.computeIfAbsent(tenantId, tenant -> ConfigProvider.getConfig()
+                .getOptionalValue(TENANT_CODE_PREFIX + tenant, String.class)
+                .orElse(tenant));
+    }
+
+    private static boolean isAscii(String value) {
+        for (int i = 0; i < value.length(); i++)
+            if (value.charAt(i) >= 0x80)
+                return false;
+        return true;
+    }
+
+    private record Prefix(String value, byte[] bytes, long generation) {
+    }
+}
@@ -0,0 +1,163 @@
+package com.services.sf.commons.base.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.quarkus.logging.Log;
+import io.smallrye.mutiny.Uni;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer instrumentation of the cache repositories, tagged by bucket and operation.
+ * <ul>
+ *     <li>{@code cache.operation} timer per operation, failures included</li>
+ *     <li>{@code cache.requests} counter per operation with result hit, miss or error</li>
+ *     <li>{@code cache.payload.size} distribution of serialized value sizes, per direction (read/write)</li>
+ *     <li>{@code cache.payload.big} counter of sampled values over {@code framework.redis.metrics.bigValueThresholdInBytes}</li>
+ * </ul>
+ * Sampled big values are also logged and kept, largest first, in {@link #getBigValues()}.
+ */
+@ApplicationScoped
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@IfBuildProperty(name = "framework.redis.enabled", stringValue = "true")
+public class CacheMetrics {
+
+    final Map<String, OperationMeters> operations = new ConcurrentHashMap<>();
+
+    final Map<String, PayloadMeters> payloads = new ConcurrentHashMap<>();
+
+    final Cache<String, Integer> bigValues = Caffeine.newBuilder().maximumSize(100).build();
+
+    @Inject
+    protected MeterRegistry meterRegistry;
+
+    @ConfigProperty(name = "framework.redis.metrics.enabled", defaultValue = "true")
+    protected Boolean enabled;
+
+    @ConfigProperty(name = "framework.redis.metrics.bigValueThresholdInBytes", defaultValue = "102400")
+    protected Integer bigValueThresholdInBytes;
+
+    @ConfigProperty(name = "framework.redis.metrics.bigValueSampleRate", defaultValue = "0.01")
+    protected Double bigValueSampleRate;
+
+    /**
+     * Times the operation from subscription to termination and counts it as an error when it fails.
+     */
+    public <T> Uni<T> time(String bucket, String operation, Uni<T> uni) {
+        if (!enabled)
+            return uni;
+
+        OperationMeters meters = meters(bucket, operation);
+
+        return Uni.createFrom().deferred(() -> {
+            long start = System.nanoTime();
+            return uni.onTermination().invoke((item, failure, cancelled) -> {
+                meters.timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                if (failure != null)
+                    meters.errors.increment();
+            });
+        });
+    }
+
+    /**
+     * Like {@link #time} and also counts a null item as a miss and anything else as a hit.
+     */
+    public <T> Uni<T> timeRead(String bucket, String operation, Uni<T> uni) {
+        if (!enabled)
+            return uni;
+
+        return time(bucket, operation, uni)
+                .invoke(item -> lookups(bucket, operation, item == null ? 0 : 1, item == null ? 1 : 0));
+    }
+
+    public void lookups(String bucket, String operation, int hits, int misses) {
+        if (!enabled)
+            return;
+
+        OperationMeters meters = meters(bucket, operation);
+        meters.hits.increment(hits);
+        meters.misses.increment(misses);
+    }
+
+    public void payload(String bucket, String direction, String key, int bytes) {
+        if (!enabled)
+            return;
+
+        PayloadMeters meters = payloads.computeIfAbsent(bucket + ":" + direction,
+                ignored -> new PayloadMeters(meterRegistry, bucket, direction));
+        meters.size.record(bytes);
+
+        if (bytes < bigValueThresholdInBytes || ThreadLocalRandom.current().nextDouble() >= bigValueSampleRate)
+            return;
+
+        meters.big.increment();
+        bigValues.put(key, bytes);
+        Log.warnf("Big cache value: bucket %s, key %s, %d bytes (%s)", bucket, key, bytes, direction);
+    }
+
+    /**
+     * @return sampled keys whose value exceeded the threshold, largest first
+     */
+    public Map<String, Integer> getBigValues() {
+        Map<String, Integer> report = new LinkedHashMap<>();
+        bigValues.asMap().entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .forEach(entry -> report.put(entry.getKey(), entry.getValue()));
+        return report;
+    }
+
+    private OperationMeters meters(String bucket, String operation) {
+        return operations.computeIfAbsent(bucket + ":" + operation, ignored -> new OperationMeters(meterRegistry, bucket, operation));
+    }
+
+    static class OperationMeters {
+        final Timer timer;
+        final Counter hits;
+        final Counter misses;
+        final Counter errors;
+
+        OperationMeters(MeterRegistry meterRegistry, String bucket, String operation) {
+            this.timer = Timer.builder("cache.operation")
+                    .tag("bucket", bucket)
+                    .tag("op", operation)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            this.hits = requests(meterRegistry, bucket, operation, "hit");
+            this.misses = requests(meterRegistry, bucket, operation, "miss");
+            this.errors = requests(meterRegistry, bucket, operation, "error");
+        }
+
+        private static Counter requests(MeterRegistry meterRegistry, String bucket, String operation, String result) {
+            return meterRegistry.counter("cache.requests", "bucket", bucket, "op", operation, "result", result);
+        }
+    }
+
+    static class PayloadMeters {
+        final DistributionSummary size;
+        final Counter big;
+
+        PayloadMeters(MeterRegistry meterRegistry, String bucket, String direction) {
+            this.size = DistributionSummary.builder("cache.payload.size")
+                    .baseUnit("bytes")
+                    .tag("bucket", bucket)
+                    .tag("direction", direction)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            this.big = meterRegistry.counter("cache.payload.big", "bucket", bucket, "direction", direction);
+        }
+    }
+}
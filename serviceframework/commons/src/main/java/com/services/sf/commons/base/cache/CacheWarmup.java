@@ -0,0 +1,111 @@
+package com.services.sf.commons.base.cache;
+
+import io.quarkus.arc.properties.IfBuildProperty;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.HealthCheckResponseBuilder;
+import org.eclipse.microprofile.health.Readiness;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the cache warm-ups of this pod and keeps it unready until each of them has loaded
+ * {@code framework.redis.warmup.readyFraction} of its expected entities, has finished, or has been running for
+ * {@code framework.redis.warmup.maxWaitInMilli}. A failed warm-up does not hold readiness back.
+ * <p>
+ * Warm-up settings are read per bucket, {@code framework.redis.warmup.<bucketPrefix>.<setting>}, falling back to
+ * {@code framework.redis.warmup.<setting>}.
+ */
+@Readiness
+@ApplicationScoped
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@IfBuildProperty(name = "framework.redis.enabled", stringValue = "true")
+public class CacheWarmup implements HealthCheck {
+
+    static final String CONFIG_PREFIX = "framework.redis.warmup.";
+
+    final Map<String, Progress> warmups = new ConcurrentHashMap<>();
+
+    @ConfigProperty(name = "framework.redis.warmup.readyFraction", defaultValue = "1.0")
+    protected Double readyFraction;
+
+    @ConfigProperty(name = "framework.redis.warmup.maxWaitInMilli", defaultValue = "300000")
+    protected Long maxWaitInMilli;
+
+    public static <T> T setting(String bucketPrefix, String name, Class<T> type, T defaultValue) {
+        return ConfigProvider.getConfig().getOptionalValue(CONFIG_PREFIX + bucketPrefix + "." + name, type)
+                .or(() -> ConfigProvider.getConfig().getOptionalValue(CONFIG_PREFIX + name, type))
+                .orElse(defaultValue);
+    }
+
+    /**
+     * @param name     identifies the warm-up in the health report, a later warm-up with the same name replaces it
+     * @param expected number of entities the warm-up expects to load at most
+     */
+    public Progress start(String name, long expected) {
+        Progress progress = new Progress(expected);
+        warmups.put(name, progress);
+        return progress;
+    }
+
+    @Override
+    public HealthCheckResponse call() {
+        HealthCheckResponseBuilder builder = HealthCheckResponse.named("cache-warmup");
+        boolean ready = true;
+
+        for (Map.Entry<String, Progress> warmup : warmups.entrySet()) {
+            builder.withData(warmup.getKey(), warmup.getValue().toString());
+            ready &= warmup.getValue().isReady(readyFraction, maxWaitInMilli);
+        }
+
+        return builder.status(ready).build();
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Progress {
+
+        final long expected;
+        final long startedAt = System.currentTimeMillis();
+        final AtomicLong loaded = new AtomicLong();
+        volatile String state = "running";
+
+        public Progress(long expected) {
+            this.expected = expected;
+        }
+
+        public void loaded(long count) {
+            loaded.addAndGet(count);
+        }
+
+        public long getLoaded() {
+            return loaded.get();
+        }
+
+        public void completed() {
+            state = "completed";
+        }
+
+        public void failed() {
+            state = "failed";
+        }
+
+        boolean isReady(double readyFraction, long maxWaitInMilli) {
+            return !"running".equals(state)
+                    || expected <= 0
+                    || (double) loaded.get() / expected >= readyFraction
+                    || System.currentTimeMillis() - startedAt >= maxWaitInMilli;
+        }
+
+        @Override
+        public String toString() {
+            return state + " " + loaded.get() + "/" + expected;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.services.sf.commons.base.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Redis Cluster hash slots: {@code CRC16(key) mod 16384}, where only the content of the first non-empty
+ * {@code {hash tag}} is hashed when the key has one.
+ * <p>
+ * Multi-key commands must only address keys of a single slot in a cluster, so batches are split with
+ * {@link #groupBySlot(List)} and each group is sent on its own.
+ */
+public final class ClusterSlots {
+
+    public static final int SLOTS = 16384;
+
+    static final int[] CRC16_TABLE = new int[256];
+
+    static {
+        // CRC16-CCITT (XMODEM), polynomial 0x1021, as specified by redis cluster.
+        for (int i = 0; i < 256; i++) {
+            int crc = i << 8;
+            for (int bit = 0; bit < 8; bit++)
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+            CRC16_TABLE[i] = crc & 0xFFFF;
+        }
+    }
+
+    private ClusterSlots() {
+    }
+
+    public static int slot(String key) {
+        return slot(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static int slot(byte[] key) {
+        int from = 0;
+        int to = key.length;
+
+        for (int open = 0; open < key.length; open++) {
+            if (key[open] != '{')
+                continue;
+
+            for (int close = open + 1; close < key.length; close++) {
+                if (key[close] == '}') {
+                    if (close > open + 1) {
+                        from = open + 1;
+                        to = close;
+                    }
+                    break;
+                }
+            }
+            break;
+        }
+
+        return crc16(key, from, to) & (SLOTS - 1);
+    }
+
+    /**
+     * @return the positions of the keys in the input, grouped by slot in order of first appearance
+     */
+    public static Collection<List<Integer>> groupBySlot(List<byte[]> keys) {
+        Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+
+        for (int i = 0; i < keys.size(); i++)
+            groups.computeIfAbsent(slot(keys.get(i)), slot -> new ArrayList<>()).add(i);
+
+        return groups.values();
+    }
+
+    static int crc16(byte[] bytes, int from, int to) {
+        int crc = 0;
+
+        for (int i = from; i < to; i++)
+            crc = ((crc << 8) ^ CRC16_TABLE[((crc >>> 8) ^ bytes[i]) & 0xFF]) & 0xFFFF;
+
+        return crc;
+    }
+}
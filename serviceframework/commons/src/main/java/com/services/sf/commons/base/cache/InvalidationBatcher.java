@@ -0,0 +1,181 @@
+package com.services.sf.commons.base.cache;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.quarkus.logging.Log;
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.redis.client.Command;
+import io.vertx.mutiny.redis.client.Request;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Merges the invalidations of concurrent requests into as few {@code UNLINK}s as possible.
+ * <p>
+ * Keys are queued and flushed every {@code framework.redis.invalidation.flushIntervalInMilli}, or as soon as
+ * {@code framework.redis.invalidation.maxBatchSize} keys are pending, with one {@code UNLINK} per
+ * {@code maxBatchSize} keys in a single pipeline; in a cluster the keys are split by hash slot and the
+ * {@code UNLINK}s sent in parallel. Callers either wait for the flush of their keys or return
+ * immediately. Each flush records its size in {@code cache.invalidation.flush.size} and, for every queued
+ * invalidation, the time from enqueue to flush in {@code cache.invalidation.lag}.
+ */
+@ApplicationScoped
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@IfBuildProperty(name = "framework.redis.enabled", stringValue = "true")
+public class InvalidationBatcher {
+
+    final Queue<Pending> pending = new ConcurrentLinkedQueue<>();
+
+    final AtomicInteger pendingKeys = new AtomicInteger();
+
+    final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    @Inject
+    protected ReactiveRedisDataSource reactiveRedisDataSource;
+
+    @Inject
+    protected NearCacheInvalidator nearCacheInvalidator;
+
+    @Inject
+    protected Vertx vertx;
+
+    @Inject
+    protected MeterRegistry meterRegistry;
+
+    @ConfigProperty(name = "framework.redis.invalidation.flushIntervalInMilli", defaultValue = "5")
+    protected Long flushIntervalInMilli;
+
+    @ConfigProperty(name = "framework.redis.invalidation.maxBatchSize", defaultValue = "500")
+    protected Integer maxBatchSize;
+
+    @ConfigProperty(name = "quarkus.redis.client-type", defaultValue = "standalone")
+    protected String clientType;
+
+    DistributionSummary flushSize;
+
+    Timer lag;
+
+    @PostConstruct
+    void init() {
+        flushSize = DistributionSummary.builder("cache.invalidation.flush.size")
+                .baseUnit("keys")
+                .register(meterRegistry);
+        lag = Timer.builder("cache.invalidation.lag")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param keys         fully qualified redis keys
+     * @param waitForFlush whether the returned Uni completes once the keys are unlinked, or right away
+     */
+    public Uni<Void> invalidate(String bucketPrefix, Collection<String> keys, boolean waitForFlush) {
+        if (keys.isEmpty())
+            return Uni.createFrom().voidItem();
+
+        Pending invalidation = new Pending(bucketPrefix, keys, System.nanoTime(), new CompletableFuture<>());
+        pending.add(invalidation);
+
+        if (pendingKeys.addAndGet(keys.size()) >= maxBatchSize)
+            vertx.runOnContext(this::flush);
+        else if (flushScheduled.compareAndSet(false, true))
+            vertx.setTimer(flushIntervalInMilli, ignored -> flush());
+
+        return waitForFlush ?
+                Uni.createFrom().completionStage(invalidation.flushed()) :
+                Uni.createFrom().voidItem();
+    }
+
+    protected void flush() {
+        flushScheduled.set(false);
+
+        List<Pending> batch = new ArrayList<>();
+        for (Pending invalidation = pending.poll(); invalidation != null; invalidation = pending.poll()) {
+            batch.add(invalidation);
+            pendingKeys.addAndGet(-invalidation.keys().size());
+        }
+
+        if (batch.isEmpty())
+            return;
+
+        Set<String> keys = batch.stream()
+                .flatMap(invalidation -> invalidation.keys().stream())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        flushSize.record(keys.size());
+
+        Map<String, Set<String>> keysByBucket = batch.stream().collect(Collectors.groupingBy(
+                Pending::bucketPrefix,
+                Collectors.flatMapping(invalidation -> invalidation.keys().stream(), Collectors.toSet())));
+
+        unlink(keys)
+                .onFailure().retry().atMost(3)
+                .call(() -> Multi.createFrom().iterable(keysByBucket.entrySet())
+                        .onItem().transformToUniAndMerge(bucket -> nearCacheInvalidator.publish(bucket.getKey(), bucket.getValue()))
+                        .collect().last())
+                .subscribe().with(
+                        ignored -> batch.forEach(invalidation -> {
+                            lag.record(System.nanoTime() - invalidation.enqueuedAt(), TimeUnit.NANOSECONDS);
+                            invalidation.flushed().complete(null);
+                        }),
+                        throwable -> {
+                            Log.error("Cache invalidation flush of " + keys.size() + " keys failed", throwable);
+                            batch.forEach(invalidation -> invalidation.flushed().completeExceptionally(throwable));
+                        });
+    }
+
+    private Uni<Void> unlink(Collection<String> keys) {
+        if (!"cluster".equalsIgnoreCase(clientType))
+            return reactiveRedisDataSource.getRedis().batch(unlinkRequests(keys)).replaceWithVoid();
+
+        Map<Integer, List<String>> keysBySlot = keys.stream()
+                .collect(Collectors.groupingBy(ClusterSlots::slot, Collectors.toList()));
+
+        return Multi.createFrom().iterable(keysBySlot.values())
+                .onItem().transformToIterable(this::unlinkRequests)
+                .onItem().transformToUniAndMerge(request -> reactiveRedisDataSource.getRedis().send(request))
+                .collect().last()
+                .replaceWithVoid();
+    }
+
+    private List<Request> unlinkRequests(Collection<String> keys) {
+        List<Request> requests = new ArrayList<>();
+        Request request = null;
+        int count = 0;
+
+        for (String key : keys) {
+            if (count++ % maxBatchSize == 0) {
+                request = Request.cmd(Command.UNLINK);
+                requests.add(request);
+            }
+            request.arg(key);
+        }
+
+        return requests;
+    }
+
+    record Pending(String bucketPrefix, Collection<String> keys, long enqueuedAt, CompletableFuture<Void> flushed) {
+    }
+}
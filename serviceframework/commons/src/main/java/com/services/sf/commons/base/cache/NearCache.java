@@ -0,0 +1,110 @@
+package com.services.sf.commons.base.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.ConfigProvider;
+
+import javax.validation.constraints.NotBlank;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded in-process (L1) tier that sits in front of redis for a single bucket.
+ * <p>
+ * Entries are keyed by the fully qualified redis key, so tenant isolation is inherited from the redis keying.
+ * Eviction is size and TTL based; caffeine's W-TinyLFU policy only admits a new entry over an existing one
+ * when it has been seen more often, which keeps one-off reads from flushing the hot set.
+ * <p>
+ * Every invalidation moves the generation of the near cache forward. A value read from redis is only kept when no
+ * invalidation ran since the read started, see {@link #put(String, Object, long)}, otherwise an invalidation arriving
+ * while the read is in flight would be overwritten by the value it invalidated.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class NearCache<C> {
+
+    public static final String CONFIG_PREFIX = "framework.redis.nearCache.";
+
+    @Getter
+    final String bucketPrefix;
+
+    @Getter
+    final Cache<String, C> cache;
+
+    final AtomicLong generation = new AtomicLong();
+
+    public NearCache(@NotBlank String bucketPrefix, Long maximumSize, Long expiryInMilli) {
+        this.bucketPrefix = bucketPrefix;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofMillis(expiryInMilli))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Builds the near cache for the bucket from {@code framework.redis.nearCache.<bucketPrefix>.*}.
+     *
+     * @return empty when the near cache is not enabled for the bucket
+     */
+    public static <C> Optional<NearCache<C>> forBucket(@NotBlank String bucketPrefix) {
+        Config config = ConfigProvider.getConfig();
+        String prefix = CONFIG_PREFIX + bucketPrefix + ".";
+
+        if (!config.getOptionalValue(prefix + "enabled", Boolean.class).orElse(false))
+            return Optional.empty();
+
+        return Optional.of(new NearCache<>(
+                bucketPrefix,
+                config.getOptionalValue(prefix + "maximumSize", Long.class).orElse(10_000L),
+                config.getOptionalValue(prefix + "expiryInMilli", Long.class).orElse(30_000L)
+        ));
+    }
+
+    public C get(String key) {
+        return cache.getIfPresent(key);
+    }
+
+    public void put(String key, C value) {
+        if (value != null)
+            cache.put(key, value);
+    }
+
+    /**
+     * @param generation the {@link #generation()} taken before the value was read from redis
+     */
+    public void put(String key, C value, long generation) {
+        if (value == null || this.generation.get() != generation)
+            return;
+
+        cache.put(key, value);
+
+        // An invalidation may have run between the check and the put.
+        if (this.generation.get() != generation)
+            cache.invalidate(key);
+    }
+
+    public long generation() {
+        return generation.get();
+    }
+
+    public void invalidate(String key) {
+        generation.incrementAndGet();
+        cache.invalidate(key);
+    }
+
+    public void invalidate(Collection<String> keys) {
+        generation.incrementAndGet();
+        cache.invalidateAll(keys);
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+}
@@ -0,0 +1,115 @@
+package com.services.sf.commons.base.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.quarkus.logging.Log;
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.smallrye.mutiny.Uni;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the near caches and the off-heap stores of every pod coherent.
+ * <p>
+ * Deletes publish the affected redis keys on a pub/sub channel; every pod (including the publisher) evicts
+ * them from the near cache registered for that bucket. The off-heap stores of the other pods evict them too, the
+ * publisher has already written its own store. Messages are {@code origin\nbucketPrefix\nkey1\nkey2...}.
+ */
+@ApplicationScoped
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@IfBuildProperty(name = "framework.redis.enabled", stringValue = "true")
+public class NearCacheInvalidator {
+
+    static final String SEPARATOR = "\n";
+
+    final Map<String, List<NearCache<?>>> nearCaches = new ConcurrentHashMap<>();
+
+    final Map<String, List<OffHeapStore>> offHeapStores = new ConcurrentHashMap<>();
+
+    @Getter
+    final String origin = UUID.randomUUID().toString();
+
+    final AtomicBoolean subscribed = new AtomicBoolean(false);
+
+    @Inject
+    protected ReactiveRedisDataSource reactiveRedisDataSource;
+
+    @Inject
+    protected MeterRegistry meterRegistry;
+
+    @ConfigProperty(name = "framework.redis.nearCache.channel", defaultValue = "framework:nearCache:invalidate")
+    protected String channel;
+
+    public void register(NearCache<?> nearCache) {
+        nearCaches.computeIfAbsent(nearCache.getBucketPrefix(), bucketPrefix -> new CopyOnWriteArrayList<>()).add(nearCache);
+        CaffeineCacheMetrics.monitor(meterRegistry, nearCache.getCache(), "nearCache", Tags.of("bucket", nearCache.getBucketPrefix()));
+
+        if (subscribed.compareAndSet(false, true))
+            subscribe();
+    }
+
+    public void register(String bucketPrefix, OffHeapStore store) {
+        offHeapStores.computeIfAbsent(bucketPrefix, prefix -> new CopyOnWriteArrayList<>()).add(store);
+
+        if (subscribed.compareAndSet(false, true))
+            subscribe();
+    }
+
+    public Uni<Void> publish(String bucketPrefix, Collection<String> keys) {
+        if (keys.isEmpty() || !(nearCaches.containsKey(bucketPrefix) || offHeapStores.containsKey(bucketPrefix)))
+            return Uni.createFrom().voidItem();
+
+        return reactiveRedisDataSource.pubsub(String.class)
+                .publish(channel, origin + SEPARATOR + bucketPrefix + SEPARATOR + String.join(SEPARATOR, keys))
+                .onFailure().invoke(Log::error)
+                .onFailure().recoverWithNull()
+                .replaceWithVoid();
+    }
+
+    public void evictLocal(String bucketPrefix, Collection<String> keys) {
+        nearCaches.getOrDefault(bucketPrefix, List.of()).forEach(nearCache -> nearCache.invalidate(keys));
+    }
+
+    public void evictOffHeap(String bucketPrefix, Collection<String> keys) {
+        offHeapStores.getOrDefault(bucketPrefix, List.of()).forEach(store ->
+                keys.forEach(key -> store.remove(key.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    protected void subscribe() {
+        reactiveRedisDataSource.pubsub(String.class)
+                .subscribe(channel)
+                .onFailure().invoke(throwable -> Log.error("Near cache invalidation subscription failed", throwable))
+                .onFailure().retry().withBackOff(Duration.ofSeconds(1), Duration.ofSeconds(30)).indefinitely()
+                .subscribe().with(this::onMessage);
+    }
+
+    protected void onMessage(String message) {
+        List<String> parts = Arrays.asList(message.split(SEPARATOR));
+
+        if (parts.size() < 3)
+            return;
+
+        List<String> keys = parts.subList(2, parts.size());
+        evictLocal(parts.get(1), keys);
+
+        if (!origin.equals(parts.get(0)))
+            evictOffHeap(parts.get(1), keys);
+    }
+}
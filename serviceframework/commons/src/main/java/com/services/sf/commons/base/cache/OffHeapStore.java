@@ -0,0 +1,377 @@
+package com.services.sf.commons.base.cache;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.ConfigProvider;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Byte store that keeps its values outside of the java heap, for large read-mostly buckets that should neither pay
+ * a network hop to redis nor weigh on the garbage collector.
+ * <p>
+ * Keys are spread over segments, each guarded by its own lock. A segment appends its records
+ * ({@code key length (4) | value length (4) | expires at (8) | key | value}) to a direct buffer used as a ring: once
+ * full, new records overwrite the oldest ones, so eviction is FIFO and costs nothing. The index is an open addressing
+ * table of primitive arrays (record position and key hash), which holds no object per entry; an index slot whose
+ * record has been overwritten is dead and is reused or dropped on the next resize.
+ * <p>
+ * Direct memory is bounded by {@code -XX:MaxDirectMemorySize}, which must leave room for every configured store.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class OffHeapStore {
+
+    public static final String CONFIG_PREFIX = "framework.redis.offHeap.";
+
+    static final int RECORD_HEADER_LENGTH = 16;
+    static final int INITIAL_SLOTS = 1024;
+
+    @Getter
+    long capacityInBytes;
+
+    Segment[] segments;
+
+    LongAdder hits = new LongAdder();
+    LongAdder misses = new LongAdder();
+
+    /**
+     * @param capacityInBytes direct memory shared by the segments, each of them holding at most 2GB
+     */
+    public OffHeapStore(long capacityInBytes, int segmentCount) {
+        long segmentCapacity = capacityInBytes / segmentCount;
+
+        if (segmentCount <= 0 || segmentCapacity < RECORD_HEADER_LENGTH || segmentCapacity > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Invalid off-heap store capacity " + capacityInBytes + " over " + segmentCount + " segments");
+
+        this.capacityInBytes = segmentCapacity * segmentCount;
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++)
+            segments[i] = new Segment((int) segmentCapacity);
+    }
+
+    /**
+     * Builds the store for the bucket from {@code framework.redis.offHeap.<bucketPrefix>.*}.
+     *
+     * @return empty when the off-heap store is not enabled for the bucket
+     */
+    public static Optional<OffHeapStore> forBucket(String bucketPrefix) {
+        Config config = ConfigProvider.getConfig();
+        String prefix = CONFIG_PREFIX + bucketPrefix + ".";
+
+        if (!config.getOptionalValue(prefix + "enabled", Boolean.class).orElse(false))
+            return Optional.empty();
+
+        return Optional.of(new OffHeapStore(
+                config.getOptionalValue(prefix + "capacityInBytes", Long.class).orElse(256L * 1024 * 1024),
+                config.getOptionalValue(prefix + "segments", Integer.class).orElse(16)));
+    }
+
+    /**
+     * @return the value, null when missing, expired or evicted
+     */
+    public byte[] get(byte[] key) {
+        long hash = hash(key);
+        byte[] value = segmentOf(hash).get(key, (int) hash, System.currentTimeMillis());
+        (value == null ? misses : hits).increment();
+        return value;
+    }
+
+    public boolean contains(byte[] key) {
+        long hash = hash(key);
+        return segmentOf(hash).get(key, (int) hash, System.currentTimeMillis()) != null;
+    }
+
+    /**
+     * @param expiryInMilliseconds time to live, 0 or less for none
+     * @return false when the record does not fit in a segment
+     */
+    public boolean put(byte[] key, byte[] value, long expiryInMilliseconds) {
+        return putIf(key, value, expiryInMilliseconds, current -> true);
+    }
+
+    public boolean putIfAbsent(byte[] key, byte[] value, long expiryInMilliseconds) {
+        return putIf(key, value, expiryInMilliseconds, current -> current == null);
+    }
+
+    /**
+     * Stores the value only when the condition accepts the current value (null when there is none), atomically.
+     */
+    public boolean putIf(byte[] key, byte[] value, long expiryInMilliseconds, Predicate<byte[]> condition) {
+        long hash = hash(key);
+        long now = System.currentTimeMillis();
+        long expiresAt = expiryInMilliseconds > 0 ? now + expiryInMilliseconds : 0L;
+        return segmentOf(hash).putIf(key, (int) hash, value, expiresAt, now, condition);
+    }
+
+    public boolean remove(byte[] key) {
+        long hash = hash(key);
+        return segmentOf(hash).remove(key, (int) hash);
+    }
+
+    public void clear() {
+        for (Segment segment : segments)
+            segment.clear();
+    }
+
+    /**
+     * @return entries in the index, including the expired and evicted ones not cleaned up yet
+     */
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments)
+            size += segment.size();
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private Segment segmentOf(long hash) {
+        return segments[(int) Math.floorMod(hash >>> 40, (long) segments.length)];
+    }
+
+    static long hash(byte[] key) {
+        // FNV-1a, then the splitmix64 finalizer to spread the bits used for the segment and the slot.
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key)
+            hash = (hash ^ (b & 0xFF)) * 0x100000001b3L;
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    static final class Segment {
+
+        final ByteBuffer arena;
+        final int capacity;
+
+        /**
+         * Absolute write position: the record at absolute position p lives at p % capacity and has been overwritten
+         * once the write position went past p + capacity.
+         */
+        long writePosition;
+
+        /**
+         * Absolute record position + 1, 0 for an empty slot.
+         */
+        long[] positions = new long[INITIAL_SLOTS];
+        int[] hashes = new int[INITIAL_SLOTS];
+        int used;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+            this.arena = ByteBuffer.allocateDirect(capacity);
+        }
+
+        synchronized byte[] get(byte[] key, int hash, long now) {
+            int slot = find(key, hash);
+
+            if (slot < 0)
+                return null;
+
+            int offset = offsetOf(positions[slot]);
+
+            if (isExpired(offset, now)) {
+                delete(slot);
+                return null;
+            }
+
+            byte[] value = new byte[arena.getInt(offset + 4)];
+            arena.get(offset + RECORD_HEADER_LENGTH + arena.getInt(offset), value);
+            return value;
+        }
+
+        synchronized boolean putIf(byte[] key, int hash, byte[] value, long expiresAt, long now, Predicate<byte[]> condition) {
+            int length = RECORD_HEADER_LENGTH + key.length + value.length;
+
+            if (length > capacity)
+                return false;
+
+            int slot = find(key, hash);
+            byte[] current = null;
+
+            if (slot >= 0) {
+                int offset = offsetOf(positions[slot]);
+                if (!isExpired(offset, now)) {
+                    current = new byte[arena.getInt(offset + 4)];
+                    arena.get(offset + RECORD_HEADER_LENGTH + arena.getInt(offset), current);
+                }
+            }
+
+            if (!condition.test(current))
+                return false;
+
+            long position = append(key, value, expiresAt, length);
+
+            // The append may have overwritten the previous record of the key, so the slot is looked up again.
+            slot = find(key, hash);
+            if (slot >= 0) {
+                positions[slot] = position + 1;
+                return true;
+            }
+
+            insert(hash, position);
+            return true;
+        }
+
+        synchronized boolean remove(byte[] key, int hash) {
+            int slot = find(key, hash);
+
+            if (slot < 0)
+                return false;
+
+            delete(slot);
+            return true;
+        }
+
+        synchronized void clear() {
+            positions = new long[INITIAL_SLOTS];
+            hashes = new int[INITIAL_SLOTS];
+            used = 0;
+        }
+
+        synchronized int size() {
+            return used;
+        }
+
+        private long append(byte[] key, byte[] value, long expiresAt, int length) {
+            int offset = (int) (writePosition % capacity);
+
+            // Records never wrap around the end of the arena, the tail is skipped instead.
+            if (offset + length > capacity) {
+                writePosition += capacity - offset;
+                offset = 0;
+            }
+
+            arena.putInt(offset, key.length);
+            arena.putInt(offset + 4, value.length);
+            arena.putLong(offset + 8, expiresAt);
+            arena.put(offset + RECORD_HEADER_LENGTH, key);
+            arena.put(offset + RECORD_HEADER_LENGTH + key.length, value);
+
+            long position = writePosition;
+            writePosition += length;
+            return position;
+        }
+
+        /**
+         * @return the slot of the live record of the key, -1 if there is none
+         */
+        private int find(byte[] key, int hash) {
+            int mask = positions.length - 1;
+
+            for (int slot = hash & mask; positions[slot] != 0; slot = (slot + 1) & mask) {
+                if (hashes[slot] == hash && isLive(positions[slot]) && keyEquals(offsetOf(positions[slot]), key))
+                    return slot;
+            }
+
+            return -1;
+        }
+
+        private void insert(int hash, long position) {
+            int mask = positions.length - 1;
+            int slot = hash & mask;
+
+            while (positions[slot] != 0 && isLive(positions[slot]))
+                slot = (slot + 1) & mask;
+
+            if (positions[slot] == 0)
+                used++;
+
+            positions[slot] = position + 1;
+            hashes[slot] = hash;
+
+            if (used > positions.length * 3 / 4)
+                rebuild();
+        }
+
+        /**
+         * Drops the dead slots, and doubles the table when it is still more than half full.
+         */
+        private void rebuild() {
+            long[] oldPositions = positions;
+            int[] oldHashes = hashes;
+
+            int live = 0;
+            for (long position : oldPositions)
+                if (position != 0 && isLive(position))
+                    live++;
+
+            int slots = live > oldPositions.length / 2 ? oldPositions.length * 2 : oldPositions.length;
+            positions = new long[slots];
+            hashes = new int[slots];
+            used = 0;
+
+            int mask = slots - 1;
+            for (int i = 0; i < oldPositions.length; i++) {
+                if (oldPositions[i] == 0 || !isLive(oldPositions[i]))
+                    continue;
+
+                int slot = oldHashes[i] & mask;
+                while (positions[slot] != 0)
+                    slot = (slot + 1) & mask;
+
+                positions[slot] = oldPositions[i];
+                hashes[slot] = oldHashes[i];
+                used++;
+            }
+        }
+
+        /**
+         * Backward shift deletion, which keeps every probe sequence unbroken without tombstones.
+         */
+        private void delete(int slot) {
+            int mask = positions.length - 1;
+            int hole = slot;
+
+            for (int next = (hole + 1) & mask; positions[next] != 0; next = (next + 1) & mask) {
+                int home = hashes[next] & mask;
+
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    positions[hole] = positions[next];
+                    hashes[hole] = hashes[next];
+                    hole = next;
+                }
+            }
+
+            positions[hole] = 0;
+            used--;
+        }
+
+        private boolean isLive(long slotPosition) {
+            return writePosition - (slotPosition - 1) <= capacity;
+        }
+
+        private boolean isExpired(int offset, long now) {
+            long expiresAt = arena.getLong(offset + 8);
+            return expiresAt != 0 && expiresAt <= now;
+        }
+
+        private int offsetOf(long slotPosition) {
+            return (int) ((slotPosition - 1) % capacity);
+        }
+
+        private boolean keyEquals(int offset, byte[] key) {
+            if (arena.getInt(offset) != key.length)
+                return false;
+
+            int start = offset + RECORD_HEADER_LENGTH;
+            for (int i = 0; i < key.length; i++)
+                if (arena.get(start + i) != key[i])
+                    return false;
+
+            return true;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.services.sf.commons.base.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.smallrye.mutiny.Uni;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the ids returned by finder queries; the entities themselves are read through the entity cache.
+ * <p>
+ * Pages are keyed by a fingerprint of the query (bucket, method, tenant, params and sort order) and tagged with the
+ * write epoch of their bucket at the time the query started. Every create and upsert, and every patch, put and
+ * delete made through the cache, bumps the epoch, so a page is only served while no write happened to the collection
+ * since it was loaded. Epochs are kept in the redis hash {@code framework.redis.queryCache.epochKey} so that the
+ * writes of every pod are seen.
+ * <p>
+ * Pages are held on the pod, bounded to {@code framework.redis.queryCache.maxIds} ids overall and expiring after
+ * {@code framework.redis.queryCache.expiryInMilli}; queries returning more than
+ * {@code framework.redis.queryCache.maxIdsPerQuery} ids are not cached. The cache is enabled per bucket with
+ * {@code framework.redis.queryCache.<bucketPrefix>.enabled}, falling back to {@code framework.redis.queryCache.enabled}.
+ */
+@ApplicationScoped
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@IfBuildProperty(name = "framework.redis.enabled", stringValue = "true")
+public class QueryCache {
+
+    static final String CONFIG_PREFIX = "framework.redis.queryCache.";
+    static final String SEPARATOR = "\u001F";
+    static final String NULL = "\u0000";
+
+    final Map<String, Boolean> enabledBuckets = new ConcurrentHashMap<>();
+
+    Cache<String, Page> pages;
+
+    @Inject
+    protected ReactiveRedisDataSource reactiveRedisDataSource;
+
+    @Inject
+    protected MeterRegistry meterRegistry;
+
+    @ConfigProperty(name = "framework.redis.queryCache.enabled", defaultValue = "false")
+    protected Boolean enabled;
+
+    @ConfigProperty(name = "framework.redis.queryCache.epochKey", defaultValue = "framework:queryEpochs")
+    protected String epochKey;
+
+    @ConfigProperty(name = "framework.redis.queryCache.expiryInMilli", defaultValue = "30000")
+    protected Long expiryInMilli;
+
+    @ConfigProperty(name = "framework.redis.queryCache.maxIds", defaultValue = "100000")
+    protected Long maxIds;
+
+    @ConfigProperty(name = "framework.redis.queryCache.maxIdsPerQuery", defaultValue = "1000")
+    protected Integer maxIdsPerQuery;
+
+    @PostConstruct
+    void init() {
+        pages = Caffeine.newBuilder()
+                .maximumWeight(maxIds)
+                .weigher((String fingerprint, Page page) -> page.ids().size() + 1)
+                .expireAfterWrite(Duration.ofMillis(expiryInMilli))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, pages, "queryCache");
+    }
+
+    public boolean isEnabled(String bucketPrefix) {
+        return enabledBuckets.computeIfAbsent(bucketPrefix, bucket -> ConfigProvider.getConfig()
+                .getOptionalValue(CONFIG_PREFIX + bucket + ".enabled", Boolean.class)
+                .orElse(enabled));
+    }
+
+    /**
+     * Normalizes the query into a key: null params and sort orders are distinguished from empty ones, instants are
+     * reduced to their epoch millis and sort fields are trimmed. The order of the sort fields is kept, it changes the
+     * result.
+     */
+    public static String fingerprint(String bucketPrefix,
+                                     String method,
+                                     String tenantId,
+                                     List<String> sortOrder,
+                                     Object... params) {
+        StringBuilder fingerprint = new StringBuilder(bucketPrefix)
+                .append(SEPARATOR).append(method)
+                .append(SEPARATOR).append(tenantId == null ? NULL : tenantId);
+
+        for (Object param : params)
+            fingerprint.append(SEPARATOR).append(normalize(param));
+
+        fingerprint.append(SEPARATOR);
+        if (sortOrder == null)
+            fingerprint.append(NULL);
+        else
+            sortOrder.forEach(field -> fingerprint.append(normalize(field == null ? null : field.trim())).append(','));
+
+        return fingerprint.toString();
+    }
+
+    private static String normalize(Object param) {
+        if (param == null)
+            return NULL;
+
+        if (param instanceof Instant instant)
+            return Long.toString(instant.toEpochMilli());
+
+        return param.toString();
+    }
+
+    /**
+     * Current write epoch of the bucket, to be read before running the query the page is loaded from.
+     */
+    public Uni<Long> epoch(String bucketPrefix) {
+        return reactiveRedisDataSource.hash(Long.class).hget(epochKey, bucketPrefix)
+                .map(epoch -> epoch == null ? 0L : epoch);
+    }
+
+    /**
+     * Drops every cached page of the bucket, on every pod.
+     */
+    public Uni<Void> bump(String bucketPrefix) {
+        return reactiveRedisDataSource.hash(Long.class).hincrby(epochKey, bucketPrefix, 1)
+                .replaceWithVoid();
+    }
+
+    /**
+     * @return the cached ids, null if the query is not cached at this epoch
+     */
+    public List<String> get(String fingerprint, long epoch) {
+        Page page = pages.getIfPresent(fingerprint);
+        return page == null || page.epoch() != epoch ? null : page.ids();
+    }
+
+    public void put(String fingerprint, long epoch, List<String> ids) {
+        if (ids.size() > maxIdsPerQuery)
+            return;
+
+        // A slower query started at an older epoch must not replace a fresher page.
+        pages.asMap().merge(fingerprint, new Page(epoch, List.copyOf(ids)),
+                (current, loaded) -> loaded.epoch() >= current.epoch() ? loaded : current);
+    }
+
+    record Page(long epoch, List<String> ids) {
+    }
+}
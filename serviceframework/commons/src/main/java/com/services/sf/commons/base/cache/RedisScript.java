@@ -0,0 +1,90 @@
+package com.services.sf.commons.base.cache;
+
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.redis.client.Command;
+import io.vertx.mutiny.redis.client.Redis;
+import io.vertx.mutiny.redis.client.Request;
+import io.vertx.mutiny.redis.client.Response;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * A Lua script run with {@code EVALSHA}, falling back to {@code EVAL} (which also loads it) when the server
+ * does not know the script yet, e.g. after a restart or a failover.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class RedisScript {
+
+    @Getter
+    String source;
+
+    @Getter
+    String sha;
+
+    public RedisScript(String source) {
+        this.source = source;
+        this.sha = sha1(source);
+    }
+
+    /**
+     * @param args byte[], String or Number arguments, passed as ARGV
+     */
+    public Uni<Response> execute(Redis redis, List<byte[]> keys, List<Object> args) {
+        return redis.send(request(Command.EVALSHA, sha, keys, args))
+                .onFailure(RedisScript::isNoScript)
+                .recoverWithUni(() -> redis.send(request(Command.EVAL, source, keys, args)));
+    }
+
+    /**
+     * Runs the script once per key, all the calls in one pipeline; the pipeline is sent again with {@code EVAL} when
+     * the server does not know the script. The script must be safe to run twice.
+     *
+     * @param pipeline sends the requests and returns their responses in order
+     * @param args     the ARGV of the call on each key
+     */
+    public Uni<List<Response>> executeEach(Function<List<Request>, Uni<List<Response>>> pipeline, List<byte[]> keys, List<List<Object>> args) {
+        return pipeline.apply(requests(Command.EVALSHA, sha, keys, args))
+                .onFailure(RedisScript::isNoScript)
+                .recoverWithUni(() -> pipeline.apply(requests(Command.EVAL, source, keys, args)));
+    }
+
+    private static List<Request> requests(Command command, String script, List<byte[]> keys, List<List<Object>> args) {
+        return IntStream.range(0, keys.size())
+                .mapToObj(i -> request(command, script, List.of(keys.get(i)), args.get(i)))
+                .collect(Collectors.toList());
+    }
+
+    private static Request request(Command command, String script, List<byte[]> keys, List<Object> args) {
+        Request request = Request.cmd(command).arg(script).arg(keys.size());
+        keys.forEach(request::arg);
+        args.forEach(arg -> {
+            if (arg instanceof byte[] bytes)
+                request.arg(bytes);
+            else
+                request.arg(String.valueOf(arg));
+        });
+        return request;
+    }
+
+    private static boolean isNoScript(Throwable throwable) {
+        return throwable.getMessage() != null && throwable.getMessage().startsWith("NOSCRIPT");
+    }
+
+    private static String sha1(String source) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(source.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.services.sf.commons.base.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.smallrye.mutiny.Uni;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent loads of the same key on this pod.
+ * <p>
+ * The first caller for a key becomes the leader and subscribes to the loader; callers arriving while the load
+ * is in flight share its outcome instead of issuing their own. The entry is dropped as soon as the load
+ * terminates, so nothing is cached here beyond the lifetime of a single load.
+ */
+@ApplicationScoped
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class SingleFlight {
+
+    static final String METRIC_NAME = "cache.loads";
+
+    final Map<String, Uni<?>> inFlight = new ConcurrentHashMap<>();
+
+    @Inject
+    protected MeterRegistry meterRegistry;
+
+    /**
+     * @param bucket metric tag identifying the caller, usually the cache bucket prefix
+     * @param key    fully qualified key, must already include the tenant when the data is tenant scoped
+     * @param loader invoked once per in-flight key
+     */
+    @SuppressWarnings("unchecked")
+    public <V> Uni<V> execute(String bucket, String key, Supplier<Uni<V>> loader) {
+
+        return Uni.createFrom().deferred(() -> {
+            AtomicBoolean leader = new AtomicBoolean(false);
+
+            Uni<V> shared = (Uni<V>) inFlight.computeIfAbsent(key, k -> {
+                leader.set(true);
+                return Uni.createFrom().deferred(loader::get)
+                        .onTermination().invoke(() -> inFlight.remove(k))
+                        .memoize().indefinitely();
+            });
+
+            meterRegistry.counter(METRIC_NAME, "bucket", bucket, "outcome", leader.get() ? "loaded" : "coalesced")
+                    .increment();
+
+            return shared;
+        });
+    }
+
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+}
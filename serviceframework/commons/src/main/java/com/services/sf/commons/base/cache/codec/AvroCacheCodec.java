@@ -0,0 +1,108 @@
+package com.services.sf.commons.base.cache.codec;
+
+import com.services.common.enums.ErrorCode;
+import com.services.common.enums.ErrorLevel;
+import com.services.common.exception.BaseRuntimeException;
+import io.quarkus.arc.properties.IfBuildProperty;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.apache.avro.Schema;
+import org.apache.avro.data.TimeConversions;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.reflect.ReflectData;
+import org.apache.avro.reflect.ReflectDatumReader;
+import org.apache.avro.reflect.ReflectDatumWriter;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Schema based binary codec. The schema is derived by reflection from the cached class, so values carry no field
+ * names at all; a change to the class makes older values undecodable, which callers treat as a miss.
+ */
+@ApplicationScoped
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@IfBuildProperty(name = "framework.redis.enabled", stringValue = "true")
+public class AvroCacheCodec implements CacheCodec {
+
+    public static final String NAME = "avro";
+
+    final ReflectData reflectData;
+
+    final Map<Class<?>, Schema> schemas = new ConcurrentHashMap<>();
+
+    final Map<Class<?>, Schema> listSchemas = new ConcurrentHashMap<>();
+
+    public AvroCacheCodec() {
+        this.reflectData = new ReflectData.AllowNull();
+        this.reflectData.addLogicalTypeConversion(new TimeConversions.TimestampMillisConversion());
+        this.reflectData.addLogicalTypeConversion(new TimeConversions.DateConversion());
+    }
+
+    public String getName() {
+        return NAME;
+    }
+
+    public byte getId() {
+        return 4;
+    }
+
+    public byte[] encode(Object value) {
+        return write(schemas.computeIfAbsent(value.getClass(), reflectData::getSchema), value);
+    }
+
+    public <T> T decode(byte[] bytes, Class<T> type) {
+        return read(schemas.computeIfAbsent(type, reflectData::getSchema), bytes);
+    }
+
+    public <T> byte[] encodeList(List<T> values, Class<T> elementType) {
+        return write(listSchema(elementType), values);
+    }
+
+    public <T> List<T> decodeList(byte[] bytes, Class<T> elementType) {
+        return read(listSchema(elementType), bytes);
+    }
+
+    private Schema listSchema(Class<?> elementType) {
+        return listSchemas.computeIfAbsent(elementType, type ->
+                Schema.createArray(schemas.computeIfAbsent(type, reflectData::getSchema)));
+    }
+
+    private byte[] write(Schema schema, Object value) {
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(outputStream, null);
+            new ReflectDatumWriter<>(schema, reflectData).write(value, encoder);
+            encoder.flush();
+            return outputStream.toByteArray();
+        } catch (IOException | RuntimeException e) {
+            throw failure("encode", e);
+        }
+    }
+
+    private <T> T read(Schema schema, byte[] bytes) {
+        try {
+            BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(bytes, null);
+            return new ReflectDatumReader<T>(schema, schema, reflectData).read(null, decoder);
+        } catch (IOException | RuntimeException e) {
+            throw failure("decode", e);
+        }
+    }
+
+    private BaseRuntimeException failure(String operation, Exception e) {
+        return new BaseRuntimeException(
+                ErrorLevel.ERROR,
+                ErrorCode.INTERNAL_SERVER_ERROR,
+                "Cache codec failure",
+                NAME + " codec failed to " + operation + " value: " + e.getMessage(),
+                e
+        );
+    }
+}
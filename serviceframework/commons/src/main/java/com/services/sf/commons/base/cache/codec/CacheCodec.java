@@ -0,0 +1,24 @@
+package com.services.sf.commons.base.cache.codec;
+
+import java.util.List;
+
+/**
+ * Turns cached values into the bytes stored in redis and back.
+ * <p>
+ * Implementations are selected per bucket through {@code framework.redis.codec.<bucketPrefix>}, falling back to
+ * {@code framework.redis.codec.default}. The id is persisted next to every value, so it must never be reused.
+ */
+public interface CacheCodec {
+
+    String getName();
+
+    byte getId();
+
+    byte[] encode(Object value);
+
+    <T> T decode(byte[] bytes, Class<T> type);
+
+    <T> byte[] encodeList(List<T> values, Class<T> elementType);
+
+    <T> List<T> decodeList(byte[] bytes, Class<T> elementType);
+}
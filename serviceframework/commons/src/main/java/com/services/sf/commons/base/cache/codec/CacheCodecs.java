@@ -0,0 +1,69 @@
+package com.services.sf.commons.base.cache.codec;
+
+import com.services.common.enums.ErrorCode;
+import com.services.common.enums.ErrorLevel;
+import com.services.common.exception.BaseRuntimeException;
+import io.quarkus.arc.properties.IfBuildProperty;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Resolves the codec of a bucket from {@code framework.redis.codec.<bucketPrefix>}, or
+ * {@code framework.redis.codec.default} when the bucket does not configure one.
+ */
+@ApplicationScoped
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@IfBuildProperty(name = "framework.redis.enabled", stringValue = "true")
+public class CacheCodecs {
+
+    public static final String CONFIG_PREFIX = "framework.redis.codec.";
+
+    final Map<String, CacheCodec> byName;
+
+    final Map<Byte, CacheCodec> byId;
+
+    @ConfigProperty(name = "framework.redis.codec.default", defaultValue = JsonCacheCodec.NAME)
+    protected String defaultCodec;
+
+    @Inject
+    public CacheCodecs(Instance<CacheCodec> codecs) {
+        this.byName = codecs.stream().collect(Collectors.toMap(CacheCodec::getName, Function.identity()));
+        this.byId = codecs.stream().collect(Collectors.toMap(CacheCodec::getId, Function.identity()));
+    }
+
+    public CacheCodec forBucket(String bucketPrefix) {
+        String name = ConfigProvider.getConfig()
+                .getOptionalValue(CONFIG_PREFIX + bucketPrefix, String.class)
+                .orElse(defaultCodec);
+
+        return forName(name);
+    }
+
+    public CacheCodec forName(String name) {
+        CacheCodec codec = byName.get(name);
+
+        if (codec == null)
+            throw new BaseRuntimeException(
+                    ErrorLevel.FATAL,
+                    ErrorCode.INTERNAL_SERVER_ERROR,
+                    "Unknown cache codec",
+                    "No cache codec named " + name + ", available: " + byName.keySet()
+            );
+
+        return codec;
+    }
+
+    public Optional<CacheCodec> forId(byte id) {
+        return Optional.ofNullable(byId.get(id));
+    }
+}
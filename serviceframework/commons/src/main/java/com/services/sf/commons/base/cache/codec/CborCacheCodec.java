@@ -0,0 +1,26 @@
+package com.services.sf.commons.base.cache.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import io.quarkus.arc.properties.IfBuildProperty;
+
+import javax.enterprise.context.ApplicationScoped;
+
+@ApplicationScoped
+@IfBuildProperty(name = "framework.redis.enabled", stringValue = "true")
+public class CborCacheCodec extends JacksonCacheCodec {
+
+    public static final String NAME = "cbor";
+
+    public CborCacheCodec() {
+        super(configure(new ObjectMapper(new CBORFactory())));
+    }
+
+    public String getName() {
+        return NAME;
+    }
+
+    public byte getId() {
+        return 3;
+    }
+}
@@ -0,0 +1,74 @@
+package com.services.sf.commons.base.cache.codec;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.services.common.enums.ErrorCode;
+import com.services.common.enums.ErrorLevel;
+import com.services.common.exception.BaseRuntimeException;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Base for the codecs backed by a jackson data format.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public abstract class JacksonCacheCodec implements CacheCodec {
+
+    final ObjectMapper objectMapper;
+
+    protected JacksonCacheCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    protected static ObjectMapper configure(ObjectMapper objectMapper) {
+        return objectMapper.registerModule(new JavaTimeModule())
+                .setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    public byte[] encode(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw failure("encode", e);
+        }
+    }
+
+    public <T> T decode(byte[] bytes, Class<T> type) {
+        try {
+            return objectMapper.readValue(bytes, type);
+        } catch (IOException e) {
+            throw failure("decode", e);
+        }
+    }
+
+    public <T> byte[] encodeList(List<T> values, Class<T> elementType) {
+        return encode(values);
+    }
+
+    public <T> List<T> decodeList(byte[] bytes, Class<T> elementType) {
+        try {
+            return objectMapper.readValue(bytes, objectMapper.getTypeFactory().constructCollectionType(List.class, elementType));
+        } catch (IOException e) {
+            throw failure("decode", e);
+        }
+    }
+
+    protected BaseRuntimeException failure(String operation, Exception e) {
+        return new BaseRuntimeException(
+                ErrorLevel.ERROR,
+                ErrorCode.INTERNAL_SERVER_ERROR,
+                "Cache codec failure",
+                getName() + " codec failed to " + operation + " value: " + e.getMessage(),
+                e
+        );
+    }
+}
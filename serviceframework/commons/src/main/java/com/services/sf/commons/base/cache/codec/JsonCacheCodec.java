@@ -0,0 +1,28 @@
+package com.services.sf.commons.base.cache.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.arc.properties.IfBuildProperty;
+
+import javax.enterprise.context.ApplicationScoped;
+
+/**
+ * Default codec. Reads values written before codecs were introduced.
+ */
+@ApplicationScoped
+@IfBuildProperty(name = "framework.redis.enabled", stringValue = "true")
+public class JsonCacheCodec extends JacksonCacheCodec {
+
+    public static final String NAME = "json";
+
+    public JsonCacheCodec() {
+        super(configure(new ObjectMapper()));
+    }
+
+    public String getName() {
+        return NAME;
+    }
+
+    public byte getId() {
+        return 1;
+    }
+}
@@ -0,0 +1,26 @@
+package com.services.sf.commons.base.cache.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.quarkus.arc.properties.IfBuildProperty;
+
+import javax.enterprise.context.ApplicationScoped;
+
+@ApplicationScoped
+@IfBuildProperty(name = "framework.redis.enabled", stringValue = "true")
+public class SmileCacheCodec extends JacksonCacheCodec {
+
+    public static final String NAME = "smile";
+
+    public SmileCacheCodec() {
+        super(configure(new ObjectMapper(new SmileFactory())));
+    }
+
+    public String getName() {
+        return NAME;
+    }
+
+    public byte getId() {
+        return 2;
+    }
+}
@@ -0,0 +1,248 @@
+package com.services.sf.test.commons;
+
+import com.services.sf.commons.base.cache.CacheBreaker;
+import com.services.sf.commons.base.cache.CacheEpochs;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.mutiny.Uni;
+import org.junit.jupiter.api.Test;
+
+import javax.enterprise.inject.Instance;
+import javax.enterprise.util.TypeLiteral;
+import java.lang.annotation.Annotation;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestCacheBreaker {
+
+    private static final String BUCKET = "bucket";
+
+    private static Uni<String> succeeding() {
+        return Uni.createFrom().item("value");
+    }
+
+    private static Uni<String> failing() {
+        return Uni.createFrom().failure(new IllegalStateException("redis is down"));
+    }
+
+    private static String await(Uni<String> uni) {
+        try {
+            return uni.await().atMost(Duration.ofSeconds(5));
+        } catch (IllegalStateException e) {
+            return "failed";
+        }
+    }
+
+    private static void open(TestBreaker breaker) {
+        for (int i = 0; i < 4; i++)
+            await(breaker.read(BUCKET, TestCacheBreaker::failing));
+    }
+
+    private static void halfOpen(TestBreaker breaker) throws InterruptedException {
+        open(breaker);
+        Thread.sleep(250);
+    }
+
+    @Test
+    public void testOpensOnFailureRate() {
+        TestBreaker breaker = new TestBreaker(null);
+
+        await(breaker.read(BUCKET, TestCacheBreaker::succeeding));
+        await(breaker.read(BUCKET, TestCacheBreaker::succeeding));
+        await(breaker.read(BUCKET, TestCacheBreaker::failing));
+        assertFalse(breaker.isBypassed(BUCKET));
+
+        await(breaker.read(BUCKET, TestCacheBreaker::failing));
+        assertTrue(breaker.isBypassed(BUCKET));
+        assertFalse(breaker.isBypassed("other"));
+    }
+
+    @Test
+    public void testSkipsReadsWhileOpen() {
+        TestBreaker breaker = new TestBreaker(null);
+        AtomicInteger calls = new AtomicInteger();
+
+        open(breaker);
+
+        assertNull(await(breaker.read(BUCKET, () -> {
+            calls.incrementAndGet();
+            return succeeding();
+        })));
+        assertNull(await(breaker.write(BUCKET, () -> {
+            calls.incrementAndGet();
+            return succeeding();
+        })));
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    public void testLateReadCountsAsFailure() {
+        TestBreaker breaker = new TestBreaker(null);
+
+        for (int i = 0; i < 4; i++)
+            assertThrows(RuntimeException.class, () -> breaker.read(BUCKET, () -> Uni.createFrom().<String>nothing())
+                    .await().atMost(Duration.ofSeconds(5)));
+
+        assertTrue(breaker.isBypassed(BUCKET));
+    }
+
+    @Test
+    public void testClosesOnceProbesSucceed() throws InterruptedException {
+        TestBreaker breaker = new TestBreaker(null);
+
+        halfOpen(breaker);
+
+        assertEquals("value", await(breaker.read(BUCKET, TestCacheBreaker::succeeding)));
+        assertTrue(breaker.isBypassed(BUCKET));
+
+        assertEquals("value", await(breaker.read(BUCKET, TestCacheBreaker::succeeding)));
+        assertFalse(breaker.isBypassed(BUCKET));
+    }
+
+    @Test
+    public void testReopensOnFailedProbe() throws InterruptedException {
+        TestBreaker breaker = new TestBreaker(null);
+
+        halfOpen(breaker);
+
+        await(breaker.read(BUCKET, TestCacheBreaker::succeeding));
+        await(breaker.read(BUCKET, TestCacheBreaker::failing));
+        assertTrue(breaker.isBypassed(BUCKET));
+
+        // Open again: calls are skipped until the next half open period.
+        assertNull(await(breaker.read(BUCKET, TestCacheBreaker::succeeding)));
+    }
+
+    @Test
+    public void testInvalidationsSentWithoutEpochs() throws InterruptedException {
+        TestBreaker breaker = new TestBreaker(null);
+        AtomicInteger calls = new AtomicInteger();
+
+        open(breaker);
+
+        assertEquals("value", await(breaker.invalidate(BUCKET, () -> {
+            calls.incrementAndGet();
+            return succeeding();
+        })));
+        assertEquals("failed", await(breaker.invalidate(BUCKET, TestCacheBreaker::failing)));
+        assertEquals(1, calls.get());
+
+        Thread.sleep(250);
+        await(breaker.read(BUCKET, TestCacheBreaker::succeeding));
+        await(breaker.read(BUCKET, TestCacheBreaker::succeeding));
+
+        assertFalse(breaker.isBypassed(BUCKET));
+    }
+
+    @Test
+    public void testSkippedInvalidationDropsBucketBeforeClosing() throws InterruptedException {
+        TestEpochs epochs = new TestEpochs();
+        TestBreaker breaker = new TestBreaker(epochs);
+        AtomicInteger calls = new AtomicInteger();
+
+        open(breaker);
+
+        assertNull(await(breaker.invalidate(BUCKET, () -> {
+            calls.incrementAndGet();
+            return succeeding();
+        })));
+        assertEquals(0, calls.get());
+
+        Thread.sleep(250);
+
+        // Probing reads of a stale bucket only tell that redis is back.
+        assertNull(await(breaker.read(BUCKET, TestCacheBreaker::succeeding)));
+        assertNull(await(breaker.read(BUCKET, TestCacheBreaker::succeeding)));
+
+        assertEquals(List.of(BUCKET), epochs.droppedTags);
+        assertFalse(breaker.isBypassed(BUCKET));
+        assertEquals("value", await(breaker.read(BUCKET, TestCacheBreaker::succeeding)));
+    }
+
+    static class TestBreaker extends CacheBreaker {
+
+        TestBreaker(CacheEpochs epochs) {
+            this.meterRegistry = new SimpleMeterRegistry();
+            this.cacheEpochs = new FixedInstance<>(epochs);
+            this.enabled = true;
+            this.readBudgetInMilli = 20L;
+            this.writeBudgetInMilli = 0L;
+            this.failureRateThreshold = 0.5;
+            this.window = 4;
+            this.minimumCalls = 4;
+            this.openInMilli = 200L;
+            this.halfOpenProbes = 2;
+        }
+    }
+
+    static class TestEpochs extends CacheEpochs {
+
+        final List<String> droppedTags = new ArrayList<>();
+
+        @Override
+        public boolean isEnabled() {
+            return true;
+        }
+
+        @Override
+        public Uni<Long> invalidateTag(String tag) {
+            droppedTags.add(tag);
+            return Uni.createFrom().item(1L);
+        }
+    }
+
+    /**
+     * Instance resolving to the given bean, unsatisfied when it is null.
+     */
+    static class FixedInstance<T> implements Instance<T> {
+
+        final T bean;
+
+        FixedInstance(T bean) {
+            this.bean = bean;
+        }
+
+        @Override
+        public T get() {
+            return bean;
+        }
+
+        @Override
+        public boolean isUnsatisfied() {
+            return bean == null;
+        }
+
+        @Override
+        public boolean isAmbiguous() {
+            return false;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return bean == null ? List.<T>of().iterator() : List.of(bean).iterator();
+        }
+
+        @Override
+        public Instance<T> select(Annotation... qualifiers) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <U extends T> Instance<U> select(Class<U> subtype, Annotation... qualifiers) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <U extends T> Instance<U> select(TypeLiteral<U> subtype, Annotation... qualifiers) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void destroy(T instance) {
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.services.sf.test.commons;
+
+import com.services.sf.commons.base.cache.CacheEnvelope;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestCacheEnvelope {
+
+    private static final byte CODEC = 3;
+    private static final int NO_COMPRESSION = Integer.MAX_VALUE;
+
+    private static byte[] compressible() {
+        return "{\"hello\":\"hello\"}".repeat(100).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static CacheEnvelope roundTrip(byte[] bytes) {
+        assertTrue(CacheEnvelope.isEnveloped(bytes));
+        return CacheEnvelope.fromBytes(bytes).orElseThrow();
+    }
+
+    @Test
+    public void testUncompressedRoundTrip() {
+        byte[] payload = compressible();
+
+        byte[] bytes = CacheEnvelope.of(CODEC, 7L, payload).toBytes(NO_COMPRESSION);
+        CacheEnvelope envelope = roundTrip(bytes);
+
+        assertEquals(0, bytes[4] & 1);
+        assertEquals(CODEC, envelope.getCodecId());
+        assertEquals(7L, envelope.getEntityVersion());
+        assertFalse(envelope.isNegative());
+        assertFalse(envelope.isTimed());
+        assertArrayEquals(payload, envelope.getPayload());
+    }
+
+    @Test
+    public void testCompressedRoundTrip() {
+        byte[] payload = compressible();
+
+        byte[] bytes = CacheEnvelope.of(CODEC, 7L, payload).toBytes(64);
+        CacheEnvelope envelope = roundTrip(bytes);
+
+        assertEquals(1, bytes[4] & 1);
+        assertTrue(bytes.length < payload.length);
+        assertEquals(7L, envelope.getEntityVersion());
+        assertArrayEquals(payload, envelope.getPayload());
+    }
+
+    @Test
+    public void testIncompressibleKeptUncompressed() {
+        byte[] payload = new byte[256];
+        new Random(42).nextBytes(payload);
+
+        byte[] bytes = CacheEnvelope.of(CODEC, 7L, payload).toBytes(64);
+
+        assertEquals(0, bytes[4] & 1);
+        assertArrayEquals(payload, roundTrip(bytes).getPayload());
+    }
+
+    @Test
+    public void testTimedRoundTrip() {
+        byte[] payload = compressible();
+
+        CacheEnvelope envelope = roundTrip(CacheEnvelope.timed(CODEC, 7L, 1000L, 61000L, 25L, payload).toBytes(64));
+
+        assertTrue(envelope.isTimed());
+        assertEquals(1000L, envelope.getWrittenAt());
+        assertEquals(61000L, envelope.getExpiresAt());
+        assertEquals(25L, envelope.getComputeMillis());
+        assertArrayEquals(payload, envelope.getPayload());
+    }
+
+    @Test
+    public void testNegativeRoundTrip() {
+        CacheEnvelope envelope = roundTrip(CacheEnvelope.negative(CODEC).toBytes(64));
+        CacheEnvelope tombstone = roundTrip(CacheEnvelope.negative(CODEC, 8L).toBytes(64));
+
+        assertTrue(envelope.isNegative());
+        assertNull(envelope.getEntityVersion());
+        assertEquals(0, envelope.getPayload().length);
+        assertTrue(tombstone.isNegative());
+        assertEquals(8L, tombstone.getEntityVersion());
+    }
+
+    @Test
+    public void testLegacyValueNotEnveloped() {
+        assertFalse(CacheEnvelope.isEnveloped("{\"hello\":\"hello\",\"a\":2}".getBytes(StandardCharsets.UTF_8)));
+        assertFalse(CacheEnvelope.isEnveloped(new byte[0]));
+    }
+
+    @Test
+    public void testTruncatedBuffer() {
+        byte[] plain = CacheEnvelope.of(CODEC, 7L, compressible()).toBytes(NO_COMPRESSION);
+        byte[] timed = CacheEnvelope.timed(CODEC, 7L, 1000L, 61000L, 25L, compressible()).toBytes(NO_COMPRESSION);
+        byte[] compressed = CacheEnvelope.of(CODEC, 7L, compressible()).toBytes(64);
+
+        // Shorter than the header is not a frame at all, longer ones fail to decode and are read as a miss.
+        assertFalse(CacheEnvelope.isEnveloped(Arrays.copyOf(plain, 12)));
+        assertThrows(RuntimeException.class, () -> CacheEnvelope.fromBytes(Arrays.copyOf(timed, 20)));
+        assertThrows(RuntimeException.class, () -> CacheEnvelope.fromBytes(Arrays.copyOf(compressed, 15)));
+        assertThrows(RuntimeException.class, () -> CacheEnvelope.fromBytes(Arrays.copyOf(compressed, compressed.length / 2)));
+    }
+
+    @Test
+    public void testUnknownFormatVersion() {
+        byte[] bytes = CacheEnvelope.of(CODEC, 7L, compressible()).toBytes(NO_COMPRESSION);
+        bytes[2] = CacheEnvelope.FORMAT_VERSION + 1;
+
+        assertTrue(CacheEnvelope.fromBytes(bytes).isEmpty());
+    }
+
+    @Test
+    public void testLayoutPinned() {
+        byte[] bytes = CacheEnvelope.timed(CODEC, 0x0102030405060708L, 1000L, 61000L, 25L, compressible()).toBytes(64);
+
+        assertEquals((byte) 0xCA, bytes[0]);
+        assertEquals((byte) 0xC4, bytes[1]);
+        assertEquals(1, bytes[2]);
+        assertEquals(CODEC, bytes[3]);
+        assertEquals(1 | 4, bytes[4]);
+
+        // SET_IF_NOT_OLDER reads the version with struct.unpack('>i8', current, 6), a 1-based offset.
+        assertEquals(5, CacheEnvelope.ENTITY_VERSION_OFFSET);
+        assertEquals(0x0102030405060708L, ByteBuffer.wrap(bytes).getLong(CacheEnvelope.ENTITY_VERSION_OFFSET));
+        assertEquals(1000L, ByteBuffer.wrap(bytes).getLong(13));
+
+        byte[] unversioned = CacheEnvelope.of(CODEC, null, new byte[0]).toBytes(64);
+        assertEquals(Long.MIN_VALUE, ByteBuffer.wrap(unversioned).getLong(CacheEnvelope.ENTITY_VERSION_OFFSET));
+        assertEquals(13, unversioned.length);
+    }
+}
@@ -0,0 +1,69 @@
+package com.services.sf.test.commons;
+
+import com.services.sf.commons.base.cache.ClusterSlots;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestClusterSlots {
+
+    private static List<byte[]> keys(String... keys) {
+        return Stream.of(keys).map(key -> key.getBytes(StandardCharsets.UTF_8)).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testSlotsOfRedisSpecification() {
+        // CRC16 of "123456789" is 0x31C3 in the redis cluster specification.
+        assertEquals(0x31C3, ClusterSlots.slot("123456789"));
+        assertEquals(12182, ClusterSlots.slot("foo"));
+        assertEquals(5061, ClusterSlots.slot("bar"));
+        assertEquals(866, ClusterSlots.slot("hello"));
+    }
+
+    @Test
+    public void testSlotsInRange() {
+        for (int i = 0; i < 10000; i++) {
+            int slot = ClusterSlots.slot("key:" + i);
+            assertTrue(slot >= 0 && slot < ClusterSlots.SLOTS);
+        }
+    }
+
+    @Test
+    public void testHashTag() {
+        assertEquals(ClusterSlots.slot("user1000"), ClusterSlots.slot("{user1000}.following"));
+        assertEquals(ClusterSlots.slot("{user1000}.following"), ClusterSlots.slot("{user1000}.followers"));
+
+        // Only the first tag counts.
+        assertEquals(ClusterSlots.slot("bar"), ClusterSlots.slot("foo{bar}{zap}"));
+        assertEquals(ClusterSlots.slot("{bar"), ClusterSlots.slot("foo{{bar}}zap"));
+    }
+
+    @Test
+    public void testKeyHashedWhole() {
+        // An empty first tag or an unclosed brace hashes the whole key.
+        assertNotEquals(ClusterSlots.slot("bar"), ClusterSlots.slot("foo{}{bar}"));
+        assertEquals(ClusterSlots.slot("foo{}{bar}".getBytes(StandardCharsets.UTF_8)), ClusterSlots.slot("foo{}{bar}"));
+        assertNotEquals(ClusterSlots.slot("bar"), ClusterSlots.slot("foo{bar"));
+        assertNotEquals(ClusterSlots.slot("foo"), ClusterSlots.slot("foo}bar{"));
+    }
+
+    @Test
+    public void testGroupBySlot() {
+        List<byte[]> keys = keys("{a}1", "{b}1", "{a}2", "{c}1", "{b}2");
+
+        List<List<Integer>> groups = new ArrayList<>(ClusterSlots.groupBySlot(keys));
+
+        assertEquals(List.of(List.of(0, 2), List.of(1, 4), List.of(3)), groups);
+    }
+
+    @Test
+    public void testGroupBySlotWithoutKeys() {
+        assertTrue(ClusterSlots.groupBySlot(List.of()).isEmpty());
+    }
+}
@@ -0,0 +1,168 @@
+package com.services.sf.test.commons;
+
+import com.services.common.enums.ErrorCode;
+import com.services.common.exception.BaseRuntimeException;
+import com.services.sf.commons.base.ConcurrencyLimiter;
+import com.services.sf.commons.base.ConcurrencyLimiter.Operation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.Cancellable;
+import io.vertx.mutiny.core.Vertx;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestConcurrencyLimiter {
+
+    private static final String REPOSITORY = "repository";
+
+    Vertx vertx;
+
+    @BeforeEach
+    public void setup() {
+        vertx = Vertx.vertx();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        vertx.closeAndAwait();
+    }
+
+    private static CompletableFuture<String> run(TestLimiter limiter, CompletableFuture<String> answer) {
+        return limiter.execute(REPOSITORY, Operation.READ, () -> Uni.createFrom().completionStage(answer))
+                .subscribe().asCompletionStage();
+    }
+
+    private static void assertRejected(CompletableFuture<String> call) {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> call.get(5, TimeUnit.SECONDS));
+
+        BaseRuntimeException rejection = assertInstanceOf(BaseRuntimeException.class, e.getCause());
+        assertEquals(ErrorCode.SERVICE_UNAVAILABLE, rejection.getErrorDetails().getErrorCode());
+    }
+
+    @Test
+    public void testRejectsOverLimitWithoutQueue() {
+        TestLimiter limiter = new TestLimiter(vertx, 0);
+
+        run(limiter, new CompletableFuture<>());
+        run(limiter, new CompletableFuture<>());
+
+        assertRejected(run(limiter, new CompletableFuture<>()));
+        assertEquals(2, limiter.gauge("limiter.inFlight"));
+        assertEquals(1, limiter.meterRegistry().get("limiter.rejections").counter().count());
+    }
+
+    @Test
+    public void testQueuedCallRunsOncePermitReleased() throws Exception {
+        TestLimiter limiter = new TestLimiter(vertx, 1);
+        CompletableFuture<String> first = new CompletableFuture<>();
+        AtomicInteger started = new AtomicInteger();
+
+        run(limiter, first);
+        run(limiter, new CompletableFuture<>());
+        CompletableFuture<String> queued = limiter.execute(REPOSITORY, Operation.READ, () -> {
+                    started.incrementAndGet();
+                    return Uni.createFrom().item("queued");
+                })
+                .subscribe().asCompletionStage();
+
+        assertEquals(0, started.get());
+        assertEquals(1, limiter.gauge("limiter.queued"));
+
+        first.complete("first");
+
+        assertEquals("queued", queued.get(5, TimeUnit.SECONDS));
+        assertEquals(1, started.get());
+        assertEquals(0, limiter.gauge("limiter.queued"));
+        assertEquals(1, limiter.gauge("limiter.inFlight"));
+    }
+
+    @Test
+    public void testQueuedCallTimesOut() {
+        TestLimiter limiter = new TestLimiter(vertx, 1);
+
+        run(limiter, new CompletableFuture<>());
+        run(limiter, new CompletableFuture<>());
+
+        assertRejected(run(limiter, new CompletableFuture<>()));
+        assertEquals(0, limiter.gauge("limiter.queued"));
+        assertEquals(2, limiter.gauge("limiter.inFlight"));
+    }
+
+    @Test
+    public void testRejectsWhenQueueFull() {
+        TestLimiter limiter = new TestLimiter(vertx, 1);
+
+        run(limiter, new CompletableFuture<>());
+        run(limiter, new CompletableFuture<>());
+        CompletableFuture<String> queued = run(limiter, new CompletableFuture<>());
+
+        assertRejected(run(limiter, new CompletableFuture<>()));
+        assertFalse(queued.isDone());
+        assertEquals(1, limiter.gauge("limiter.queued"));
+    }
+
+    @Test
+    public void testPermitsReleasedOnFailureAndCancellation() {
+        TestLimiter limiter = new TestLimiter(vertx, 0);
+        CompletableFuture<String> failing = new CompletableFuture<>();
+
+        CompletableFuture<String> failed = run(limiter, failing);
+        Cancellable cancellable = limiter.execute(REPOSITORY, Operation.READ, () -> Uni.createFrom().<String>nothing())
+                .subscribe().with(item -> {
+                });
+
+        failing.completeExceptionally(new IllegalStateException("database is down"));
+        cancellable.cancel();
+
+        assertTrue(failed.isCompletedExceptionally());
+        assertEquals(0, limiter.gauge("limiter.inFlight"));
+        assertEquals("value", limiter.execute(REPOSITORY, Operation.READ, () -> Uni.createFrom().item("value"))
+                .await().atMost(Duration.ofSeconds(5)));
+    }
+
+    @Test
+    public void testTimeoutBacksOffLimit() {
+        TestLimiter limiter = new TestLimiter(vertx, 0);
+        CompletableFuture<String> timingOut = new CompletableFuture<>();
+
+        run(limiter, timingOut);
+        timingOut.completeExceptionally(new TimeoutException());
+
+        assertEquals(1, limiter.gauge("limiter.limit"));
+        assertEquals(0, limiter.gauge("limiter.inFlight"));
+    }
+
+    static class TestLimiter extends ConcurrencyLimiter {
+
+        TestLimiter(Vertx vertx, int queueSize) {
+            this.meterRegistry = new SimpleMeterRegistry();
+            this.vertx = vertx;
+            this.enabled = true;
+            this.initialLimit = 2;
+            this.minLimit = 1;
+            this.maxLimit = 10;
+            this.tolerance = 1.5;
+            this.backoffRatio = 0.5;
+            this.queueSize = queueSize;
+            this.queueTimeoutInMilli = 200L;
+        }
+
+        SimpleMeterRegistry meterRegistry() {
+            return (SimpleMeterRegistry) meterRegistry;
+        }
+
+        double gauge(String name) {
+            return meterRegistry.get(name).tag("repository", REPOSITORY).tag("operation", "read").gauge().value();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.services.sf.test.commons;
+
+import com.services.sf.commons.base.cache.NearCacheInvalidator;
+import com.services.sf.commons.base.cache.OffHeapStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestNearCacheInvalidator {
+
+    private LocalInvalidator invalidator;
+
+    private OffHeapStore store;
+
+    @BeforeEach
+    public void setup() {
+        invalidator = new LocalInvalidator();
+        store = new OffHeapStore(64 * 1024, 4);
+        invalidator.register("bucket", store);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testOffHeapEvictedByOtherPods() {
+        store.put(bytes("bucket:tenant:1"), bytes("value"), 0);
+        store.put(bytes("bucket:tenant:2"), bytes("value"), 0);
+
+        invalidator.receive("other-pod\nbucket\nbucket:tenant:1");
+
+        assertNull(store.get(bytes("bucket:tenant:1")));
+        assertArrayEquals(bytes("value"), store.get(bytes("bucket:tenant:2")));
+    }
+
+    @Test
+    public void testOffHeapKeptOnPublisher() {
+        store.put(bytes("bucket:tenant:1"), bytes("value"), 0);
+
+        invalidator.receive(invalidator.getOrigin() + "\nbucket\nbucket:tenant:1");
+
+        assertArrayEquals(bytes("value"), store.get(bytes("bucket:tenant:1")));
+    }
+
+    @Test
+    public void testOtherBucketsIgnored() {
+        store.put(bytes("bucket:tenant:1"), bytes("value"), 0);
+
+        invalidator.receive("other-pod\nother\nbucket:tenant:1");
+        invalidator.receive("bucket\nbucket:tenant:1");
+
+        assertArrayEquals(bytes("value"), store.get(bytes("bucket:tenant:1")));
+    }
+
+    static class LocalInvalidator extends NearCacheInvalidator {
+
+        @Override
+        protected void subscribe() {
+        }
+
+        void receive(String message) {
+            onMessage(message);
+        }
+    }
+}
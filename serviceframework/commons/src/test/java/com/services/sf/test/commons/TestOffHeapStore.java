@@ -0,0 +1,89 @@
+package com.services.sf.test.commons;
+
+import com.services.sf.commons.base.cache.OffHeapStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestOffHeapStore {
+
+    private OffHeapStore store;
+
+    @BeforeEach
+    public void setup() {
+        store = new OffHeapStore(64 * 1024, 4);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testPutAndGet() {
+        assertNull(store.get(bytes("missing")));
+
+        assertTrue(store.put(bytes("key"), bytes("value"), 0));
+        assertArrayEquals(bytes("value"), store.get(bytes("key")));
+        assertTrue(store.contains(bytes("key")));
+
+        assertTrue(store.put(bytes("key"), bytes("other value"), 0));
+        assertArrayEquals(bytes("other value"), store.get(bytes("key")));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void testRemove() {
+        store.put(bytes("key"), bytes("value"), 0);
+
+        assertTrue(store.remove(bytes("key")));
+        assertFalse(store.remove(bytes("key")));
+        assertNull(store.get(bytes("key")));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testExpiry() throws InterruptedException {
+        store.put(bytes("expiring"), bytes("value"), 20);
+        store.put(bytes("lasting"), bytes("value"), 60_000);
+
+        Thread.sleep(50);
+
+        assertNull(store.get(bytes("expiring")));
+        assertArrayEquals(bytes("value"), store.get(bytes("lasting")));
+    }
+
+    @Test
+    public void testPutIf() {
+        assertTrue(store.putIfAbsent(bytes("key"), bytes("first"), 0));
+        assertFalse(store.putIfAbsent(bytes("key"), bytes("second"), 0));
+        assertArrayEquals(bytes("first"), store.get(bytes("key")));
+
+        assertFalse(store.putIf(bytes("key"), bytes("third"), 0, current -> current == null));
+        assertTrue(store.putIf(bytes("key"), bytes("third"), 0, current -> current != null));
+        assertArrayEquals(bytes("third"), store.get(bytes("key")));
+    }
+
+    @Test
+    public void testEvictsOldestWhenFull() {
+        int count = 10_000;
+        IntStream.range(0, count).forEach(i -> store.put(bytes("key" + i), bytes("value" + i), 0));
+
+        assertNull(store.get(bytes("key0")));
+        assertArrayEquals(bytes("value" + (count - 1)), store.get(bytes("key" + (count - 1))));
+
+        // The index keeps serving and removing the entries still in the arena after several resizes.
+        IntStream.range(count - 100, count).forEach(i -> assertArrayEquals(bytes("value" + i), store.get(bytes("key" + i))));
+        IntStream.range(count - 100, count).forEach(i -> assertTrue(store.remove(bytes("key" + i))));
+        IntStream.range(count - 100, count).forEach(i -> assertNull(store.get(bytes("key" + i))));
+    }
+
+    @Test
+    public void testRejectsRecordsLargerThanASegment() {
+        assertFalse(store.put(bytes("key"), new byte[32 * 1024], 0));
+        assertNull(store.get(bytes("key")));
+    }
+}
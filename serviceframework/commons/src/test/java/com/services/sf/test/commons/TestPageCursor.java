@@ -0,0 +1,100 @@
+package com.services.sf.test.commons;
+
+import com.services.common.domain.base.BaseDomain;
+import com.services.common.exception.IllegalArgumentException;
+import com.services.sf.commons.base.PageCursor;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestPageCursor {
+
+    private static String token(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Item item(int id) {
+        Item item = new Item();
+        item.setId(String.valueOf(id));
+        item.setCreatedAt(Instant.ofEpochSecond(1_700_000_000L + id, id));
+        return item;
+    }
+
+    @Test
+    public void testEncodeAndDecode() {
+        PageCursor cursor = new PageCursor(Instant.ofEpochSecond(1_700_000_000L, 123_456_789), "42");
+
+        assertEquals(cursor, PageCursor.decode(cursor.encode()));
+        assertEquals(cursor, PageCursor.decodeSorted(cursor.encode(), Long::parseLong));
+    }
+
+    @Test
+    public void testEncodeAndDecodeWithoutSortKey() {
+        PageCursor cursor = new PageCursor(null, "42");
+
+        assertEquals(cursor, PageCursor.decode(cursor.encode(), Long::parseLong));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decodeSorted(cursor.encode(), Long::parseLong));
+    }
+
+    @Test
+    public void testBlankCursorReadsFirstPage() {
+        assertNull(PageCursor.decode(null));
+        assertNull(PageCursor.decode(" ", Long::parseLong));
+        assertNull(PageCursor.decodeSorted("", Long::parseLong));
+    }
+
+    @Test
+    public void testInvalidCursors() {
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("not base64!"));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(token("no separator")));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(token("abc.1|42")));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(token("|")));
+    }
+
+    @Test
+    public void testIdRejectedByParser() {
+        String cursor = new PageCursor(null, "not-a-number").encode();
+
+        assertNotNull(PageCursor.decode(cursor));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(cursor, Long::parseLong));
+    }
+
+    @Test
+    public void testPage() {
+        List<Item> items = IntStream.rangeClosed(1, 4).mapToObj(TestPageCursor::item).collect(Collectors.toList());
+
+        var page = PageCursor.page(items, 3, BaseDomain::getCreatedAt);
+
+        assertEquals(List.of("1", "2", "3"), page.getItems().stream().map(Item::getId).collect(Collectors.toList()));
+        assertEquals(new PageCursor(item(3).getCreatedAt(), "3"), PageCursor.decodeSorted(page.getNextCursor(), Long::parseLong));
+    }
+
+    @Test
+    public void testLastPage() {
+        List<Item> items = IntStream.rangeClosed(1, 3).mapToObj(TestPageCursor::item).collect(Collectors.toList());
+
+        var page = PageCursor.page(items, 3, null);
+
+        assertEquals(3, page.getItems().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    public void testNonPositiveLimit() {
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.checkLimit(0));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.checkLimit(-1));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.checkLimit(null));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.page(List.of(item(1)), 0, null));
+        assertEquals(5, PageCursor.checkLimit(5));
+    }
+
+    static class Item extends BaseDomain {
+    }
+}
@@ -0,0 +1,109 @@
+package com.services.sf.test.commons;
+
+import com.services.sf.commons.base.cache.SingleFlight;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.mutiny.Uni;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestSingleFlight {
+
+    private static final String BUCKET = "bucket";
+
+    private static Supplier<Uni<String>> loader(AtomicInteger loads, CompletableFuture<String> answer) {
+        return () -> {
+            loads.incrementAndGet();
+            return Uni.createFrom().completionStage(answer);
+        };
+    }
+
+    @Test
+    public void testConcurrentCallersShareOneLoad() throws Exception {
+        TestFlight flight = new TestFlight();
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<String> answer = new CompletableFuture<>();
+
+        CompletableFuture<String> first = flight.execute(BUCKET, "key", loader(loads, answer)).subscribe().asCompletionStage();
+        CompletableFuture<String> second = flight.execute(BUCKET, "key", loader(loads, answer)).subscribe().asCompletionStage();
+
+        assertEquals(1, loads.get());
+        assertEquals(1, flight.inFlightCount());
+
+        answer.complete("value");
+
+        assertEquals("value", first.get(5, TimeUnit.SECONDS));
+        assertEquals("value", second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, flight.count("loaded"));
+        assertEquals(1, flight.count("coalesced"));
+    }
+
+    @Test
+    public void testEntryRemovedAfterSuccess() {
+        TestFlight flight = new TestFlight();
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals("value", flight.execute(BUCKET, "key", loader(loads, CompletableFuture.completedFuture("value")))
+                .await().atMost(Duration.ofSeconds(5)));
+        assertEquals(0, flight.inFlightCount());
+
+        assertEquals("next", flight.execute(BUCKET, "key", loader(loads, CompletableFuture.completedFuture("next")))
+                .await().atMost(Duration.ofSeconds(5)));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testFailedLoadNotReused() throws Exception {
+        TestFlight flight = new TestFlight();
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<String> answer = new CompletableFuture<>();
+
+        CompletableFuture<String> first = flight.execute(BUCKET, "key", loader(loads, answer)).subscribe().asCompletionStage();
+        CompletableFuture<String> second = flight.execute(BUCKET, "key", loader(loads, answer)).subscribe().asCompletionStage();
+
+        answer.completeExceptionally(new IllegalStateException("database is down"));
+
+        assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+        assertEquals(0, flight.inFlightCount());
+
+        assertEquals("value", flight.execute(BUCKET, "key", loader(loads, CompletableFuture.completedFuture("value")))
+                .await().atMost(Duration.ofSeconds(5)));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testKeysLoadedApart() {
+        TestFlight flight = new TestFlight();
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<String> answer = new CompletableFuture<>();
+
+        flight.execute(BUCKET, "key", loader(loads, answer)).subscribe().asCompletionStage();
+        flight.execute(BUCKET, "other", loader(loads, answer)).subscribe().asCompletionStage();
+
+        assertEquals(2, loads.get());
+        assertEquals(2, flight.inFlightCount());
+
+        answer.complete("value");
+
+        assertEquals(0, flight.inFlightCount());
+    }
+
+    static class TestFlight extends SingleFlight {
+
+        TestFlight() {
+            this.meterRegistry = new SimpleMeterRegistry();
+        }
+
+        double count(String outcome) {
+            return meterRegistry.get("cache.loads").tag("bucket", BUCKET).tag("outcome", outcome).counter().count();
+        }
+    }
+}
@@ -5,10 +5,15 @@ import com.mongodb.bulk.BulkWriteUpsert;
 import com.mongodb.client.model.*;
 import com.mongodb.reactivestreams.client.ClientSession;
 import com.services.common.domain.base.BulkResponse;
+import com.services.common.domain.base.CursorPage;
 import com.services.common.domain.basemongo.BaseMongoDomain;
 import com.services.common.domain.util.LocalContext;
+import com.services.common.enums.ErrorCode;
+import com.services.common.enums.ErrorLevel;
+import com.services.common.exception.BaseRuntimeException;
 import com.services.common.exception.NotImplementedException;
 import com.services.sf.commons.base.BaseRepositoryImpl;
+import com.services.sf.commons.base.PageCursor;
 import io.opentelemetry.api.trace.SpanKind;
 import io.opentelemetry.extension.annotations.SpanAttribute;
 import io.opentelemetry.extension.annotations.WithSpan;
@@ -38,6 +43,7 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @NoArgsConstructor
@@ -48,6 +54,8 @@ public class BaseMongoRepositoryImpl<T extends BaseMongoEntity, E extends BaseMo
         extends BaseRepositoryImpl<T, E, ObjectId>
         implements BaseMongoRepository<T, E> {
 
+    static final int PUT_ATTEMPTS = 3;
+
     @Inject
     protected LocalContext localContext;
 
@@ -202,6 +210,12 @@ public class BaseMongoRepositoryImpl<T extends BaseMongoEntity, E extends BaseMo
         return this.put(e, null);
     }
 
+    /**
+     * Replaces the entity, which keeps its version and moves to the next one like on a patch, so that the caches
+     * holding the previous version take the new one. The replace only applies to the version it read: it is retried
+     * up to {@link #PUT_ATTEMPTS} times when a concurrent write got in between, and then fails with
+     * {@link ErrorCode#CONFLICT}.
+     */
     @WithSpan(kind = SpanKind.CLIENT)
     public Uni<E> put(E e, ClientSession clientSession) {
 
@@ -213,12 +227,33 @@ public class BaseMongoRepositoryImpl<T extends BaseMongoEntity, E extends BaseMo
                 .returnDocument(ReturnDocument.AFTER)
                 .upsert(false);
 
-        Document enhancedFilter = enhanceFilter(QueryBuilder.builder().id(t.getId()).build());
+        return Uni.createFrom().<T>deferred(() -> this.get(t.getId().toHexString(), clientSession)
+                        .onItem().ifNotNull().transformToUni(current -> {
+                            Long version = current.getVersion();
+                            t.setVersion(version == null ? 1L : version + 1);
 
-        return (clientSession == null ?
-                this.mongoCollection().findOneAndReplace(enhancedFilter, t, findOneAndReplaceOptions) :
-                this.mongoCollection().findOneAndReplace(clientSession, enhancedFilter, t, findOneAndReplaceOptions)
-        ).map(mapper::toSecond);
+                            Document enhancedFilter = enhanceFilter(QueryBuilder.builder()
+                                    .id(t.getId())
+                                    .append("version", version)
+                                    .build());
+
+                            Uni<T> replaced = clientSession == null ?
+                                    this.mongoCollection().findOneAndReplace(enhancedFilter, t, findOneAndReplaceOptions) :
+                                    this.mongoCollection().findOneAndReplace(clientSession, enhancedFilter, t, findOneAndReplaceOptions);
+
+                            return replaced.onItem().ifNull().failWith(() -> concurrentPut(t));
+                        }))
+                .onFailure(BaseRuntimeException.class).retry().atMost(PUT_ATTEMPTS - 1)
+                .map(mapper::toSecond);
+    }
+
+    private BaseRuntimeException concurrentPut(T t) {
+        return new BaseRuntimeException(
+                ErrorLevel.ERROR,
+                ErrorCode.CONFLICT,
+                "Concurrent write",
+                "The entity " + t.getId() + " was written while it was replaced"
+        );
     }
 
     public Multi<String> bulkCreate(List<E> eList) {
@@ -542,6 +577,72 @@ public class BaseMongoRepositoryImpl<T extends BaseMongoEntity, E extends BaseMo
                 .map(mapper::toSecond);
     }
 
+    @WithSpan(kind = SpanKind.CLIENT)
+    public Uni<CursorPage<E>> findByPage(String cursor, Integer limit) {
+
+        PageCursor.checkLimit(limit);
+        PageCursor after = PageCursor.decode(cursor, ObjectId::new);
+
+        Document filter = after == null ?
+                QueryBuilder.builder().build() :
+                QueryBuilder.builder().gt("_id", new ObjectId(after.id())).build();
+
+        return this.findPage(filter, new Document("_id", 1), limit, null);
+    }
+
+    @WithSpan(kind = SpanKind.CLIENT)
+    public Uni<CursorPage<E>> findByCreatedAtBetween(Instant t1, Instant t2, String cursor, Integer limit) {
+
+        return this.findPageByRange("createdAt", t1, t2, cursor, limit, E::getCreatedAt);
+    }
+
+    @WithSpan(kind = SpanKind.CLIENT)
+    public Uni<CursorPage<E>> findByLastModifiedAtBetween(Instant t1, Instant t2, String cursor, Integer limit) {
+
+        return this.findPageByRange("lastModifiedAt", t1, t2, cursor, limit, E::getLastModifiedAt);
+    }
+
+    /**
+     * Seeks past the cursor with {@code field > sortKey or (field = sortKey and _id > id)}, which an index on
+     * {@code (tenantId, field, _id)} serves without skipping any document.
+     */
+    protected Uni<CursorPage<E>> findPageByRange(String field,
+                                                 Instant t1,
+                                                 Instant t2,
+                                                 String cursor,
+                                                 Integer limit,
+                                                 Function<E, Instant> sortKey) {
+
+        PageCursor.checkLimit(limit);
+        PageCursor after = PageCursor.decodeSorted(cursor, ObjectId::new);
+
+        Document range = new Document("$ne", null);
+        if (t1 != null)
+            range.append("$gte", t1);
+        if (t2 != null)
+            range.append("$lte", t2);
+
+        QueryBuilder filter = QueryBuilder.builder().append(field, range);
+
+        if (after != null)
+            filter.append("$or", List.of(
+                    new Document(field, new Document("$gt", after.sortKey())),
+                    new Document(field, after.sortKey()).append("_id", new Document("$gt", new ObjectId(after.id())))));
+
+        return this.findPage(filter.build(), new Document(field, 1).append("_id", 1), limit, sortKey);
+    }
+
+    private Uni<CursorPage<E>> findPage(Document filter, Document sort, Integer limit, Function<E, Instant> sortKey) {
+
+        FindOptions findOptions = new FindOptions()
+                .sort(sort)
+                .limit(limit + 1);
+
+        return this.findAll(filter, findOptions)
+                .collect().asList()
+                .map(items -> PageCursor.page(items, limit, sortKey));
+    }
+
     public Uni<E> findOne(Document filter) {
 
         return this.findOne(filter, null);
@@ -6,12 +6,12 @@ import com.services.common.domain.base.BulkResponse;
 import com.services.common.domain.basemongo.BaseMongoDomain;
 import com.services.common.exception.NotImplementedException;
 import com.services.sf.commons.base.BaseServiceImpl;
+import com.services.sf.commons.base.ConcurrencyLimiter.Operation;
+import com.services.sf.mongodb.util.HedgedReads;
 import com.services.sf.mongodb.util.MongoHelper;
 import io.quarkus.arc.properties.IfBuildProperty;
-import io.quarkus.logging.Log;
 import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
-import io.smallrye.mutiny.unchecked.Unchecked;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import lombok.experimental.FieldDefaults;
@@ -33,6 +33,8 @@ public class BaseMongoServiceImpl<T extends BaseMongoEntity, E extends BaseMongo
 
     @Inject
     protected MongoHelper mongoHelper;
+    @Inject
+    protected HedgedReads hedgedReads;
     BaseMongoRepository<T, E> repository;
     BaseMongoCacheRepository<E, C> cache;
 
@@ -49,31 +51,43 @@ public class BaseMongoServiceImpl<T extends BaseMongoEntity, E extends BaseMongo
     }
 
     public Uni<E> create(E e, ClientSession clientSession) {
-        return repository.create(e, clientSession);
+        return limited(Operation.WRITE, () -> repository.create(e, clientSession))
+                .call(created -> cacheCreated(created.getId()))
+                .eventually(this::identityWritten);
     }
 
 
+    /**
+     * When hedging is enabled, a read the secondary is late to answer is also sent with the collection's read
+     * preference, and the first answer wins.
+     */
     public Uni<E> getSecondaryPreferred(String id) {
 
-        Uni<ClientSession> clientSession = mongoHelper.createClientSessionSecondary();
+        return hedgedReads.execute("getSecondaryPreferred", () -> {
+            Uni<ClientSession> clientSession = mongoHelper.createClientSessionSecondary();
 
-        return clientSession.chain(session -> {
-            session.startTransaction();
-            return this.get(id, session)
-                    .eventually(session::commitTransaction);
-        });
+            return clientSession.chain(session -> {
+                session.startTransaction();
+                return this.get(id, session)
+                        .eventually(session::commitTransaction);
+            });
+        }, () -> limited(Operation.READ, () -> repository.get(id, null)));
     }
 
     public Uni<E> get(String id) {
-        return this.get(id, null);
+        return getIdentity(id, null, () -> getBatched(id, key -> limited(Operation.READ, () -> repository.get(key, null))));
     }
 
     public Uni<E> get(String id, ClientSession clientSession) {
-        return repository.get(id, clientSession);
+        // Reads inside a transaction are only shared with the other reads of that transaction.
+        Object scope = clientSession != null && clientSession.hasActiveTransaction() ? clientSession : null;
+        return getIdentity(id, scope, () -> limited(Operation.READ, () -> repository.get(id, clientSession)));
     }
 
     public Uni<E> upsert(E e, E filter, ClientSession clientSession) {
-        return repository.upsert(e, filter, clientSession);
+        return limited(Operation.WRITE, () -> repository.upsert(e, filter, clientSession))
+                .call(upserted -> cacheCreated(upserted.getId()))
+                .eventually(this::identityWritten);
     }
 
     public Uni<E> patch(String id, E e) {
@@ -82,7 +96,9 @@ public class BaseMongoServiceImpl<T extends BaseMongoEntity, E extends BaseMongo
 
     public Uni<E> patch(String id, E e, ClientSession clientSession) {
         e.setId(id);
-        return repository.patch(e, clientSession);
+        return limited(Operation.WRITE, () -> repository.patch(e, clientSession))
+                .call(this::queryWritten)
+                .eventually(this::identityWritten);
     }
 
     public Uni<E> put(String id, E e) {
@@ -96,35 +112,55 @@ public class BaseMongoServiceImpl<T extends BaseMongoEntity, E extends BaseMongo
 
     public Uni<E> put(String id, E e, ClientSession clientSession) {
         e.setId(id);
-        return repository.put(e, clientSession);
+        return limited(Operation.WRITE, () -> repository.put(e, clientSession))
+                .call(this::queryWritten)
+                .eventually(this::identityWritten);
     }
 
     public Uni<E> delete(E e, ClientSession clientSession) {
-        return repository.delete(e, clientSession);
+        return limited(Operation.WRITE, () -> repository.delete(e, clientSession))
+                .call(this::queryWritten)
+                .eventually(this::identityWritten);
     }
 
     public Multi<String> bulkCreate(List<E> eList, ClientSession clientSession) {
-        return repository.bulkCreate(eList, clientSession);
+        return limitedStream(Operation.WRITE, () -> repository.bulkCreate(eList, clientSession))
+                .onTermination().call((failure, cancelled) -> queryWritten())
+                .onTermination().invoke(this::identityWritten);
     }
 
     public Uni<Void> bulkPatch(List<E> eList, ClientSession clientSession) {
-        return repository.bulkPatch(eList, clientSession);
+        return limited(Operation.WRITE, () -> repository.bulkPatch(eList, clientSession))
+                .eventually(this::queryWritten)
+                .eventually(this::identityWritten);
     }
 
     public Uni<BulkResponse> bulkUpsert(List<E> eList, ClientSession clientSession) {
-        return repository.bulkUpsert(eList, clientSession);
+        return limited(Operation.WRITE, () -> repository.bulkUpsert(eList, clientSession))
+                .eventually(this::queryWritten)
+                .eventually(this::identityWritten);
     }
 
+    /**
+     * Hedged like {@link #getSecondaryPreferred(String)}; the entities are then only streamed once all of them are read.
+     */
     public Multi<E> getByIdsSecondaryPreferred(List<String> ids, List<String> sortOrder) {
 
-        Uni<ClientSession> clientSession = mongoHelper.createClientSessionSecondary();
+        if (!hedgedReads.isEnabled())
+            return mongoHelper.createClientSessionSecondary()
+                    .onItem().transformToMulti(session -> this.getByIds(ids, sortOrder, session));
 
-        return clientSession.onItem().transformToMulti(session -> this.getByIds(ids, sortOrder, session));
+        return hedgedReads.execute("getByIdsSecondaryPreferred",
+                        () -> mongoHelper.createClientSessionSecondary()
+                                .onItem().transformToMulti(session -> this.getByIds(ids, sortOrder, session))
+                                .collect().asList(),
+                        () -> this.getByIds(ids, sortOrder, null).collect().asList())
+                .onItem().transformToMulti(es -> Multi.createFrom().iterable(es));
     }
 
 
     public Multi<E> getByIds(List<String> ids, List<String> sortOrder, ClientSession clientSession) {
-        return repository.getByIds(ids, sortOrder, clientSession)
+        return limitedStream(Operation.READ, () -> repository.getByIds(ids, sortOrder, clientSession))
                 ;
     }
 
@@ -137,16 +173,10 @@ public class BaseMongoServiceImpl<T extends BaseMongoEntity, E extends BaseMongo
 
         Objects.requireNonNull(cache);
 
-        return cache.get(id)
-                .onFailure().invoke(Log::error)
-                .onFailure().recoverWithNull()
-                .onItem().ifNull().switchTo(
-                        repository.get(id, clientSession)
-                                .onItem().ifNotNull().call(Unchecked.function(item ->
-                                        cache.set(id, item, expiryInMilliseconds)
-                                                .onFailure().invoke(Log::error)
-                                                .onFailure().recoverWithNull())
-                                ));
+        // A read inside a transaction must observe that transaction's writes, so it is never shared.
+        boolean shareable = clientSession == null || !clientSession.hasActiveTransaction();
+
+        return readThrough(id, () -> limited(Operation.READ, () -> repository.get(id, clientSession)), expiryInMilliseconds, shareable);
     }
 
     protected Uni<E> patchThroughCache(String id, E e) {
@@ -160,9 +190,10 @@ public class BaseMongoServiceImpl<T extends BaseMongoEntity, E extends BaseMongo
 
 
         e.setId(id);
-        return repository.patch(e, clientSession)
-                .call(Unchecked.function(t -> invalidateCache(t.getId())))
-                ;
+        return limited(Operation.WRITE, () -> repository.patch(e, clientSession))
+                .call(this::queryWritten)
+                .call(t -> cacheWritten(t, clientSession))
+                .eventually(this::identityWritten);
     }
 
     protected Uni<E> putThroughCache(String id, E e) {
@@ -175,9 +206,10 @@ public class BaseMongoServiceImpl<T extends BaseMongoEntity, E extends BaseMongo
         Objects.requireNonNull(cache);
 
         e.setId(id);
-        return repository.put(e, clientSession)
-                .call(Unchecked.function(t -> invalidateCache(t.getId())))
-                ;
+        return limited(Operation.WRITE, () -> repository.put(e, clientSession))
+                .call(this::queryWritten)
+                .call(t -> cacheWritten(t, clientSession))
+                .eventually(this::identityWritten);
     }
 
     protected Uni<E> deleteThroughCache(E e) {
@@ -190,7 +222,41 @@ public class BaseMongoServiceImpl<T extends BaseMongoEntity, E extends BaseMongo
         Objects.requireNonNull(cache);
 
         return this.delete(e, clientSession)
-                .call(Unchecked.function(t -> invalidateCache(e.getId())));
+                .call(t -> cacheDeleted(e.getId(), t, clientSession));
+    }
+
+    /**
+     * Inside a transaction the write is not visible to other readers yet, so the key is only invalidated; callers
+     * owning the transaction write through once it is committed (see {@link #cacheCommitted}).
+     */
+    protected Uni<Void> cacheWritten(E e, ClientSession clientSession) {
+
+        if (e != null && clientSession != null && clientSession.hasActiveTransaction())
+            return invalidateCache(e.getId());
+
+        return cacheWritten(e);
+    }
+
+    protected Uni<Void> cacheDeleted(String id, E deleted, ClientSession clientSession) {
+
+        if (clientSession != null && clientSession.hasActiveTransaction())
+            return invalidateCache(id);
+
+        return cacheDeleted(id, deleted);
+    }
+
+    /**
+     * Writes through an entity whose transaction was just committed. The query pages loaded between the write and the
+     * commit are dropped again; without write through the key was already invalidated inside the transaction.
+     */
+    protected Uni<Void> cacheCommitted(E e) {
+
+        return writeThroughEnabled ? queryWritten().call(() -> cacheWritten(e)) : queryWritten();
+    }
+
+    protected Uni<Void> cacheDeleteCommitted(String id, E deleted) {
+
+        return writeThroughEnabled ? queryWritten().call(() -> cacheDeleted(id, deleted)) : queryWritten();
     }
 
 
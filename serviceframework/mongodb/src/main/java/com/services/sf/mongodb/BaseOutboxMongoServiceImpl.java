@@ -157,14 +157,15 @@ public abstract class BaseOutboxMongoServiceImpl<T extends BaseMongoEntity, E ex
                     clientSession.startTransaction();
                     return this.patchThroughCache(id, e, clientSession)
                             .call(() -> Uni.createFrom().publisher(clientSession.commitTransaction()))
-                            .onFailure().call(() -> Uni.createFrom().publisher(clientSession.abortTransaction()));
+                            .onFailure().call(() -> Uni.createFrom().publisher(clientSession.abortTransaction()))
+                            .call(this::cacheCommitted);
                 });
     }
 
     @Override
     protected Uni<E> patchThroughCache(String id, E e, ClientSession clientSession) {
         return this.patch(id, e, clientSession)
-                .call(Unchecked.function(t -> invalidateCache(t.getId())))
+                .call(t -> cacheWritten(t, clientSession))
                 ;
     }
 
@@ -176,7 +177,8 @@ public abstract class BaseOutboxMongoServiceImpl<T extends BaseMongoEntity, E ex
                     clientSession.startTransaction();
                     return this.putThroughCache(id, e, clientSession)
                             .call(() -> Uni.createFrom().publisher(clientSession.commitTransaction()))
-                            .onFailure().call(() -> Uni.createFrom().publisher(clientSession.abortTransaction()));
+                            .onFailure().call(() -> Uni.createFrom().publisher(clientSession.abortTransaction()))
+                            .call(this::cacheCommitted);
                 });
     }
 
@@ -184,7 +186,7 @@ public abstract class BaseOutboxMongoServiceImpl<T extends BaseMongoEntity, E ex
     protected Uni<E> putThroughCache(String id, E e, ClientSession clientSession) {
 
         return this.put(id, e, clientSession)
-                .call(Unchecked.function(t -> invalidateCache(t.getId())))
+                .call(t -> cacheWritten(t, clientSession))
                 ;
     }
 
@@ -196,7 +198,8 @@ public abstract class BaseOutboxMongoServiceImpl<T extends BaseMongoEntity, E ex
                     clientSession.startTransaction();
                     return this.deleteThroughCache(e, clientSession)
                             .call(() -> Uni.createFrom().publisher(clientSession.commitTransaction()))
-                            .onFailure().call(() -> Uni.createFrom().publisher(clientSession.abortTransaction()));
+                            .onFailure().call(() -> Uni.createFrom().publisher(clientSession.abortTransaction()))
+                            .call(t -> cacheDeleteCommitted(e.getId(), t));
                 });
     }
 
@@ -204,7 +207,7 @@ public abstract class BaseOutboxMongoServiceImpl<T extends BaseMongoEntity, E ex
     protected Uni<E> deleteThroughCache(E e, ClientSession clientSession) {
 
         return this.delete(e, clientSession)
-                .call(Unchecked.function(t -> invalidateCache(e.getId())))
+                .call(t -> cacheDeleted(e.getId(), t, clientSession))
                 ;
     }
 
@@ -350,13 +353,14 @@ public abstract class BaseOutboxMongoServiceImpl<T extends BaseMongoEntity, E ex
                     clientSession.startTransaction();
                     return this.patchThroughCache(id, e, aggregateType, eventType, clientSession)
                             .call(() -> Uni.createFrom().publisher(clientSession.commitTransaction()))
-                            .onFailure().call(() -> Uni.createFrom().publisher(clientSession.abortTransaction()));
+                            .onFailure().call(() -> Uni.createFrom().publisher(clientSession.abortTransaction()))
+                            .call(this::cacheCommitted);
                 });
     }
 
     protected Uni<E> patchThroughCache(String id, E e, String aggregateType, String eventType, ClientSession clientSession) {
         return this.patch(id, e, aggregateType, eventType, clientSession)
-                .call(Unchecked.function(t -> invalidateCache(t.getId())))
+                .call(t -> cacheWritten(t, clientSession))
                 ;
     }
 
@@ -367,14 +371,15 @@ public abstract class BaseOutboxMongoServiceImpl<T extends BaseMongoEntity, E ex
                     clientSession.startTransaction();
                     return this.putThroughCache(id, e, aggregateType, eventType, clientSession)
                             .call(() -> Uni.createFrom().publisher(clientSession.commitTransaction()))
-                            .onFailure().call(() -> Uni.createFrom().publisher(clientSession.abortTransaction()));
+                            .onFailure().call(() -> Uni.createFrom().publisher(clientSession.abortTransaction()))
+                            .call(this::cacheCommitted);
                 });
     }
 
     protected Uni<E> putThroughCache(String id, E e, String aggregateType, String eventType, ClientSession clientSession) {
 
         return this.put(id, e, aggregateType, eventType, clientSession)
-                .call(Unchecked.function(t -> invalidateCache(t.getId())))
+                .call(t -> cacheWritten(t, clientSession))
                 ;
     }
 
@@ -385,14 +390,15 @@ public abstract class BaseOutboxMongoServiceImpl<T extends BaseMongoEntity, E ex
                     clientSession.startTransaction();
                     return this.deleteThroughCache(e, aggregateType, eventType, clientSession)
                             .call(() -> Uni.createFrom().publisher(clientSession.commitTransaction()))
-                            .onFailure().call(() -> Uni.createFrom().publisher(clientSession.abortTransaction()));
+                            .onFailure().call(() -> Uni.createFrom().publisher(clientSession.abortTransaction()))
+                            .call(t -> cacheDeleteCommitted(e.getId(), t));
                 });
     }
 
     protected Uni<E> deleteThroughCache(E e, String aggregateType, String eventType, ClientSession clientSession) {
 
         return this.delete(e, aggregateType, eventType, clientSession)
-                .call(Unchecked.function(t -> invalidateCache(e.getId())))
+                .call(t -> cacheDeleted(e.getId(), t, clientSession))
                 ;
     }
 
@@ -0,0 +1,143 @@
+package com.services.sf.mongodb.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Hedges slow reads: when a read has not answered after the recent {@code framework.mongodb.hedge.percentile} latency
+ * of its operation, the same read is sent again through another path and the first response wins; the losing read is
+ * cancelled.
+ * <p>
+ * Only the latencies of the usual path are kept, per operation over the last {@code framework.mongodb.hedge.window}
+ * reads; the answers of the hedges would drag the delay down. A read beaten by its hedge counts with the time it ran
+ * until it was cancelled, a lower bound of its latency, so that the slow reads still weigh on the delay. Until a
+ * few of them were recorded the delay is {@code framework.mongodb.hedge.initialDelayInMilli}, and it is never below
+ * {@code framework.mongodb.hedge.minDelayInMilli}. Reads are counted in {@code mongo.hedge.reads}, the duplicates sent
+ * in {@code mongo.hedge.sent} and the duplicates answering first in {@code mongo.hedge.wins}, all tagged with the
+ * operation.
+ */
+@ApplicationScoped
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@IfBuildProperty(name = "framework.mongodb.enabled", stringValue = "true")
+public class HedgedReads {
+
+    final Map<String, LatencyWindow> windows = new ConcurrentHashMap<>();
+
+    @Inject
+    protected MeterRegistry meterRegistry;
+
+    @ConfigProperty(name = "framework.mongodb.hedge.enabled", defaultValue = "false")
+    protected Boolean enabled;
+
+    @ConfigProperty(name = "framework.mongodb.hedge.percentile", defaultValue = "0.95")
+    protected Double percentile;
+
+    @ConfigProperty(name = "framework.mongodb.hedge.window", defaultValue = "256")
+    protected Integer window;
+
+    @ConfigProperty(name = "framework.mongodb.hedge.initialDelayInMilli", defaultValue = "50")
+    protected Long initialDelayInMilli;
+
+    @ConfigProperty(name = "framework.mongodb.hedge.minDelayInMilli", defaultValue = "5")
+    protected Long minDelayInMilli;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param read  the read through its usual path
+     * @param hedge the same read through another path, only subscribed to once the read is late
+     */
+    public <T> Uni<T> execute(String operation, Supplier<Uni<T>> read, Supplier<Uni<T>> hedge) {
+
+        if (!enabled)
+            return Uni.createFrom().deferred(read::get);
+
+        return Uni.createFrom().deferred(() -> {
+            LatencyWindow latencies = windows.computeIfAbsent(operation, ignored -> new LatencyWindow(window, percentile));
+            long startedAt = System.nanoTime();
+
+            meterRegistry.counter("mongo.hedge.reads", "operation", operation).increment();
+
+            Uni<Answer<T>> first = Uni.createFrom().deferred(read::get)
+                    .invoke(() -> latencies.record(System.nanoTime() - startedAt))
+                    .onCancellation().invoke(() -> latencies.record(System.nanoTime() - startedAt))
+                    .map(value -> new Answer<>(value, false));
+
+            Uni<Answer<T>> second = Uni.createFrom().voidItem()
+                    .onItem().delayIt().by(Duration.ofMillis(latencies.delayInMilli(initialDelayInMilli, minDelayInMilli)))
+                    .invoke(() -> meterRegistry.counter("mongo.hedge.sent", "operation", operation).increment())
+                    .chain(() -> Uni.createFrom().deferred(hedge::get))
+                    .map(value -> new Answer<>(value, true));
+
+            // Merged rather than combined with any(), which leaves the losing read running: taking the first answer
+            // cancels the merge and both reads with it.
+            return Multi.createBy().merging().streams(first.toMulti(), second.toMulti())
+                    .toUni()
+                    .invoke(answer -> {
+                        if (answer.hedged())
+                            meterRegistry.counter("mongo.hedge.wins", "operation", operation).increment();
+                    })
+                    .map(Answer::value);
+        });
+    }
+
+    record Answer<T>(T value, boolean hedged) {
+    }
+
+    /**
+     * Ring of the last latencies of an operation, with the percentile recomputed every few samples.
+     */
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    static final class LatencyWindow {
+
+        static final int RECOMPUTE_EVERY = 16;
+
+        final long[] samples;
+        final double percentile;
+        int count;
+        int next;
+        long recorded;
+        volatile long percentileInNanos = -1;
+
+        LatencyWindow(int size, double percentile) {
+            this.samples = new long[size];
+            this.percentile = percentile;
+        }
+
+        synchronized void record(long latencyInNanos) {
+            samples[next] = latencyInNanos;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+
+            if (++recorded % RECOMPUTE_EVERY == 0) {
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                percentileInNanos = sorted[(int) Math.max(0, Math.ceil(count * percentile) - 1)];
+            }
+        }
+
+        /**
+         * @param initialDelayInMilli the delay while fewer than {@link #RECOMPUTE_EVERY} latencies were recorded
+         */
+        long delayInMilli(long initialDelayInMilli, long minDelayInMilli) {
+            long recent = percentileInNanos;
+            long delay = recent < 0 ? initialDelayInMilli : Duration.ofNanos(recent).toMillis();
+            return Math.max(minDelayInMilli, delay);
+        }
+    }
+}
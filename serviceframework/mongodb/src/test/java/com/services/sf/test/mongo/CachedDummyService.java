@@ -0,0 +1,43 @@
+package com.services.sf.test.mongo;
+
+import com.services.sf.mongodb.BaseMongoServiceImpl;
+import io.smallrye.mutiny.Uni;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.util.function.Function;
+
+/**
+ * Dummy service reading and writing through the cache.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@ApplicationScoped
+public class CachedDummyService extends BaseMongoServiceImpl<DummyEntity, Dummy, DummyCache> {
+
+    @Inject
+    protected CachedDummyService(DummyRepository repository, DummyCacheRepository cache) {
+        super(repository, cache);
+    }
+
+    @Override
+    public Uni<Dummy> getThroughCache(String id) {
+        return super.getThroughCache(id);
+    }
+
+    @Override
+    public Uni<Dummy> getThroughCache(Function<String, Uni<Dummy>> func, String id, Long expiryInMilli) {
+        return super.getThroughCache(func, id, expiryInMilli);
+    }
+
+    @Override
+    public Uni<Dummy> patchThroughCache(String id, Dummy dummy) {
+        return super.patchThroughCache(id, dummy);
+    }
+
+    @Override
+    public Uni<Dummy> putThroughCache(String id, Dummy dummy) {
+        return super.putThroughCache(id, dummy);
+    }
+}
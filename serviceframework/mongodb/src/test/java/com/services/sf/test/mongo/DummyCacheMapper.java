@@ -0,0 +1,12 @@
+package com.services.sf.test.mongo;
+
+import com.services.sf.mongodb.BaseMongoCacheMapper;
+import org.mapstruct.Mapper;
+import org.mapstruct.NullValueCheckStrategy;
+import org.mapstruct.NullValuePropertyMappingStrategy;
+
+@Mapper(componentModel = "cdi",
+        nullValuePropertyMappingStrategy = NullValuePropertyMappingStrategy.IGNORE,
+        nullValueCheckStrategy = NullValueCheckStrategy.ALWAYS)
+public interface DummyCacheMapper extends BaseMongoCacheMapper<Dummy, DummyCache> {
+}
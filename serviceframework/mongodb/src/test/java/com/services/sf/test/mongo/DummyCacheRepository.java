@@ -0,0 +1,18 @@
+package com.services.sf.test.mongo;
+
+import com.services.sf.mongodb.BaseMongoCacheRepositoryImpl;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@ApplicationScoped
+public class DummyCacheRepository extends BaseMongoCacheRepositoryImpl<Dummy, DummyCache> {
+
+    @Inject
+    public DummyCacheRepository(DummyCacheMapper mapper) {
+        super(mapper, DummyCache.class, "dummy");
+    }
+}
@@ -0,0 +1,97 @@
+package com.services.sf.test.mongo;
+
+import com.services.common.constant.GlobalConstant;
+import com.services.common.domain.util.LocalContext;
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.mongodb.MongoReplicaSetTestResource;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import javax.inject.Inject;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+@QuarkusTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@QuarkusTestResource(MongoReplicaSetTestResource.class)
+public class TestDummyCacheExpiry {
+
+    @Inject
+    protected LocalContext localContext;
+
+    @Inject
+    protected DummyCacheRepository cache;
+    @Inject
+    protected ReactiveRedisDataSource reactiveRedisDataSource;
+
+    @BeforeEach
+    public void setup() {
+        localContext.setTenantId("df");
+        localContext.setUserId(new ObjectId().toString());
+        localContext.set(GlobalConstant.HEADER_SERVICE, "testService");
+    }
+
+    private long pttl(String hash) {
+        return reactiveRedisDataSource.key(String.class).pttl(cache.getBucket(hash)).await().indefinitely();
+    }
+
+    private static Dummy dummy(String hello) {
+        return Dummy.builder().id(new ObjectId().toHexString()).hello(hello).build();
+    }
+
+    @Test
+    public void testHsetAppliesExpiry() throws Exception {
+        String hash = new ObjectId().toHexString();
+
+        cache.hset(hash, "field", dummy("hello"), 60L).await().indefinitely();
+        long ttl = pttl(hash);
+        assert (ttl > 0 && ttl <= 60000);
+        assert (cache.hget(hash, "field").await().indefinitely().getHello().equals("hello"));
+
+        // A later write replaces the expiry of the hash instead of keeping the first one.
+        cache.hset(hash, "field", dummy("bye"), 5L).await().indefinitely();
+        ttl = pttl(hash);
+        assert (ttl > 0 && ttl <= 5000);
+        assert (cache.hget(hash, "field").await().indefinitely().getHello().equals("bye"));
+
+        cache.hset(hash, "other", dummy("other"), Instant.now().plusSeconds(30)).await().indefinitely();
+        ttl = pttl(hash);
+        assert (ttl > 5000 && ttl <= 30000);
+        assert (cache.hgetall(hash).await().indefinitely().size() == 2);
+    }
+
+    @Test
+    public void testHmsetAppliesExpiry() {
+        String hash = new ObjectId().toHexString();
+
+        cache.hmset(hash, List.of("a", "b"), List.of(dummy("a"), dummy("b")), 60L).await().indefinitely();
+        long ttl = pttl(hash);
+        assert (ttl > 0 && ttl <= 60000);
+        assert (cache.hgetall(hash).await().indefinitely().size() == 2);
+
+        cache.hmset(hash, List.of("c"), List.of(dummy("c")), Instant.now().plusSeconds(5)).await().indefinitely();
+        ttl = pttl(hash);
+        assert (ttl > 0 && ttl <= 5000);
+        assert (cache.hget(hash, "c").await().indefinitely().getHello().equals("c"));
+    }
+
+    @Test
+    public void testZaddAppliesExpiry() {
+        String hash = new ObjectId().toHexString();
+
+        cache.zadd(hash, Map.<Dummy, Number>of(dummy("a"), 1), 60L).await().indefinitely();
+        long ttl = pttl(hash);
+        assert (ttl > 0 && ttl <= 60000);
+        assert (cache.zrange(hash, 0, -1).collect().asList().await().indefinitely().size() == 1);
+
+        cache.zadd(hash, List.of(dummy("b")), List.<Number>of(2), Instant.now().plusSeconds(5)).await().indefinitely();
+        ttl = pttl(hash);
+        assert (ttl > 0 && ttl <= 5000);
+        assert (cache.zrange(hash, 0, -1).collect().asList().await().indefinitely().size() == 2);
+    }
+}
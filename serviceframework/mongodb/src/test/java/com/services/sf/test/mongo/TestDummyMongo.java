@@ -4,6 +4,8 @@ import com.mongodb.reactivestreams.client.ClientSession;
 import com.services.common.constant.GlobalConstant;
 import com.services.common.domain.basemongo.Outbox;
 import com.services.common.domain.util.LocalContext;
+import com.services.common.exception.IllegalArgumentException;
+import com.services.sf.commons.base.PageCursor;
 import com.services.sf.mongodb.outbox.OutboxRepository;
 import com.services.sf.mongodb.util.MongoHelper;
 import io.quarkus.test.common.QuarkusTestResource;
@@ -18,7 +20,13 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 
 import javax.inject.Inject;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 @QuarkusTest
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
@@ -106,9 +114,9 @@ public class TestDummyMongo {
         assert (updatedDummy.getB() == null);
         assert (updatedDummy.getHello().equals("bye"));
         assert (updatedDummy.getCreatedBy().equals(testService));
-        assert (updatedDummy.getVersion() == 1);
+        assert (updatedDummy.getVersion() == 2);
         Dummy getDummy = service.get(createdDummy.getId()).await().indefinitely();
-        assert (getDummy.getVersion() == 1);
+        assert (getDummy.getVersion() == 2);
         assert (getDummy.getA().equals(3));
         assert (getDummy.getB() == null);
         assert (getDummy.getHello().equals("bye"));
@@ -169,4 +177,52 @@ public class TestDummyMongo {
         assert (createdDummy.getB().equals(2));
     }
 
+    @Test
+    public void testFindByPageWithCursor() {
+        List<String> createdIds = IntStream.range(0, 5)
+                .mapToObj(i -> service.create(Dummy.builder().hello("hello" + i).build()).await().indefinitely().getId())
+                .sorted(Comparator.comparing((String id) -> new ObjectId(id)))
+                .toList();
+
+        List<String> foundIds = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            var page = service.findByPage(cursor, 2).await().indefinitely();
+            assert (page.getItems().size() <= 2);
+            page.getItems().forEach(found -> foundIds.add(found.getId()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assert (pages == 3);
+        assert (createdIds.equals(foundIds));
+    }
+
+    @Test
+    public void testFindByCreatedAtBetweenWithCursor() {
+        Instant start = Instant.now().minusSeconds(1);
+        List<Dummy> created = IntStream.range(0, 3)
+                .mapToObj(i -> service.create(Dummy.builder().hello("hello" + i).build()).await().indefinitely())
+                .toList();
+        List<String> expectedIds = created.stream()
+                .sorted(Comparator.comparing(Dummy::getCreatedAt).thenComparing(dummy -> new ObjectId(dummy.getId())))
+                .map(Dummy::getId)
+                .toList();
+
+        var firstPage = service.findByCreatedAtBetween(start, null, null, 2).await().indefinitely();
+        var lastPage = service.findByCreatedAtBetween(start, null, firstPage.getNextCursor(), 2).await().indefinitely();
+
+        assert (expectedIds.subList(0, 2).equals(firstPage.getItems().stream().map(Dummy::getId).toList()));
+        assert (expectedIds.subList(2, 3).equals(lastPage.getItems().stream().map(Dummy::getId).toList()));
+        assert (lastPage.getNextCursor() == null);
+    }
+
+    @Test
+    public void testFindByPageWithInvalidCursor() {
+        assertThrows(IllegalArgumentException.class, () -> service.findByPage("not-a-cursor", 2).await().indefinitely());
+        assertThrows(IllegalArgumentException.class, () -> service.findByPage(new PageCursor(null, "not-an-object-id").encode(), 2).await().indefinitely());
+        assertThrows(IllegalArgumentException.class, () -> service.findByPage(null, 0).await().indefinitely());
+    }
+
 }
@@ -0,0 +1,85 @@
+package com.services.sf.test.mongo;
+
+import com.services.common.constant.GlobalConstant;
+import com.services.common.domain.util.LocalContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import io.quarkus.test.mongodb.MongoReplicaSetTestResource;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import javax.inject.Inject;
+import java.util.Map;
+
+@QuarkusTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@TestProfile(TestDummyMongoNegativeCache.NegativeCacheProfile.class)
+@QuarkusTestResource(MongoReplicaSetTestResource.class)
+public class TestDummyMongoNegativeCache {
+
+    static final long NEGATIVE_EXPIRY_IN_MILLI = 500L;
+
+    @Inject
+    protected LocalContext localContext;
+
+    @Inject
+    protected CachedDummyService service;
+    @Inject
+    protected DummyRepository repository;
+    @Inject
+    protected MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setup() {
+        repository.mongoDatabase().createCollection("testCollection").await().indefinitely();
+        repository.mongoDatabase().createCollection("outbox").await().indefinitely();
+        localContext.setTenantId("df");
+        localContext.setUserId(new ObjectId().toString());
+        localContext.set(GlobalConstant.HEADER_SERVICE, "testService");
+    }
+
+    @AfterEach
+    public void postTest() {
+        repository.mongoDatabase().drop().await().indefinitely();
+    }
+
+    private double negative(String outcome) {
+        return meterRegistry.counter("cache.negative", "bucket", "dummy", "outcome", outcome).count();
+    }
+
+    @Test
+    public void testNegativeHitAndExpiry() throws InterruptedException {
+        String id = new ObjectId().toHexString();
+        double misses = negative("miss");
+        double hits = negative("hit");
+
+        assert (service.getThroughCache(id).await().indefinitely() == null);
+        assert (negative("miss") == misses + 1);
+
+        assert (service.getThroughCache(id).await().indefinitely() == null);
+        assert (negative("hit") == hits + 1);
+        assert (negative("miss") == misses + 1);
+
+        Thread.sleep(NEGATIVE_EXPIRY_IN_MILLI * 2);
+
+        assert (service.getThroughCache(id).await().indefinitely() == null);
+        assert (negative("miss") == misses + 2);
+        assert (negative("hit") == hits + 1);
+    }
+
+    public static class NegativeCacheProfile implements QuarkusTestProfile {
+
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of(
+                    "framework.redis.negativeCache.enabled", "true",
+                    "framework.redis.negativeCache.expiryInMilli", String.valueOf(NEGATIVE_EXPIRY_IN_MILLI));
+        }
+    }
+}
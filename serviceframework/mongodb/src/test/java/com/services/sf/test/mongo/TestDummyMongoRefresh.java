@@ -0,0 +1,104 @@
+package com.services.sf.test.mongo;
+
+import com.services.common.constant.GlobalConstant;
+import com.services.common.domain.util.LocalContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import io.quarkus.test.mongodb.MongoReplicaSetTestResource;
+import io.smallrye.mutiny.Uni;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import javax.inject.Inject;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+@QuarkusTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@TestProfile(TestDummyMongoRefresh.RefreshProfile.class)
+@QuarkusTestResource(MongoReplicaSetTestResource.class)
+public class TestDummyMongoRefresh {
+
+    @Inject
+    protected LocalContext localContext;
+
+    @Inject
+    protected CachedDummyService service;
+    @Inject
+    protected MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setup() {
+        localContext.setTenantId("df");
+        localContext.setUserId(new ObjectId().toString());
+        localContext.set(GlobalConstant.HEADER_SERVICE, "testService");
+    }
+
+    private double refresh(String outcome) {
+        return meterRegistry.counter("cache.refresh", "bucket", "dummy", "outcome", outcome).count();
+    }
+
+    /**
+     * Answers the number of the load, taking long enough for the compute time to weigh in an early refresh.
+     */
+    private static Function<String, Uni<Dummy>> countingLoader(AtomicInteger loads) {
+        return id -> Uni.createFrom().item(() -> Dummy.builder().id(id).hello("load" + loads.incrementAndGet()).build())
+                .onItem().delayIt().by(Duration.ofMillis(50));
+    }
+
+    @Test
+    public void testEarlyRefresh() throws InterruptedException {
+        String id = new ObjectId().toHexString();
+        AtomicInteger loads = new AtomicInteger();
+        double early = refresh("early");
+
+        assert (service.getThroughCache(countingLoader(loads), id, 60000L).await().indefinitely().getHello().equals("load1"));
+
+        // Served from the cache while the reload runs in the background.
+        assert (service.getThroughCache(countingLoader(loads), id, 60000L).await().indefinitely().getHello().equals("load1"));
+        assert (refresh("early") > early);
+
+        String hello = "load1";
+        for (int i = 0; i < 50 && hello.equals("load1"); i++) {
+            Thread.sleep(100);
+            hello = service.getThroughCache(countingLoader(loads), id, 60000L).await().indefinitely().getHello();
+        }
+        assert (!hello.equals("load1"));
+        assert (loads.get() >= 2);
+    }
+
+    @Test
+    public void testServeStaleOnError() throws InterruptedException {
+        String id = new ObjectId().toHexString();
+        AtomicInteger loads = new AtomicInteger();
+        double stale = refresh("stale");
+
+        assert (service.getThroughCache(countingLoader(loads), id, 200L).await().indefinitely().getHello().equals("load1"));
+
+        Thread.sleep(400);
+
+        Dummy staleDummy = service.getThroughCache(key -> Uni.createFrom().failure(new IllegalStateException("database is down")), id, 200L)
+                .await().indefinitely();
+        assert (staleDummy.getHello().equals("load1"));
+        assert (refresh("stale") == stale + 1);
+    }
+
+    public static class RefreshProfile implements QuarkusTestProfile {
+
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            // A beta this large makes every read ahead of expiry refresh early.
+            return Map.of(
+                    "framework.redis.refresh.enabled", "true",
+                    "framework.redis.refresh.beta", "1000000000",
+                    "framework.redis.refresh.serveStaleOnError", "true");
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.services.sf.test.mongo;
+
+import com.services.common.constant.GlobalConstant;
+import com.services.common.domain.util.LocalContext;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import io.quarkus.test.mongodb.MongoReplicaSetTestResource;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import javax.inject.Inject;
+import java.util.Map;
+
+@QuarkusTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@TestProfile(TestDummyMongoWriteThrough.WriteThroughProfile.class)
+@QuarkusTestResource(MongoReplicaSetTestResource.class)
+public class TestDummyMongoWriteThrough {
+
+    @Inject
+    protected LocalContext localContext;
+
+    @Inject
+    protected CachedDummyService service;
+    @Inject
+    protected DummyRepository repository;
+    @Inject
+    protected DummyCacheRepository cache;
+
+    @BeforeEach
+    public void setup() {
+        repository.mongoDatabase().createCollection("testCollection").await().indefinitely();
+        repository.mongoDatabase().createCollection("outbox").await().indefinitely();
+        localContext.setTenantId("df");
+        localContext.setUserId(new ObjectId().toString());
+        localContext.set(GlobalConstant.HEADER_SERVICE, "testService");
+    }
+
+    @AfterEach
+    public void postTest() {
+        repository.mongoDatabase().drop().await().indefinitely();
+    }
+
+    @Test
+    public void testPutAfterPatch() {
+        Dummy createdDummy = service.create(Dummy.builder().hello("hello").a(2).b(2).build()).await().indefinitely();
+
+        Dummy patchedDummy = service.patchThroughCache(createdDummy.getId(), Dummy.builder().a(3).build()).await().indefinitely();
+        assert (patchedDummy.getVersion() == 2);
+        assert (service.getThroughCache(createdDummy.getId()).await().indefinitely().getA().equals(3));
+
+        Dummy putDummy = service.putThroughCache(createdDummy.getId(), Dummy.builder().hello("bye").a(4).build()).await().indefinitely();
+        assert (putDummy.getVersion() == 3);
+
+        Dummy cachedDummy = service.getThroughCache(createdDummy.getId()).await().indefinitely();
+        assert (cachedDummy.getA().equals(4));
+        assert (cachedDummy.getB() == null);
+        assert (cachedDummy.getHello().equals("bye"));
+    }
+
+    @Test
+    public void testPutBehindNewerCachedVersion() {
+        Dummy createdDummy = service.create(Dummy.builder().hello("hello").a(2).build()).await().indefinitely();
+
+        // A newer version the database does not hold refuses the write through, which drops the key instead.
+        Dummy newerDummy = createdDummy.toBuilder().hello("newer").version(99L).build();
+        cache.setIfNotOlder(createdDummy.getId(), newerDummy, 60000L).await().indefinitely();
+
+        service.putThroughCache(createdDummy.getId(), Dummy.builder().hello("bye").build()).await().indefinitely();
+
+        Dummy cachedDummy = service.getThroughCache(createdDummy.getId()).await().indefinitely();
+        assert (cachedDummy.getHello().equals("bye"));
+    }
+
+    public static class WriteThroughProfile implements QuarkusTestProfile {
+
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of("framework.redis.writeThrough.enabled", "true");
+        }
+    }
+}
@@ -90,22 +90,21 @@ public abstract class BaseOutboxSqlServiceImpl<T extends BaseSqlEntity, E extend
                 )));
     }
 
+    // The through-cache variants are not transactional themselves: patch, put and delete are, so the cache is
+    // only updated once the write and its outbox entry are committed.
     @Override
-    @ReactiveTransactional
     protected Uni<E> patchThroughCache(String id, E e) {
-        return this.patch(id, e).call(Unchecked.function(t -> invalidateCache(t.getId())));
+        return this.patch(id, e).call(this::cacheWritten);
     }
 
     @Override
-    @ReactiveTransactional
     protected Uni<E> putThroughCache(String id, E e) {
-        return this.put(id, e).call(Unchecked.function(t -> invalidateCache(t.getId())));
+        return this.put(id, e).call(this::cacheWritten);
     }
 
     @Override
-    @ReactiveTransactional
     protected Uni<E> deleteThroughCache(E e) {
-        return this.delete(e).call(Unchecked.function(t -> invalidateCache(e.getId())));
+        return this.delete(e).call(t -> cacheDeleted(e.getId(), t));
     }
 
     @Override
@@ -164,19 +163,16 @@ public abstract class BaseOutboxSqlServiceImpl<T extends BaseSqlEntity, E extend
                 )));
     }
 
-    @ReactiveTransactional
     protected Uni<E> patchThroughCache(String id, E e, String aggregateType, String eventType) {
-        return this.patch(id, e, aggregateType, eventType).call(Unchecked.function(t -> invalidateCache(t.getId())));
+        return this.patch(id, e, aggregateType, eventType).call(this::cacheWritten);
     }
 
-    @ReactiveTransactional
     protected Uni<E> putThroughCache(String id, E e, String aggregateType, String eventType) {
-        return this.put(id, e, aggregateType, eventType).call(Unchecked.function(t -> invalidateCache(t.getId())));
+        return this.put(id, e, aggregateType, eventType).call(this::cacheWritten);
     }
 
-    @ReactiveTransactional
     protected Uni<E> deleteThroughCache(E e, String aggregateType, String eventType) {
-        return this.delete(e, aggregateType, eventType).call(Unchecked.function(t -> invalidateCache(e.getId())));
+        return this.delete(e, aggregateType, eventType).call(t -> cacheDeleted(e.getId(), t));
     }
 
     @ReactiveTransactional
@@ -3,6 +3,7 @@ package com.services.sf.sql;
 import com.google.common.collect.Sets;
 import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.types.*;
+import com.querydsl.core.types.dsl.DateTimePath;
 import com.querydsl.core.types.dsl.EntityPathBase;
 import com.querydsl.core.types.dsl.Expressions;
 import com.querydsl.core.types.dsl.PathBuilder;
@@ -10,9 +11,11 @@ import com.querydsl.jpa.HQLTemplates;
 import com.querydsl.jpa.JPQLSerializer;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.services.common.domain.base.BulkResponse;
+import com.services.common.domain.base.CursorPage;
 import com.services.common.domain.basesql.BaseSqlDomain;
 import com.services.common.domain.util.LocalContext;
 import com.services.sf.commons.base.BaseRepositoryImpl;
+import com.services.sf.commons.base.PageCursor;
 import com.services.sf.sql.util.QueryUtil;
 import io.quarkus.arc.properties.IfBuildProperty;
 import io.smallrye.mutiny.Multi;
@@ -419,6 +422,62 @@ public class BaseSqlRepositoryImpl<T extends BaseSqlEntity, E extends BaseSqlDom
         return this.findMany(query, Limits.of(offset, limit)).map(mapper::toSecond);
     }
 
+    @Override
+    public Uni<CursorPage<E>> findByPage(String cursor, Integer limit) {
+        PageCursor.checkLimit(limit);
+        PageCursor after = PageCursor.decode(cursor, Long::parseLong);
+        var builder = newQuery();
+        if (Objects.nonNull(after)) {
+            builder.where(Expressions.predicate(Ops.GT, baseEntity().id, Expressions.constant(Long.parseLong(after.id()))));
+        }
+        var query = builder
+                .orderBy(baseEntity().id.asc())
+                .build();
+        return findPage(query, limit, null);
+    }
+
+    @Override
+    public Uni<CursorPage<E>> findByCreatedAtBetween(Instant t1, Instant t2, String cursor, Integer limit) {
+        return findPageByRange(baseEntity().createdAt, t1, t2, cursor, limit, E::getCreatedAt);
+    }
+
+    @Override
+    public Uni<CursorPage<E>> findByLastModifiedAtBetween(Instant t1, Instant t2, String cursor, Integer limit) {
+        return findPageByRange(baseEntity().lastModifiedAt, t1, t2, cursor, limit, E::getLastModifiedAt);
+    }
+
+    /**
+     * Seeks past the cursor with {@code field > sortKey or (field = sortKey and id > cursorId)}, which an index on
+     * {@code (tenantId, field, id)} serves without reading the earlier rows, unlike an OFFSET.
+     */
+    protected Uni<CursorPage<E>> findPageByRange(DateTimePath<Instant> field, Instant t1, Instant t2, String cursor, Integer limit, Function<E, Instant> sortKey) {
+        PageCursor.checkLimit(limit);
+        PageCursor after = PageCursor.decodeSorted(cursor, Long::parseLong);
+        Predicate predicate = field.isNotNull();
+        if (Objects.nonNull(t1)) {
+            predicate = ExpressionUtils.and(predicate, field.goe(t1));
+        }
+        if (Objects.nonNull(t2)) {
+            predicate = ExpressionUtils.and(predicate, field.loe(t2));
+        }
+        if (Objects.nonNull(after)) {
+            predicate = ExpressionUtils.and(predicate, field.gt(after.sortKey())
+                    .or(field.eq(after.sortKey()).and(baseEntity().id.gt(Long.parseLong(after.id())))));
+        }
+        var query = newQuery()
+                .where(predicate)
+                .orderBy(field.asc(), baseEntity().id.asc())
+                .build();
+        return findPage(query, limit, sortKey);
+    }
+
+    private Uni<CursorPage<E>> findPage(HQLQuery<T> query, Integer limit, Function<E, Instant> sortKey) {
+        return this.findMany(query, Limits.of(0, limit + 1))
+                .map(mapper::toSecond)
+                .collect().asList()
+                .map(items -> PageCursor.page(items, limit, sortKey));
+    }
+
     protected Uni<T> findOne(HQLQuery<T> query) {
         return find(query.getFinalHql(), query.getBindings()).firstResult();
     }
@@ -4,10 +4,9 @@ import com.services.common.domain.abstracts.AbstractDomain;
 import com.services.common.domain.base.BulkResponse;
 import com.services.common.domain.basesql.BaseSqlDomain;
 import com.services.sf.commons.base.BaseServiceImpl;
-import io.quarkus.logging.Log;
+import com.services.sf.commons.base.ConcurrencyLimiter.Operation;
 import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
-import io.smallrye.mutiny.unchecked.Unchecked;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import lombok.experimental.FieldDefaults;
@@ -40,54 +39,72 @@ public class BaseSqlServiceImpl<T extends BaseSqlEntity, E extends BaseSqlDomain
 
     @Override
     public Uni<E> get(String id) {
-        return repository.get(id);
+        return getIdentity(id, null, () -> getBatched(id, key -> limited(Operation.READ, () -> repository.get(key))));
     }
 
     @Override
     public Uni<E> create(E e) {
-        return repository.create(e);
+        return limited(Operation.WRITE, () -> repository.create(e))
+                .call(created -> cacheCreated(created.getId()))
+                .eventually(this::identityWritten);
     }
 
     @Override
     public Uni<E> patch(String id, E e) {
         e.setId(id);
-        return repository.patch(e);
+        return limited(Operation.WRITE, () -> repository.patch(e))
+                .call(this::queryWritten)
+                .eventually(this::identityWritten);
     }
 
     @Override
     public Uni<E> upsert(E e, E filter) {
-        return repository.upsert(e, filter);
+        return limited(Operation.WRITE, () -> repository.upsert(e, filter))
+                .call(upserted -> cacheCreated(upserted.getId()))
+                .eventually(this::identityWritten);
     }
 
     @Override
     public Uni<E> put(String id, E e) {
         e.setId(id);
-        return repository.put(e);
+        return limited(Operation.WRITE, () -> repository.put(e))
+                .call(this::queryWritten)
+                .eventually(this::identityWritten);
     }
 
     @Override
     public Uni<E> delete(E e) {
-        return repository.delete(e);
+        return limited(Operation.WRITE, () -> repository.delete(e))
+                .call(this::queryWritten)
+                .eventually(this::identityWritten);
     }
 
     @Override
     public Multi<String> bulkCreate(List<E> es) {
-        return repository.bulkCreate(es);
+        return limitedStream(Operation.WRITE, () -> repository.bulkCreate(es))
+                .onTermination().call((failure, cancelled) -> queryWritten())
+                .onTermination().invoke(this::identityWritten);
     }
 
     @Override
     public Uni<List<E>> bulkCreateWithResponse(List<E> es) {
-        return repository.bulkCreateWithResponse(es);
+        return limited(Operation.WRITE, () -> repository.bulkCreateWithResponse(es))
+                .eventually(this::queryWritten)
+                .eventually(this::identityWritten);
     }
 
     @Override
     public Uni<Void> bulkPatch(List<E> es) {
-        return repository.bulkPatch(es);
+        return limited(Operation.WRITE, () -> repository.bulkPatch(es))
+                .eventually(this::queryWritten)
+                .eventually(this::identityWritten);
     }
 
     @Override
     public Uni<BulkResponse> bulkUpsert(List<E> es) {
-        return repository.bulkUpsert(es);
+        return limited(Operation.WRITE, () -> repository.bulkUpsert(es))
+                .eventually(this::queryWritten)
+                .eventually(this::identityWritten);
     }
 
     protected Uni<E> getThroughCache(String id) {
@@ -99,16 +116,7 @@ public class BaseSqlServiceImpl<T extends BaseSqlEntity, E extends BaseSqlDomain
 
         Objects.requireNonNull(cache);
 
-        return cache.get(id)
-                .onFailure().invoke(Log::error)
-                .onFailure().recoverWithNull()
-                .onItem().ifNull().switchTo(
-                        repository.get(id)
-                                .onItem().ifNotNull().call(Unchecked.function(item ->
-                                        cache.set(id, item, expiryInMilliseconds)
-                                                .onFailure().invoke(Log::error)
-                                                .onFailure().recoverWithNull())
-                                ));
+        return readThrough(id, () -> limited(Operation.READ, () -> repository.get(id)), expiryInMilliseconds, true);
     }
 
     protected Uni<E> patchThroughCache(String id, E e) {
@@ -116,8 +124,10 @@ public class BaseSqlServiceImpl<T extends BaseSqlEntity, E extends BaseSqlDomain
         Objects.requireNonNull(cache);
 
         e.setId(id);
-        return repository.patch(e)
-                .call(Unchecked.function(t -> invalidateCache(t.getId())));
+        return limited(Operation.WRITE, () -> repository.patch(e))
+                .call(this::queryWritten)
+                .call(this::cacheWritten)
+                .eventually(this::identityWritten);
     }
 
     protected Uni<E> putThroughCache(String id, E e) {
@@ -125,8 +135,10 @@ public class BaseSqlServiceImpl<T extends BaseSqlEntity, E extends BaseSqlDomain
         Objects.requireNonNull(cache);
 
         e.setId(id);
-        return repository.put(e)
-                .call(Unchecked.function(t -> invalidateCache(t.getId())));
+        return limited(Operation.WRITE, () -> repository.put(e))
+                .call(this::queryWritten)
+                .call(this::cacheWritten)
+                .eventually(this::identityWritten);
     }
 
     protected Uni<E> deleteThroughCache(E e) {
@@ -134,6 +146,6 @@ public class BaseSqlServiceImpl<T extends BaseSqlEntity, E extends BaseSqlDomain
         Objects.requireNonNull(cache);
 
         return this.delete(e)
-                .call(Unchecked.function(t -> invalidateCache(e.getId())));
+                .call(t -> cacheDeleted(e.getId(), t));
     }
 }
@@ -0,0 +1,68 @@
+package com.services.sf.test.sql;
+
+import com.services.common.domain.util.LocalContext;
+import com.services.sf.test.sql.dummy.DummyService;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import io.smallrye.mutiny.Uni;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.inject.Inject;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@QuarkusTest
+@TestProfile(TestSqlBatchLoader.BatchLoaderProfile.class)
+@QuarkusTestResource(PostgresResource.class)
+public class TestSqlBatchLoader {
+
+    private static final Duration maxDurationToWait = Duration.ofMinutes(5);
+    private static final String tenantIdToUse = "df-testing";
+
+    @Inject
+    protected LocalContext localContext;
+    @Inject
+    protected DummyService service;
+
+    @BeforeEach
+    public void setup() {
+        localContext.setTenantId(tenantIdToUse);
+        localContext.setUserId("testBatchLoader");
+    }
+
+    @Test
+    public void testGetTwiceInOneRequest() {
+        var found = Uni.combine().all().unis(service.get("10000"), service.get("10000"), service.get("20000"))
+                .asTuple()
+                .await().atMost(maxDurationToWait);
+
+        assertThat("First load not resolved", Objects.equals("10000", found.getItem1().getId()));
+        assertThat("Second load of the same id not resolved", Objects.equals("10000", found.getItem2().getId()));
+        assertThat("Other id of the batch not resolved", Objects.equals("20000", found.getItem3().getId()));
+        assertThat("Tenant Id is not same", tenantIdToUse.equals(found.getItem1().getTenantId()));
+    }
+
+    @Test
+    public void testGetNotFoundByTenantInOneRequest() {
+        var found = Uni.combine().all().unis(service.get("10000"), service.get("30000"))
+                .asTuple()
+                .await().atMost(maxDurationToWait);
+
+        assertThat("Data not found", Objects.nonNull(found.getItem1()));
+        assertThat("Data found when it should be not visible", Objects.isNull(found.getItem2()));
+    }
+
+    public static class BatchLoaderProfile implements QuarkusTestProfile {
+
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of("framework.batchLoader.enabled", "true");
+        }
+    }
+}
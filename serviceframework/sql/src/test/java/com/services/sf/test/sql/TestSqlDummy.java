@@ -3,6 +3,8 @@ package com.services.sf.test.sql;
 import com.google.common.collect.Sets;
 import com.google.common.collect.Streams;
 import com.services.common.domain.util.LocalContext;
+import com.services.common.exception.IllegalArgumentException;
+import com.services.sf.commons.base.PageCursor;
 import com.services.sf.sql.outbox.OutboxEntity;
 import com.services.sf.sql.outbox.OutboxRepository;
 import com.services.sf.test.sql.dummy.Dummy;
@@ -22,6 +24,7 @@ import java.util.stream.Stream;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 @SuppressWarnings("UnstableApiUsage")
 @QuarkusTest
@@ -423,6 +426,47 @@ public class TestSqlDummy {
                 (expected, found) -> () -> assertThat("ID is not same", Objects.equals(expected, found))));
     }
 
+    @Test
+    public void testFindByPageWithCursor() {
+        var expectedIds = service.findByPage(0, Integer.MAX_VALUE, List.of("id")).map(Dummy::getId).collect().asList().await().atMost(maxDurationToWait);
+        var foundIds = new ArrayList<String>();
+        String cursor = null;
+        do {
+            var page = service.findByPage(cursor, 2).await().atMost(maxDurationToWait);
+            assertThat("Page size was not as required size", page.getItems().size() <= 2);
+            page.getItems().forEach(found -> assertThat("Tenant Id is not same", tenantIdToUse.equals(found.getTenantId())));
+            page.getItems().forEach(found -> foundIds.add(found.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertThat("Pages did not list every entity once, in id order: %s != %s".formatted(expectedIds, foundIds), expectedIds.equals(foundIds));
+    }
+
+    @Test
+    public void testFindByLastModifiedAtBetweenWithCursor() {
+        var t1 = Instant.parse("2022-01-15T00:00:00.00Z");
+        var t2 = Instant.parse("2022-05-01T00:00:00.00Z");
+        var firstPage = service.findByLastModifiedAtBetween(t1, t2, null, 2).await().atMost(maxDurationToWait);
+        assertThat("First page is not the oldest entities", List.of("40000", "50000").equals(firstPage.getItems().stream().map(Dummy::getId).toList()));
+        assertThat("First page has no next cursor", Objects.nonNull(firstPage.getNextCursor()));
+
+        var lastPage = service.findByLastModifiedAtBetween(t1, t2, firstPage.getNextCursor(), 2).await().atMost(maxDurationToWait);
+        assertThat("Last page is not the newest entity", List.of("60000").equals(lastPage.getItems().stream().map(Dummy::getId).toList()));
+        assertThat("Last page has a next cursor", Objects.isNull(lastPage.getNextCursor()));
+    }
+
+    @Test
+    public void testFindByPageWithInvalidCursor() {
+        assertThrows(IllegalArgumentException.class, () -> service.findByPage("not-a-cursor", 2).await().atMost(maxDurationToWait));
+        assertThrows(IllegalArgumentException.class, () -> service.findByPage(new PageCursor(null, "not-an-id").encode(), 2).await().atMost(maxDurationToWait));
+        assertThrows(IllegalArgumentException.class, () -> service.findByLastModifiedAtBetween(null, null, new PageCursor(null, "40000").encode(), 2).await().atMost(maxDurationToWait));
+    }
+
+    @Test
+    public void testFindByPageWithNonPositiveLimit() {
+        assertThrows(IllegalArgumentException.class, () -> service.findByPage(null, 0).await().atMost(maxDurationToWait));
+        assertThrows(IllegalArgumentException.class, () -> service.findByCreatedAtBetween(null, null, null, -1).await().atMost(maxDurationToWait));
+    }
+
 
     @Test
     public void testFindByCreatedAtGreaterThan() {